@@ -0,0 +1,394 @@
+/*
+ * Copyright (C) 2014 Baidu Inc. All rights reserved.
+ */
+
+package com.lee.sdk.app.event.processor;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * 根据{@code com.lee.sdk.app.event.Subscribe}注解在编译期生成订阅者索引，避免注册时通过反射扫描整个类的方法。
+ * 
+ * <p>
+ * 通过编译参数{@code eventBusIndex}指定生成的类的全名，没有指定时不生成索引：
+ * 
+ * <pre class="prettyprint">
+ * dependencies {
+ *     compile project(':event-processor')
+ * }
+ * 
+ * tasks.withType(JavaCompile) {
+ *     options.compilerArgs += ['-AeventBusIndex=com.example.AppEventBusIndex']
+ * }
+ * </pre>
+ * 
+ * 然后在Application#onCreate()中安装：
+ * 
+ * <pre class="prettyprint">
+ * EventBusWrapper.installIndex(new AppEventBusIndex());
+ * </pre>
+ * 
+ * </p>
+ * 
+ * <p>
+ * 方法的校验规则与运行时的反射一致：方法名不合法时编译报错；不是public、是static或者参数个数不是1的方法被忽略。
+ * 生成的索引无法访问的类（例如private的内部类）不会被索引，运行时仍然使用反射。
+ * 被索引的方法同时生成{@code SubscriberInvoker}，分发事件时直接调用订阅方法，不再经过Method#invoke()。
+ * </p>
+ * 
+ * @author lihong06
+ * @since 2014-11-20
+ */
+@SupportedAnnotationTypes(SubscriberIndexProcessor.SUBSCRIBE_ANNOTATION)
+@SupportedOptions(SubscriberIndexProcessor.OPTION_EVENT_BUS_INDEX)
+public class SubscriberIndexProcessor extends AbstractProcessor {
+    /** 订阅注解 */
+    static final String SUBSCRIBE_ANNOTATION = "com.lee.sdk.app.event.Subscribe";
+    /** 指定生成的索引类的编译参数 */
+    static final String OPTION_EVENT_BUS_INDEX = "eventBusIndex";
+    /** 订阅方法名的前缀 */
+    private static final String ON_EVENT_METHOD_NAME = "onEvent";
+    /** 事件总线的包名 */
+    private static final String EVENT_PACKAGE = "com.lee.sdk.app.event";
+
+    /** 订阅者的类以及其中声明的订阅方法 */
+    private final Map<TypeElement, List<ExecutableElement>> methodsByClass =
+            new LinkedHashMap<TypeElement, List<ExecutableElement>>();
+    /** 是否已经生成了索引 */
+    private boolean writerRoundDone;
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment env) {
+        if (annotations.isEmpty()) {
+            return false;
+        }
+
+        Messager messager = processingEnv.getMessager();
+        String index = processingEnv.getOptions().get(OPTION_EVENT_BUS_INDEX);
+        if (index == null) {
+            messager.printMessage(Diagnostic.Kind.NOTE, "No option " + OPTION_EVENT_BUS_INDEX
+                    + " passed to annotation processor, the subscriber index is not generated");
+            return false;
+        }
+
+        if (writerRoundDone) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "Subscriber methods found in a later round, "
+                    + "the subscriber index " + index + " is already generated");
+            return false;
+        }
+
+        TypeElement subscribe = processingEnv.getElementUtils().getTypeElement(SUBSCRIBE_ANNOTATION);
+        if (subscribe == null) {
+            return false;
+        }
+
+        collectSubscribers(env.getElementsAnnotatedWith(subscribe), messager);
+        String indexPackage = getPackageName(index);
+        removeInvisibleClasses(indexPackage, messager);
+
+        if (!methodsByClass.isEmpty()) {
+            try {
+                writeIndex(index, indexPackage);
+            } catch (IOException e) {
+                messager.printMessage(Diagnostic.Kind.ERROR, "Could not write the subscriber index " + index + ": " + e);
+            }
+        }
+        writerRoundDone = true;
+
+        return false;
+    }
+
+    /**
+     * 收集合法的订阅方法
+     */
+    private void collectSubscribers(Set<? extends Element> elements, Messager messager) {
+        for (Element element : elements) {
+            if (element.getKind() != ElementKind.METHOD) {
+                continue;
+            }
+
+            ExecutableElement method = (ExecutableElement) element;
+            String methodName = method.getSimpleName().toString();
+            if (!methodName.startsWith(ON_EVENT_METHOD_NAME)) {
+                continue;
+            }
+
+            Set<Modifier> modifiers = method.getModifiers();
+            if (!modifiers.contains(Modifier.PUBLIC) || modifiers.contains(Modifier.STATIC)
+                    || modifiers.contains(Modifier.ABSTRACT)) {
+                messager.printMessage(Diagnostic.Kind.WARNING,
+                        "Subscriber method is skipped, it must be public, not static and not abstract", method);
+                continue;
+            }
+
+            if (method.getParameters().size() != 1) {
+                messager.printMessage(Diagnostic.Kind.WARNING,
+                        "Subscriber method is skipped, it must have exactly one parameter", method);
+                continue;
+            }
+
+            if (getThreadMode(methodName) == null) {
+                messager.printMessage(Diagnostic.Kind.ERROR, "Illegal onEvent method, check for typos", method);
+                continue;
+            }
+
+            TypeElement clazz = (TypeElement) method.getEnclosingElement();
+            List<ExecutableElement> methods = methodsByClass.get(clazz);
+            if (methods == null) {
+                methods = new ArrayList<ExecutableElement>();
+                methodsByClass.put(clazz, methods);
+            }
+            methods.add(method);
+        }
+    }
+
+    /**
+     * 移除生成的索引无法访问的类，它们在运行时通过反射查找订阅方法
+     */
+    private void removeInvisibleClasses(String indexPackage, Messager messager) {
+        List<TypeElement> invisibles = new ArrayList<TypeElement>();
+        for (Map.Entry<TypeElement, List<ExecutableElement>> entry : methodsByClass.entrySet()) {
+            TypeElement clazz = entry.getKey();
+            boolean visible = isVisible(indexPackage, clazz);
+            for (ExecutableElement method : entry.getValue()) {
+                if (!visible) {
+                    break;
+                }
+                TypeMirror eventType = getEventType(method);
+                if (eventType.getKind() == TypeKind.DECLARED) {
+                    visible = isVisible(indexPackage, (TypeElement) ((DeclaredType) eventType).asElement());
+                }
+            }
+
+            if (!visible) {
+                invisibles.add(clazz);
+                messager.printMessage(Diagnostic.Kind.NOTE,
+                        "Subscriber class is not visible to the index, it falls back to reflection", clazz);
+            }
+        }
+
+        for (TypeElement clazz : invisibles) {
+            methodsByClass.remove(clazz);
+        }
+    }
+
+    /**
+     * 判断类是否可以被指定包中的类访问
+     */
+    private boolean isVisible(String indexPackage, TypeElement clazz) {
+        if (clazz.getNestingKind() == NestingKind.ANONYMOUS || clazz.getNestingKind() == NestingKind.LOCAL) {
+            return false;
+        }
+
+        String classPackage = getPackageElement(clazz).getQualifiedName().toString();
+        Element element = clazz;
+        while (element instanceof TypeElement) {
+            Set<Modifier> modifiers = element.getModifiers();
+            if (modifiers.contains(Modifier.PRIVATE)) {
+                return false;
+            }
+            if (!modifiers.contains(Modifier.PUBLIC) && !classPackage.equals(indexPackage)) {
+                return false;
+            }
+            element = element.getEnclosingElement();
+        }
+        return true;
+    }
+
+    /**
+     * 生成索引类
+     */
+    private void writeIndex(String index, String indexPackage) throws IOException {
+        List<Element> originatingElements = new ArrayList<Element>(methodsByClass.keySet());
+        JavaFileObject sourceFile = processingEnv.getFiler().createSourceFile(index,
+                originatingElements.toArray(new Element[originatingElements.size()]));
+        String className = index.substring(index.lastIndexOf('.') + 1);
+
+        Writer writer = sourceFile.openWriter();
+        PrintWriter out = new PrintWriter(writer);
+        try {
+            if (indexPackage.length() > 0) {
+                out.println("package " + indexPackage + ";");
+                out.println();
+            }
+            out.println("import java.util.HashMap;");
+            out.println("import java.util.Map;");
+            out.println();
+            out.println("import " + EVENT_PACKAGE + ".SimpleSubscriberInfo;");
+            out.println("import " + EVENT_PACKAGE + ".SubscriberInfo;");
+            out.println("import " + EVENT_PACKAGE + ".SubscriberInfoIndex;");
+            out.println("import " + EVENT_PACKAGE + ".SubscriberInvoker;");
+            out.println("import " + EVENT_PACKAGE + ".SubscriberMethodInfo;");
+            out.println("import " + EVENT_PACKAGE + ".ThreadMode;");
+            out.println();
+            out.println("/** This class is generated by " + getClass().getSimpleName() + ", do not edit. */");
+            out.println("@SuppressWarnings({\"rawtypes\", \"unchecked\"})");
+            out.println("public class " + className + " implements SubscriberInfoIndex {");
+            out.println("    private static final Map<Class<?>, SubscriberInfo> SUBSCRIBER_INDEX;");
+            out.println();
+            out.println("    static {");
+            out.println("        SUBSCRIBER_INDEX = new HashMap<Class<?>, SubscriberInfo>();");
+            int methodId = 0;
+            for (Map.Entry<TypeElement, List<ExecutableElement>> entry : methodsByClass.entrySet()) {
+                out.println();
+                out.println("        putIndex(new SimpleSubscriberInfo(" + getClassLiteral(entry.getKey().asType())
+                        + ", new SubscriberMethodInfo[] {");
+                for (ExecutableElement method : entry.getValue()) {
+                    String methodName = method.getSimpleName().toString();
+                    out.println("            new SubscriberMethodInfo(\"" + methodName + "\", ThreadMode."
+                            + getThreadMode(methodName) + ", " + getClassLiteral(getEventType(method))
+                            + ", new Invoker(" + methodId + ")" + (isCoalesce(method) ? ", true" : "") + "),");
+                    methodId++;
+                }
+                out.println("        }));");
+            }
+            out.println("    }");
+            out.println();
+            out.println("    private static void putIndex(SubscriberInfo info) {");
+            out.println("        SUBSCRIBER_INDEX.put(info.getSubscriberClass(), info);");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public SubscriberInfo getSubscriberInfo(Class<?> subscriberClass) {");
+            out.println("        return SUBSCRIBER_INDEX.get(subscriberClass);");
+            out.println("    }");
+            writeInvoker(out);
+            out.println("}");
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * 生成调用器，所有订阅方法共用一个类，按照方法的序号直接调用，避免为每个方法生成一个类
+     */
+    private void writeInvoker(PrintWriter out) {
+        out.println();
+        out.println("    private static final class Invoker implements SubscriberInvoker {");
+        out.println("        private final int methodId;");
+        out.println();
+        out.println("        Invoker(int methodId) {");
+        out.println("            this.methodId = methodId;");
+        out.println("        }");
+        out.println();
+        out.println("        @Override");
+        out.println("        public void invoke(Object subscriber, Object event) throws Throwable {");
+        out.println("            switch (methodId) {");
+        int methodId = 0;
+        for (Map.Entry<TypeElement, List<ExecutableElement>> entry : methodsByClass.entrySet()) {
+            String subscriberType = processingEnv.getTypeUtils().erasure(entry.getKey().asType()).toString();
+            for (ExecutableElement method : entry.getValue()) {
+                String eventType = getEventType(method).toString();
+                out.println("            case " + methodId + ":");
+                out.println("                ((" + subscriberType + ") subscriber)." + method.getSimpleName()
+                        + "((" + eventType + ") event);");
+                out.println("                break;");
+                methodId++;
+            }
+        }
+        out.println("            default:");
+        out.println("                throw new IllegalStateException(\"Unknown method id: \" + methodId);");
+        out.println("            }");
+        out.println("        }");
+        out.println("    }");
+    }
+
+    /**
+     * 读取注解的coalesce属性
+     */
+    private static boolean isCoalesce(ExecutableElement method) {
+        for (AnnotationMirror annotation : method.getAnnotationMirrors()) {
+            TypeElement annotationType = (TypeElement) annotation.getAnnotationType().asElement();
+            if (!annotationType.getQualifiedName().contentEquals(SUBSCRIBE_ANNOTATION)) {
+                continue;
+            }
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+                    : annotation.getElementValues().entrySet()) {
+                if (entry.getKey().getSimpleName().contentEquals("coalesce")) {
+                    return Boolean.TRUE.equals(entry.getValue().getValue());
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 得到订阅方法的事件类型，即参数擦除泛型后的类型
+     */
+    private TypeMirror getEventType(ExecutableElement method) {
+        VariableElement param = method.getParameters().get(0);
+        return processingEnv.getTypeUtils().erasure(param.asType());
+    }
+
+    /**
+     * 得到类型在源代码中的class字面量
+     */
+    private String getClassLiteral(TypeMirror type) {
+        return processingEnv.getTypeUtils().erasure(type).toString() + ".class";
+    }
+
+    /**
+     * 根据方法名得到执行的线程，与运行时的反射查找规则一致
+     * 
+     * @return ThreadMode的枚举名，方法名不合法时返回null
+     */
+    private static String getThreadMode(String methodName) {
+        String modifierString = methodName.substring(ON_EVENT_METHOD_NAME.length());
+        if (modifierString.length() == 0) {
+            return "PostThread";
+        } else if (modifierString.equals("MainThread")) {
+            return "MainThread";
+        } else if (modifierString.equals("BackgroundThread")) {
+            return "BackgroundThread";
+        } else if (modifierString.equals("Async")) {
+            return "Async";
+        }
+        return null;
+    }
+
+    private static PackageElement getPackageElement(Element element) {
+        while (!(element instanceof PackageElement)) {
+            element = element.getEnclosingElement();
+        }
+        return (PackageElement) element;
+    }
+
+    private static String getPackageName(String className) {
+        int period = className.lastIndexOf('.');
+        return (period > 0) ? className.substring(0, period) : "";
+    }
+}
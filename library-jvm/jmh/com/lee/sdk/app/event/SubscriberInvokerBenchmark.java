@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2014 Baidu Inc. All rights reserved.
+ */
+
+package com.lee.sdk.app.event;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * 比较订阅者索引生成的{@link SubscriberInvoker}和反射调用订阅方法的吞吐量，结果是每秒分发的事件数。
+ * 分发的代码与EventBus#invokeSubscriberMethod()相同，索引由event-processor在编译时生成：
+ * 
+ * <pre class="prettyprint">
+ * ./gradlew :library-jvm:jmh -PjmhArgs="SubscriberInvokerBenchmark -f 1"
+ * </pre>
+ * 
+ * @author lihong06
+ * @since 2014-11-20
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class SubscriberInvokerBenchmark {
+    /** 每次调用分发的事件数 */
+    private static final int EVENT_COUNT = 1000;
+
+    /** 订阅者 */
+    private final ProgressSubscriber subscriber = new ProgressSubscriber();
+    /** 事件 */
+    private final ProgressEvent[] events = new ProgressEvent[EVENT_COUNT];
+    /** 索引中的订阅方法，通过生成的调用器调用 */
+    private SubscriberMethod indexedMethod;
+    /** 反射得到的订阅方法 */
+    private SubscriberMethod reflectiveMethod;
+
+    @Setup
+    public void setUp() throws NoSuchMethodException {
+        SubscriberInfo info = new BenchmarkEventBusIndex().getSubscriberInfo(ProgressSubscriber.class);
+        if (info == null) {
+            throw new IllegalStateException("The subscriber index is not generated, check the annotation processor");
+        }
+
+        SubscriberMethodInfo methodInfo = info.getSubscriberMethodInfos()[0];
+        Method method = ProgressSubscriber.class.getMethod(methodInfo.methodName, methodInfo.eventType);
+        indexedMethod = new SubscriberMethod(method, methodInfo.threadMode, methodInfo.eventType, methodInfo.invoker,
+                methodInfo.coalesce);
+        reflectiveMethod = new SubscriberMethod(method, methodInfo.threadMode, methodInfo.eventType, false);
+
+        for (int i = 0; i < EVENT_COUNT; ++i) {
+            events[i] = new ProgressEvent(i);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENT_COUNT)
+    public long invoker() {
+        return dispatch(indexedMethod);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENT_COUNT)
+    public long reflective() {
+        return dispatch(reflectiveMethod);
+    }
+
+    /**
+     * 把所有的事件分发给订阅者
+     * 
+     * @param subscriberMethod 订阅方法
+     * @return 订阅者收到的进度之和
+     */
+    private long dispatch(SubscriberMethod subscriberMethod) {
+        for (ProgressEvent event : events) {
+            invokeSubscriberMethod(subscriberMethod, event);
+        }
+        return subscriber.sum;
+    }
+
+    /**
+     * 与EventBus#invokeSubscriberMethod()相同的分发代码
+     */
+    private void invokeSubscriberMethod(SubscriberMethod subscriberMethod, Object event) {
+        SubscriberInvoker invoker = subscriberMethod.invoker;
+        if (invoker != null) {
+            try {
+                invoker.invoke(subscriber, event);
+            } catch (Throwable e) {
+                throw new EventBusException(e);
+            }
+            return;
+        }
+
+        try {
+            subscriberMethod.method.invoke(subscriber, event);
+        } catch (InvocationTargetException e) {
+            throw new EventBusException(e.getCause());
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Unexpected exception", e);
+        }
+    }
+
+    /**
+     * 高频的进度事件
+     */
+    public static final class ProgressEvent {
+        /** 进度 */
+        final int progress;
+
+        ProgressEvent(int progress) {
+            this.progress = progress;
+        }
+    }
+
+    /**
+     * 订阅进度事件
+     */
+    public static final class ProgressSubscriber {
+        /** 收到的进度之和 */
+        long sum;
+
+        @Subscribe
+        public void onEvent(ProgressEvent event) {
+            sum += event.progress;
+        }
+    }
+}
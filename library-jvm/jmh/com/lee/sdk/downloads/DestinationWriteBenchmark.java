@@ -0,0 +1,231 @@
+package com.lee.sdk.downloads;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Downloads a file from a local server through the destination write path of
+ * {@link DownloadThread}, before and after the file is kept open. One operation is one MB, so
+ * the score is in MB/s.
+ * 
+ * <pre>
+ * ./gradlew :library-jvm:jmh -PjmhArgs="DestinationWriteBenchmark -f 1"
+ * </pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class DestinationWriteBenchmark {
+    /** The size of the downloaded file, in MB. */
+    private static final int SIZE_MB = 32;
+
+    /** The size of the downloaded file. */
+    private static final int SIZE = SIZE_MB * 1024 * 1024;
+
+    /** The buffer size of the old write path. */
+    private static final int LEGACY_BUFFER_SIZE = 4096;
+
+    /** The local server. */
+    private ServerSocket mServer;
+
+    /** The thread serving the file. */
+    private Thread mServerThread;
+
+    /** The destination file. */
+    private File mFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        mFile = File.createTempFile("download", ".bin");
+        mServer = new ServerSocket(0, 1, InetAddress.getByName("127.0.0.1"));
+        mServerThread = new Thread("DestinationWriteBenchmark:server") {
+            @Override
+            public void run() {
+                byte[] data = new byte[Constants.BUFFER_SIZE];
+                while (!mServer.isClosed()) {
+                    try {
+                        Socket socket = mServer.accept();
+                        try {
+                            OutputStream out = socket.getOutputStream();
+                            for (int sent = 0; sent < SIZE; sent += data.length) {
+                                out.write(data, 0, Math.min(data.length, SIZE - sent));
+                            }
+                        } finally {
+                            socket.close();
+                        }
+                    } catch (IOException e) {
+                        // closed by tearDown()
+                    }
+                }
+            }
+        };
+        mServerThread.start();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException, InterruptedException {
+        mServer.close();
+        mServerThread.join();
+        mFile.delete();
+    }
+
+    /**
+     * The old path: 4 KB reads, and the destination is opened and closed for every chunk. It is no
+     * longer in {@link DownloadThread}, so it is kept here as the baseline.
+     * 
+     * @return the downloaded bytes
+     * @throws IOException IOException
+     */
+    @Benchmark
+    @OperationsPerInvocation(SIZE_MB)
+    public long reopenPerChunk() throws IOException {
+        new FileOutputStream(mFile).close();
+        byte[] data = new byte[LEGACY_BUFFER_SIZE];
+        long bytesSoFar = 0;
+        Socket socket = connect();
+        try {
+            InputStream in = socket.getInputStream();
+            for (;;) {
+                int bytesRead = in.read(data);
+                if (bytesRead == -1) {
+                    break;
+                }
+                FileOutputStream stream = new FileOutputStream(mFile, true);
+                try {
+                    stream.write(data, 0, bytesRead);
+                } finally {
+                    stream.close();
+                }
+                bytesSoFar += bytesRead;
+            }
+        } finally {
+            socket.close();
+        }
+
+        FileOutputStream stream = new FileOutputStream(mFile, true);
+        try {
+            stream.getFD().sync();
+        } finally {
+            stream.close();
+        }
+        return bytesSoFar;
+    }
+
+    /**
+     * The current path: the {@link BufferedTransfer} loop of {@link DownloadThread}, writing to
+     * one preallocated channel, with a sync at the progress checkpoints.
+     * 
+     * @return the downloaded bytes
+     * @throws IOException IOException
+     */
+    @Benchmark
+    @OperationsPerInvocation(SIZE_MB)
+    public long keepChannelOpen() throws IOException {
+        RandomAccessFile file = new RandomAccessFile(mFile, "rw");
+        Socket socket = connect();
+        try {
+            file.setLength(SIZE);
+            ChannelTransfer transfer = new ChannelTransfer(socket.getInputStream(), file.getChannel());
+            transfer.run();
+            transfer.mChannel.force(true);
+            return transfer.mBytesSoFar;
+        } finally {
+            socket.close();
+            file.close();
+        }
+    }
+
+    /**
+     * Connect to the local server.
+     * 
+     * @return the socket
+     * @throws IOException IOException
+     */
+    private Socket connect() throws IOException {
+        return new Socket(mServer.getInetAddress(), mServer.getLocalPort());
+    }
+
+    /**
+     * Writes the socket data to the channel, and syncs it where {@link DownloadThread} reports the
+     * progress.
+     */
+    private static final class ChannelTransfer extends BufferedTransfer<IOException> {
+        /** The source. */
+        private final InputStream mIn;
+
+        /** The destination. */
+        private final FileChannel mChannel;
+
+        /** The bytes written. */
+        private long mBytesSoFar;
+
+        /** The bytes written at the last checkpoint. */
+        private long mBytesNotified;
+
+        /** The time of the last checkpoint. */
+        private long mTimeLastNotification;
+
+        /**
+         * @param in the source
+         * @param channel the destination
+         */
+        ChannelTransfer(InputStream in, FileChannel channel) {
+            mIn = in;
+            mChannel = channel;
+        }
+
+        @Override
+        protected int read(ByteBuffer buffer) throws IOException {
+            int bytesRead = mIn.read(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            if (bytesRead > 0) {
+                buffer.position(buffer.position() + bytesRead);
+            }
+            return bytesRead;
+        }
+
+        @Override
+        protected void write(ByteBuffer buffer) throws IOException {
+            long position = mBytesSoFar;
+            while (buffer.hasRemaining()) {
+                position += mChannel.write(buffer, position);
+            }
+            mBytesSoFar = position;
+        }
+
+        @Override
+        protected void onFlushed() throws IOException {
+            long now = currentTimeMillis();
+            if (mBytesSoFar - mBytesNotified > Constants.MIN_PROGRESS_STEP
+                    && now - mTimeLastNotification > Constants.MIN_PROGRESS_TIME) {
+                mChannel.force(true);
+                mBytesNotified = mBytesSoFar;
+                mTimeLastNotification = now;
+            }
+        }
+
+        @Override
+        protected long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2013 Lee Hong (http://blog.csdn.net/leehong2005)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lee.sdk.task;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.lee.sdk.task.Task.RunningStatus;
+
+/**
+ * The throughput of the {@link TaskManager} chains on {@link ExecutorTaskScheduler}, run with
+ * <code>gradle :library-jvm:jmh</code>.
+ *
+ * @author LeeHong
+ *
+ * @since 2013/11/20
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class TaskManagerBenchmark {
+    /**
+     * The count of the tasks in one chain.
+     */
+    @Param({ "16" })
+    public int mTaskCount;
+
+    /**
+     * The scheduler.
+     */
+    private ExecutorTaskScheduler mScheduler;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        mScheduler = new ExecutorTaskScheduler();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        mScheduler.shutdown();
+    }
+
+    /**
+     * All tasks run in the work thread.
+     *
+     * @return The result.
+     */
+    @Benchmark
+    public TaskOperation workChain() {
+        TaskManager taskManager = new TaskManager("Work", true, mScheduler);
+        for (int i = 0; i < mTaskCount; ++i) {
+            taskManager.next(new CountTask(RunningStatus.WORK_THREAD));
+        }
+        return run(taskManager);
+    }
+
+    /**
+     * The tasks switch between the main thread and the work thread.
+     *
+     * @return The result.
+     */
+    @Benchmark
+    public TaskOperation alternatingChain() {
+        TaskManager taskManager = new TaskManager("Alternating", true, mScheduler);
+        for (int i = 0; i < mTaskCount; ++i) {
+            taskManager.next(new CountTask((i & 1) == 0 ? RunningStatus.WORK_THREAD : RunningStatus.UI_THREAD));
+        }
+        return run(taskManager);
+    }
+
+    /**
+     * All tasks run in one parallel stage.
+     *
+     * @return The result.
+     */
+    @Benchmark
+    public TaskOperation parallelStage() {
+        TaskManager taskManager = new TaskManager("Parallel", true, mScheduler);
+        Task[] tasks = new Task[mTaskCount];
+        for (int i = 0; i < mTaskCount; ++i) {
+            tasks[i] = new CountTask(RunningStatus.WORK_THREAD);
+        }
+        taskManager.nextParallel(tasks);
+        return run(taskManager);
+    }
+
+    /**
+     * Execute the task manager and wait for it.
+     *
+     * @param taskManager The task manager.
+     * @return The result.
+     */
+    private static TaskOperation run(TaskManager taskManager) {
+        taskManager.execute(new TaskOperation());
+        taskManager.join();
+        return taskManager.getTaskOperation();
+    }
+
+    /**
+     * The task appending its running status to the operation.
+     */
+    private static class CountTask extends Task {
+        /**
+         * The constructor method.
+         *
+         * @param status The running status.
+         */
+        CountTask(RunningStatus status) {
+            super(status);
+        }
+
+        @Override
+        public TaskOperation onExecute(TaskOperation operation) {
+            operation.appendTaskParam(getRunningStatus());
+            return operation;
+        }
+    }
+}
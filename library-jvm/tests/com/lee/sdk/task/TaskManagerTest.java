@@ -0,0 +1,388 @@
+/*
+ * Copyright (C) 2013 Lee Hong (http://blog.csdn.net/leehong2005)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lee.sdk.task;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.lee.sdk.task.Task.RunningStatus;
+
+/**
+ * The tests of the {@link TaskManager} running on the plain JVM with {@link ExecutorTaskScheduler},
+ * android.jar is not on the runtime classpath.
+ *
+ * @author LeeHong
+ *
+ * @since 2013/11/20
+ */
+public class TaskManagerTest {
+    /**
+     * The timeout of waiting for the task manager, in seconds.
+     */
+    private static final long TIMEOUT = 10;
+
+    /**
+     * The scheduler.
+     */
+    private ExecutorTaskScheduler mScheduler;
+
+    @Before
+    public void setUp() {
+        mScheduler = new ExecutorTaskScheduler();
+        TaskResultCache.clear();
+    }
+
+    @After
+    public void tearDown() {
+        mScheduler.shutdown();
+    }
+
+    @Test
+    public void testChainPassesOperationAcrossThreads() {
+        final AtomicReference<Thread> uiThread = new AtomicReference<Thread>();
+        final TaskManager taskManager = new TaskManager("Chain", true, mScheduler);
+        taskManager.next(new AppendTask(RunningStatus.WORK_THREAD, "a"))
+                .next(new AppendTask(RunningStatus.UI_THREAD, "b") {
+                    @Override
+                    public TaskOperation onExecute(TaskOperation operation) {
+                        uiThread.set(Thread.currentThread());
+                        return super.onExecute(operation);
+                    }
+                })
+                .next(new AppendTask(RunningStatus.WORK_THREAD, "c"));
+
+        taskManager.execute();
+        taskManager.join();
+
+        assertTrue(taskManager.isFinished());
+        assertEquals("TaskScheduler_Main", uiThread.get().getName());
+        assertArrayEquals(new Object[] { "a", "b", "c" }, taskManager.getTaskOperation().getTaskParams());
+    }
+
+    @Test
+    public void testResultCacheUsesSchedulerClock() {
+        final AtomicInteger executed = new AtomicInteger(0);
+        for (int i = 0; i < 2; ++i) {
+            final TaskManager taskManager = new TaskManager("Cache", true, mScheduler);
+            taskManager.next(new Task(RunningStatus.WORK_THREAD) {
+                @Override
+                public TaskOperation onExecute(TaskOperation operation) {
+                    executed.incrementAndGet();
+                    operation.appendTaskParam("result");
+                    return operation;
+                }
+
+                @Override
+                protected Object getResultCacheKey(TaskOperation operation) {
+                    return "key";
+                }
+            });
+
+            taskManager.execute(new TaskOperation());
+            taskManager.join();
+
+            assertArrayEquals(new Object[] { "result" }, taskManager.getTaskOperation().getTaskParams());
+        }
+
+        assertEquals(1, executed.get());
+    }
+
+    @Test
+    public void testResultCacheSkipsOversizedResult() {
+        final AtomicInteger executed = new AtomicInteger(0);
+        for (int i = 0; i < 2; ++i) {
+            final TaskManager taskManager = new TaskManager("Oversized", true, mScheduler);
+            taskManager.next(new Task(RunningStatus.WORK_THREAD) {
+                @Override
+                public TaskOperation onExecute(TaskOperation operation) {
+                    executed.incrementAndGet();
+                    return operation;
+                }
+
+                @Override
+                protected Object getResultCacheKey(TaskOperation operation) {
+                    return "key";
+                }
+
+                @Override
+                protected long getResultSize(TaskOperation result) {
+                    return Long.MAX_VALUE;
+                }
+            });
+
+            taskManager.execute(new TaskOperation());
+            taskManager.join();
+        }
+
+        assertEquals(2, executed.get());
+    }
+
+    @Test
+    public void testParallelStageJoinsAddedParams() {
+        final TaskManager taskManager = new TaskManager("Parallel", true, mScheduler);
+        taskManager.nextParallel(new AppendTask(RunningStatus.WORK_THREAD, "a"),
+                new AppendTask(RunningStatus.UI_THREAD, "b"),
+                new AppendTask(RunningStatus.WORK_THREAD, "c"));
+
+        taskManager.execute(new TaskOperation(new Object[] { "input" }));
+        taskManager.join();
+
+        assertArrayEquals(new Object[] { "input", "a", "b", "c" },
+                taskManager.getTaskOperation().getTaskParams());
+    }
+
+    @Test
+    public void testErrorInParallelSiblingDoesNotStallChain() throws InterruptedException {
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final CountDownLatch finished = new CountDownLatch(1);
+        final TaskManager taskManager = new TaskManager("Error", true, mScheduler);
+        final Task failing = new Task(RunningStatus.WORK_THREAD) {
+            @Override
+            public TaskOperation onExecute(TaskOperation operation) {
+                throw new ExceptionInInitializerError("failed to initialize");
+            }
+        };
+        taskManager.setTaskListener(new TaskManager.ITaskListener() {
+            @Override
+            public void onTaskFinished(TaskManager taskManager, Task task, Throwable cause) {
+                if (task == failing) {
+                    failure.set(cause);
+                }
+                if (RunningStatus.UI_THREAD == task.getRunningStatus()) {
+                    finished.countDown();
+                }
+            }
+        });
+        taskManager.nextParallel(failing, new AppendTask(RunningStatus.WORK_THREAD, "a"))
+                .next(new AppendTask(RunningStatus.UI_THREAD, "b"));
+
+        taskManager.execute();
+
+        assertTrue(finished.await(TIMEOUT, TimeUnit.SECONDS));
+        assertTrue(failure.get() instanceof ExceptionInInitializerError);
+    }
+
+    @Test
+    public void testConcurrentProducersRunEveryTask() throws InterruptedException {
+        final int producerCount = 8;
+        final int taskCount = 2000;
+        final AtomicInteger executed = new AtomicInteger(0);
+        final TaskManager taskManager = new TaskManager("Producers", false, mScheduler);
+        final CountDownLatch start = new CountDownLatch(1);
+        final Thread[] producers = new Thread[producerCount];
+        for (int i = 0; i < producerCount; ++i) {
+            producers[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int j = 0; j < taskCount; ++j) {
+                        RunningStatus status = (j & 1) == 0 ? RunningStatus.WORK_THREAD : RunningStatus.UI_THREAD;
+                        taskManager.next(new CountTask(status, executed)).execute();
+                    }
+                }
+            };
+            producers[i].start();
+        }
+
+        start.countDown();
+        for (Thread producer : producers) {
+            producer.join();
+        }
+
+        final long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT);
+        while (executed.get() < producerCount * taskCount && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(producerCount * taskCount, executed.get());
+    }
+
+    @Test
+    public void testTimeoutInterruptsWorkThreadWhileMainThreadIsBusy() throws InterruptedException {
+        final CountDownLatch mainBusy = new CountDownLatch(1);
+        final CountDownLatch mainStarted = new CountDownLatch(1);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        final CountDownLatch finished = new CountDownLatch(1);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final TaskManager taskManager = new TaskManager("Timeout", true, mScheduler);
+        final Task task = new Task(RunningStatus.WORK_THREAD) {
+            @Override
+            public TaskOperation onExecute(TaskOperation operation) {
+                // Keep the main thread busy longer than the timeout.
+                mScheduler.runOnMainThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        mainStarted.countDown();
+                        try {
+                            mainBusy.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                });
+                try {
+                    mainStarted.await();
+                    Thread.sleep(TimeUnit.SECONDS.toMillis(TIMEOUT));
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+                return operation;
+            }
+        };
+        task.setTimeout(50);
+        taskManager.setTaskListener(new TaskManager.ITaskListener() {
+            @Override
+            public void onTaskFinished(TaskManager taskManager, Task finishedTask, Throwable cause) {
+                failure.set(cause);
+                finished.countDown();
+            }
+        });
+        taskManager.next(task);
+
+        taskManager.execute();
+        try {
+            assertTrue(interrupted.await(TIMEOUT, TimeUnit.SECONDS));
+        } finally {
+            mainBusy.countDown();
+        }
+
+        assertTrue(finished.await(TIMEOUT, TimeUnit.SECONDS));
+        assertTrue(failure.get() instanceof TimeoutException);
+    }
+
+    @Test
+    public void testRetryRunsFailedTaskAgain() {
+        final AtomicInteger attempts = new AtomicInteger(0);
+        final TaskManager taskManager = new TaskManager("Retry", true, mScheduler);
+        final Task task = new Task(RunningStatus.WORK_THREAD) {
+            @Override
+            public TaskOperation onExecute(TaskOperation operation) {
+                if (attempts.incrementAndGet() < 3) {
+                    throw new IllegalStateException("failed attempt " + attempts.get());
+                }
+                operation.appendTaskParam("done");
+                return operation;
+            }
+        };
+        task.setRetryPolicy(new RetryPolicy(3, 1, 1.0f, 1, 0.0f));
+        taskManager.next(task);
+
+        taskManager.execute(new TaskOperation());
+        taskManager.join();
+
+        assertEquals(3, attempts.get());
+        assertArrayEquals(new Object[] { "done" }, taskManager.getTaskOperation().getTaskParams());
+    }
+
+    @Test
+    public void testCancelInterruptsRunningTaskAndSkipsTheRest() throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        final AtomicInteger executed = new AtomicInteger(0);
+        final TaskManager taskManager = new TaskManager("Cancel", true, mScheduler);
+        taskManager.next(new Task(RunningStatus.WORK_THREAD) {
+            @Override
+            public TaskOperation onExecute(TaskOperation operation) {
+                started.countDown();
+                try {
+                    Thread.sleep(TimeUnit.SECONDS.toMillis(TIMEOUT));
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+                return operation;
+            }
+        }).next(new CountTask(RunningStatus.WORK_THREAD, executed));
+
+        taskManager.execute();
+        assertTrue(started.await(TIMEOUT, TimeUnit.SECONDS));
+        taskManager.cancel();
+        taskManager.join();
+
+        assertTrue(interrupted.await(TIMEOUT, TimeUnit.SECONDS));
+        assertTrue(taskManager.isCancelled());
+        assertEquals(0, executed.get());
+    }
+
+    /**
+     * The task counting its executions.
+     */
+    private static class CountTask extends Task {
+        /**
+         * The counter.
+         */
+        private final AtomicInteger mCounter;
+
+        /**
+         * The constructor method.
+         *
+         * @param status The running status.
+         * @param counter The counter.
+         */
+        CountTask(RunningStatus status, AtomicInteger counter) {
+            super(status);
+            mCounter = counter;
+        }
+
+        @Override
+        public TaskOperation onExecute(TaskOperation operation) {
+            mCounter.incrementAndGet();
+            return operation;
+        }
+    }
+
+    /**
+     * The task appending a parameter to the operation.
+     */
+    private static class AppendTask extends Task {
+        /**
+         * The parameter.
+         */
+        private final Object mParam;
+
+        /**
+         * The constructor method.
+         *
+         * @param status The running status.
+         * @param param The parameter.
+         */
+        AppendTask(RunningStatus status, Object param) {
+            super(status);
+            mParam = param;
+        }
+
+        @Override
+        public TaskOperation onExecute(TaskOperation operation) {
+            operation.appendTaskParam(mParam);
+            return operation;
+        }
+    }
+}
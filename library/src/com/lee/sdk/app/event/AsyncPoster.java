@@ -17,34 +17,130 @@ package com.lee.sdk.app.event;
 
 //CHECKSTYLE:OFF
 
+import java.util.List;
+
 /**
- * Posts events in background.
+ * Posts events in background. At most {@link #MAX_RUNNERS} runners drain the queue, so posts dropped from the queue or
+ * waiting in it don't pile up as runnables in the executor.
  * 
  * @author Markus
  */
 class AsyncPoster implements Runnable {
 
+    /** The count of the runners delivering Async events in parallel, the size of the default pool too */
+    static final int MAX_RUNNERS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
     private final PendingPostQueue queue;
     private final EventBus eventBus;
+    private final int queueLimit;
+    private final BackpressurePolicy backpressurePolicy;
+    private final PosterStats stats = new PosterStats(ThreadMode.Async);
 
-    AsyncPoster(EventBus eventBus) {
+    /** The count of the runners submitted to the executor, guarded by this */
+    private int runners;
+
+    AsyncPoster(EventBus eventBus, int queueLimit, BackpressurePolicy backpressurePolicy) {
         this.eventBus = eventBus;
+        this.queueLimit = queueLimit;
+        this.backpressurePolicy = backpressurePolicy;
         queue = new PendingPostQueue();
     }
 
-    public void enqueue(Subscription subscription, Object event) {
+    public void enqueue(Subscription subscription, Object event, boolean isMainThread) {
         PendingPost pendingPost = PendingPost.obtainPendingPost(subscription, event);
-        queue.enqueue(pendingPost);
-        eventBus.getExecutorService().execute(this);
+        if (!queue.offer(pendingPost, queueLimit, backpressurePolicy, stats, canBlock(isMainThread))) {
+            PendingPost.releasePendingPost(pendingPost);
+            eventBus.invokeSubscriber(subscription, event);
+            return;
+        }
+        startRunner();
+    }
+
+    /** Enqueues the pending posts of a batch, one by one if the queue is bounded */
+    void enqueueAll(List<PendingPost> pendingPosts, boolean isMainThread) {
+        int count = pendingPosts.size();
+        if (queueLimit == Integer.MAX_VALUE) {
+            queue.enqueueAll(pendingPosts);
+            for (int i = 0; i < count; i++) {
+                if (!startRunner()) {
+                    break;
+                }
+            }
+        } else {
+            boolean canBlock = canBlock(isMainThread);
+            for (int i = 0; i < count; i++) {
+                PendingPost pendingPost = pendingPosts.get(i);
+                if (queue.offer(pendingPost, queueLimit, backpressurePolicy, stats, canBlock)) {
+                    startRunner();
+                } else {
+                    Subscription subscription = pendingPost.subscription;
+                    Object event = pendingPost.event;
+                    PendingPost.releasePendingPost(pendingPost);
+                    eventBus.invokeSubscriber(subscription, event);
+                }
+            }
+        }
+    }
+
+    /** An Async subscriber posting Async events would block the pool thread which has to drain the queue */
+    private static boolean canBlock(boolean isMainThread) {
+        return !isMainThread && !PendingPostQueue.isDeliveryThread();
+    }
+
+    /** @return false if all the runners are running already */
+    private boolean startRunner() {
+        synchronized (this) {
+            if (runners >= MAX_RUNNERS) {
+                return false;
+            }
+            runners++;
+        }
+        try {
+            eventBus.getExecutorService().execute(this);
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                runners--;
+            }
+            throw e;
+        }
+        return true;
     }
 
     @Override
     public void run() {
-        PendingPost pendingPost = queue.poll();
-        if(pendingPost == null) {
-            throw new IllegalStateException("No pending post available");
+        boolean delivering = PendingPostQueue.enterDelivery();
+        boolean idle = false;
+        try {
+            while (true) {
+                PendingPost pendingPost;
+                synchronized (this) {
+                    // Polled in synchronized, a post enqueued after this poll starts a new runner
+                    pendingPost = queue.poll();
+                    if (pendingPost == null) {
+                        runners--;
+                        idle = true;
+                        return;
+                    }
+                }
+                stats.onDeliver(pendingPost);
+                eventBus.invokeSubscriber(pendingPost);
+            }
+        } finally {
+            PendingPostQueue.exitDelivery(delivering);
+            if (!idle) {
+                // A subscriber threw, hand the rest of the queue to another runner
+                synchronized (this) {
+                    runners--;
+                }
+                if (queue.size() > 0) {
+                    startRunner();
+                }
+            }
         }
-        eventBus.invokeSubscriber(pendingPost);
+    }
+
+    PosterMetrics getMetrics() {
+        return stats.snapshot(queue.size(), queueLimit);
     }
 
 }
@@ -17,6 +17,8 @@ package com.lee.sdk.app.event;
 
 //CHECKSTYLE:OFF
 
+import java.util.List;
+
 import android.util.Log;
 
 /**
@@ -28,18 +30,60 @@ final class BackgroundPoster implements Runnable {
 
     private final PendingPostQueue queue;
     private final EventBus eventBus;
+    private final int queueLimit;
+    private final BackpressurePolicy backpressurePolicy;
+    private final PosterStats stats = new PosterStats(ThreadMode.BackgroundThread);
 
     private volatile boolean executorRunning;
 
-    BackgroundPoster(EventBus eventBus) {
+    BackgroundPoster(EventBus eventBus, int queueLimit, BackpressurePolicy backpressurePolicy) {
         this.eventBus = eventBus;
+        this.queueLimit = queueLimit;
+        this.backpressurePolicy = backpressurePolicy;
         queue = new PendingPostQueue();
     }
 
-    public void enqueue(Subscription subscription, Object event) {
+    public void enqueue(Subscription subscription, Object event, boolean isMainThread) {
         PendingPost pendingPost = PendingPost.obtainPendingPost(subscription, event);
+        if (!queue.offer(pendingPost, queueLimit, backpressurePolicy, stats, canBlock(isMainThread))) {
+            PendingPost.releasePendingPost(pendingPost);
+            eventBus.invokeSubscriber(subscription, event);
+            return;
+        }
+        startExecutor();
+    }
+
+    /**
+     * Enqueues the pending posts of a batch, one by one if the queue is bounded. The executor is started after each
+     * offer, otherwise a BLOCK offer would wait for a queue nobody drains.
+     */
+    void enqueueAll(List<PendingPost> pendingPosts, boolean isMainThread) {
+        if (queueLimit == Integer.MAX_VALUE) {
+            queue.enqueueAll(pendingPosts);
+            startExecutor();
+        } else {
+            boolean canBlock = canBlock(isMainThread);
+            for (int i = 0, count = pendingPosts.size(); i < count; i++) {
+                PendingPost pendingPost = pendingPosts.get(i);
+                if (queue.offer(pendingPost, queueLimit, backpressurePolicy, stats, canBlock)) {
+                    startExecutor();
+                } else {
+                    Subscription subscription = pendingPost.subscription;
+                    Object event = pendingPost.event;
+                    PendingPost.releasePendingPost(pendingPost);
+                    eventBus.invokeSubscriber(subscription, event);
+                }
+            }
+        }
+    }
+
+    /** Blocking the main thread stalls the UI, blocking a delivery thread may wait for the thread itself */
+    private static boolean canBlock(boolean isMainThread) {
+        return !isMainThread && !PendingPostQueue.isDeliveryThread();
+    }
+
+    private void startExecutor() {
         synchronized (this) {
-            queue.enqueue(pendingPost);
             if (!executorRunning) {
                 executorRunning = true;
                 eventBus.getExecutorService().execute(this);
@@ -49,6 +93,7 @@ final class BackgroundPoster implements Runnable {
 
     @Override
     public void run() {
+        boolean delivering = PendingPostQueue.enterDelivery();
         try {
             try {
                 while (true) {
@@ -63,6 +108,7 @@ final class BackgroundPoster implements Runnable {
                             }
                         }
                     }
+                    stats.onDeliver(pendingPost);
                     eventBus.invokeSubscriber(pendingPost);
                 }
             } catch (InterruptedException e) {
@@ -70,8 +116,13 @@ final class BackgroundPoster implements Runnable {
             }
         } finally {
             executorRunning = false;
+            PendingPostQueue.exitDelivery(delivering);
         }
     }
 
+    PosterMetrics getMetrics() {
+        return stats.snapshot(queue.size(), queueLimit);
+    }
+
 }
 //CHECKSTYLE:ON
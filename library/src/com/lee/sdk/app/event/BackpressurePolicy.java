@@ -0,0 +1,32 @@
+/*
+ * Copyright (C) 2014 Baidu Inc. All rights reserved.
+ */
+
+package com.lee.sdk.app.event;
+
+/**
+ * 后台线程和异步投递队列已满时的处理方式，参考{@link EventBusBuilder#backgroundQueueLimit(int, BackpressurePolicy)}。
+ * 
+ * @author lihong06
+ * @since 2014-11-20
+ */
+public enum BackpressurePolicy {
+    /**
+     * 阻塞发送事件的线程，直到队列有空位。发送者是主线程或者正在投递事件的线程时不会阻塞，事件超出容量进入队列，
+     * 个数记录在{@link PosterMetrics#getOverLimitCount()}中：阻塞主线程会卡住界面，投递线程等待的队列可能只有它所在的
+     * 线程池才能清空，从而死锁，而在发送线程中调用又会让订阅方法运行在错误的线程上。
+     * {@link ThreadMode#BackgroundThread}的事件只在主线程进入队列，因此这个策略对后台线程队列不限制容量，只做统计；
+     * 需要在主线程中调用的，请选择{@link #CALLER_RUNS}。
+     */
+    BLOCK,
+
+    /**
+     * 丢弃队列中最早的事件，丢弃的个数记录在{@link PosterMetrics#getDroppedCount()}中。
+     */
+    DROP_OLDEST,
+
+    /**
+     * 在发送事件的线程中直接调用订阅方法，发送者因此被减速。
+     */
+    CALLER_RUNS
+}
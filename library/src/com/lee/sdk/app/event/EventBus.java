@@ -17,17 +17,25 @@ package com.lee.sdk.app.event;
 
 //CHECKSTYLE:OFF
 
+import java.lang.ref.WeakReference;
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import com.lee.sdk.Configuration;
 
+import android.os.Handler;
 import android.os.Looper;
 import android.util.Log;
 
@@ -51,11 +59,16 @@ import android.util.Log;
     static volatile EventBus defaultInstance;
 
     private static final EventBusBuilder DEFAULT_BUILDER = new EventBusBuilder();
-    private static final Map<Class<?>, List<Class<?>>> eventTypesCache = new HashMap<Class<?>, List<Class<?>>>();
+    private static final Map<Class<?>, List<Class<?>>> eventTypesCache =
+            new ConcurrentHashMap<Class<?>, List<Class<?>>>();
 
-    private final Map<Class<?>, CopyOnWriteArrayList<Subscription>> subscriptionsByEventType;
+    /**
+     * Immutable snapshot read by post() without locking. It is replaced (copy on write) in synchronized blocks when
+     * an event type gets its first subscriber or loses its last one.
+     */
+    private volatile Map<Class<?>, CopyOnWriteArrayList<Subscription>> subscriptionsByEventType;
     private final Map<Object, List<Class<?>>> typesBySubscriber;
-    private final Map<Class<?>, Object> stickyEvents;
+    private final StickyEventStore stickyEvents;
 
     private final ThreadLocal<PostingThreadState> currentPostingThreadState = new ThreadLocal<PostingThreadState>() {
         @Override
@@ -77,6 +90,12 @@ import android.util.Log;
     private final boolean sendSubscriberExceptionEvent;
     private final boolean sendNoSubscriberEvent;
     private final boolean eventInheritance;
+    private final Set<Class<?>> coalescedEventTypes;
+    /** The counters of each subscriber method, null if the metrics are disabled */
+    private final ConcurrentHashMap<SubscriberMethod, SubscriberStats> subscriberStats;
+    private final long mainThreadBudgetNanos;
+    /** Logs the metrics periodically, null if not configured */
+    private final MetricsDumper metricsDumper;
 
     /** Convenience singleton for apps using a process-wide EventBus instance. */
     public static EventBus getDefault() {
@@ -109,13 +128,15 @@ import android.util.Log;
     }
 
     EventBus(EventBusBuilder builder) {
-        subscriptionsByEventType = new HashMap<Class<?>, CopyOnWriteArrayList<Subscription>>();
+        subscriptionsByEventType = Collections.emptyMap();
         typesBySubscriber = new HashMap<Object, List<Class<?>>>();
-        stickyEvents = new ConcurrentHashMap<Class<?>, Object>();
+        stickyEvents = new StickyEventStore(builder.maxStickyEvents, builder.stickyEventTtlMillis);
         mainThreadPoster = new HandlerPoster(this, Looper.getMainLooper(), 10);
-        backgroundPoster = new BackgroundPoster(this);
-        asyncPoster = new AsyncPoster(this);
-        subscriberMethodFinder = new SubscriberMethodFinder(builder.skipMethodVerificationForClasses);
+        backgroundPoster = new BackgroundPoster(this, builder.backgroundQueueLimit,
+                builder.backgroundBackpressurePolicy);
+        asyncPoster = new AsyncPoster(this, builder.asyncQueueLimit, builder.asyncBackpressurePolicy);
+        subscriberMethodFinder = new SubscriberMethodFinder(builder.skipMethodVerificationForClasses,
+                builder.subscriberInfoIndexes);
         logSubscriberExceptions = builder.logSubscriberExceptions;
         logNoSubscriberMessages = builder.logNoSubscriberMessages;
         sendSubscriberExceptionEvent = builder.sendSubscriberExceptionEvent;
@@ -123,6 +144,18 @@ import android.util.Log;
         throwSubscriberException = builder.throwSubscriberException;
         eventInheritance = builder.eventInheritance;
         executorService = builder.executorService;
+        coalescedEventTypes = new HashSet<Class<?>>();
+        if (builder.coalescedEventTypes != null) {
+            coalescedEventTypes.addAll(builder.coalescedEventTypes);
+        }
+        subscriberStats = builder.subscriberMetrics ? new ConcurrentHashMap<SubscriberMethod, SubscriberStats>() : null;
+        mainThreadBudgetNanos = TimeUnit.MILLISECONDS.toNanos(builder.mainThreadBudgetMillis);
+        if (subscriberStats != null && builder.metricsDumpIntervalMillis > 0) {
+            metricsDumper = new MetricsDumper(this, builder.metricsDumpIntervalMillis);
+            metricsDumper.start();
+        } else {
+            metricsDumper = null;
+        }
     }
 
 
@@ -179,25 +212,28 @@ import android.util.Log;
     private void subscribe(Object subscriber, SubscriberMethod subscriberMethod, boolean sticky, int priority) {
         Class<?> eventType = subscriberMethod.eventType;
         CopyOnWriteArrayList<Subscription> subscriptions = subscriptionsByEventType.get(eventType);
-        Subscription newSubscription = new Subscription(subscriber, subscriberMethod, priority);
+        boolean coalesce = subscriberMethod.coalesce || coalescedEventTypes.contains(eventType);
+        Subscription newSubscription = new Subscription(subscriber, subscriberMethod, priority, coalesce,
+                getSubscriberStats(subscriberMethod));
         if (subscriptions == null) {
             subscriptions = new CopyOnWriteArrayList<Subscription>();
-            subscriptionsByEventType.put(eventType, subscriptions);
+            subscriptions.add(newSubscription);
+            Map<Class<?>, CopyOnWriteArrayList<Subscription>> newSubscriptionsByEventType =
+                    new HashMap<Class<?>, CopyOnWriteArrayList<Subscription>>(subscriptionsByEventType);
+            newSubscriptionsByEventType.put(eventType, subscriptions);
+            subscriptionsByEventType = newSubscriptionsByEventType;
         } else {
             if (subscriptions.contains(newSubscription)) {
                 throw new EventBusException("Subscriber " + subscriber.getClass() + " already registered to event "
                         + eventType);
             }
-        }
 
-        // Starting with EventBus 2.2 we enforced methods to be public (might change with annotations again)
-        // subscriberMethod.method.setAccessible(true);
-
-        int size = subscriptions.size();
-        for (int i = 0; i <= size; i++) {
-            if (i == size || newSubscription.priority > subscriptions.get(i).priority) {
-                subscriptions.add(i, newSubscription);
-                break;
+            int size = subscriptions.size();
+            for (int i = 0; i <= size; i++) {
+                if (i == size || newSubscription.priority > subscriptions.get(i).priority) {
+                    subscriptions.add(i, newSubscription);
+                    break;
+                }
             }
         }
 
@@ -209,18 +245,37 @@ import android.util.Log;
         subscribedEvents.add(eventType);
 
         if (sticky) {
-            Object stickyEvent;
-            synchronized (stickyEvents) {
-                stickyEvent = stickyEvents.get(eventType);
-            }
-            if (stickyEvent != null) {
-                // If the subscriber is trying to abort the event, it will fail (event is not tracked in posting state)
-                // --> Strange corner case, which we don't take care of here.
-                postToSubscription(newSubscription, stickyEvent, Looper.getMainLooper() == Looper.myLooper());
+            // If the subscriber is trying to abort the event, it will fail (event is not tracked in posting state)
+            // --> Strange corner case, which we don't take care of here.
+            boolean isMainThread = Looper.getMainLooper() == Looper.myLooper();
+            if (eventInheritance) {
+                // The sticky events of the sub classes too, found by the index of the store
+                List<Object> stickyEventList = stickyEvents.findAssignable(eventType);
+                for (int i = 0, count = stickyEventList.size(); i < count; i++) {
+                    postToSubscription(newSubscription, stickyEventList.get(i), isMainThread);
+                }
+            } else {
+                Object stickyEvent = stickyEvents.get(eventType);
+                if (stickyEvent != null) {
+                    postToSubscription(newSubscription, stickyEvent, isMainThread);
+                }
             }
         }
     }
 
+    // Must be called in synchronized block
+    private SubscriberStats getSubscriberStats(SubscriberMethod subscriberMethod) {
+        if (subscriberStats == null) {
+            return null;
+        }
+        SubscriberStats stats = subscriberStats.get(subscriberMethod);
+        if (stats == null) {
+            stats = new SubscriberStats(subscriberMethod);
+            subscriberStats.put(subscriberMethod, stats);
+        }
+        return stats;
+    }
+
     public synchronized boolean isRegistered(Object subscriber) {
         return typesBySubscriber.containsKey(subscriber);
     }
@@ -239,6 +294,12 @@ import android.util.Log;
                     size--;
                 }
             }
+            if (subscriptions.isEmpty()) {
+                Map<Class<?>, CopyOnWriteArrayList<Subscription>> newSubscriptionsByEventType =
+                        new HashMap<Class<?>, CopyOnWriteArrayList<Subscription>>(subscriptionsByEventType);
+                newSubscriptionsByEventType.remove(eventType);
+                subscriptionsByEventType = newSubscriptionsByEventType;
+            }
         }
     }
 
@@ -258,7 +319,7 @@ import android.util.Log;
     /** Posts the given event to the event bus. */
     public void post(Object event) {
         PostingThreadState postingState = currentPostingThreadState.get();
-        List<Object> eventQueue = postingState.eventQueue;
+        ArrayDeque<Object> eventQueue = postingState.eventQueue;
         eventQueue.add(event);
 
         if (!postingState.isPosting) {
@@ -269,7 +330,7 @@ import android.util.Log;
             }
             try {
                 while (!eventQueue.isEmpty()) {
-                    postSingleEvent(eventQueue.remove(0), postingState);
+                    postSingleEvent(eventQueue.poll(), postingState);
                 }
             } finally {
                 postingState.isPosting = false;
@@ -278,6 +339,98 @@ import android.util.Log;
         }
     }
 
+    /**
+     * Posts the given events in order, like calling {@link #post(Object)} for each one. The subscriptions are resolved
+     * once per event class, and the events for each poster are enqueued as one batch, so the main thread is notified
+     * once instead of once per event.
+     */
+    public void postAll(Collection<?> events) {
+        PostingThreadState postingState = currentPostingThreadState.get();
+        if (postingState.isPosting) {
+            // Posted from a subscriber, the events are posted one by one after the current one like post()
+            postingState.eventQueue.addAll(events);
+            return;
+        }
+
+        postingState.isMainThread = Looper.getMainLooper() == Looper.myLooper();
+        postingState.isPosting = true;
+        postingState.batching = true;
+        if (postingState.canceled) {
+            throw new EventBusException("Internal error. Abort state was not reset");
+        }
+        HashMap<Class<?>, List<CopyOnWriteArrayList<Subscription>>> subscriptionsByClass =
+                new HashMap<Class<?>, List<CopyOnWriteArrayList<Subscription>>>();
+        try {
+            for (Object event : events) {
+                Class<?> eventClass = event.getClass();
+                List<CopyOnWriteArrayList<Subscription>> subscriptionLists = subscriptionsByClass.get(eventClass);
+                if (subscriptionLists == null) {
+                    subscriptionLists = findSubscriptions(eventClass);
+                    subscriptionsByClass.put(eventClass, subscriptionLists);
+                }
+
+                boolean subscriptionFound = false;
+                for (int i = 0, size = subscriptionLists.size(); i < size; i++) {
+                    subscriptionFound |= postToSubscriptions(event, postingState, subscriptionLists.get(i));
+                }
+                if (!subscriptionFound) {
+                    handleNoSubscriber(event);
+                }
+
+                // Events posted by subscribers come after this one, flush first to keep the order in the posters
+                if (!postingState.eventQueue.isEmpty()) {
+                    flushBatches(postingState);
+                    postingState.batching = false;
+                    while (!postingState.eventQueue.isEmpty()) {
+                        postSingleEvent(postingState.eventQueue.poll(), postingState);
+                    }
+                    postingState.batching = true;
+                }
+            }
+        } finally {
+            flushBatches(postingState);
+            postingState.batching = false;
+            postingState.isPosting = false;
+            postingState.isMainThread = false;
+        }
+    }
+
+    /** The subscription lists of the event class and its super types which have subscribers. */
+    private List<CopyOnWriteArrayList<Subscription>> findSubscriptions(Class<?> eventClass) {
+        List<CopyOnWriteArrayList<Subscription>> subscriptionLists = new ArrayList<CopyOnWriteArrayList<Subscription>>();
+        Map<Class<?>, CopyOnWriteArrayList<Subscription>> snapshot = subscriptionsByEventType;
+        if (eventInheritance) {
+            List<Class<?>> eventTypes = lookupAllEventTypes(eventClass);
+            for (int h = 0, countTypes = eventTypes.size(); h < countTypes; h++) {
+                CopyOnWriteArrayList<Subscription> subscriptions = snapshot.get(eventTypes.get(h));
+                if (subscriptions != null) {
+                    subscriptionLists.add(subscriptions);
+                }
+            }
+        } else {
+            CopyOnWriteArrayList<Subscription> subscriptions = snapshot.get(eventClass);
+            if (subscriptions != null) {
+                subscriptionLists.add(subscriptions);
+            }
+        }
+        return subscriptionLists;
+    }
+
+    private void flushBatches(PostingThreadState postingState) {
+        if (!postingState.mainThreadBatch.isEmpty()) {
+            mainThreadPoster.enqueueAll(postingState.mainThreadBatch);
+            postingState.mainThreadBatch.clear();
+        }
+        if (!postingState.backgroundBatch.isEmpty()) {
+            backgroundPoster.enqueueAll(postingState.backgroundBatch, postingState.isMainThread);
+            postingState.backgroundBatch.clear();
+        }
+        if (!postingState.asyncBatch.isEmpty()) {
+            asyncPoster.enqueueAll(postingState.asyncBatch, postingState.isMainThread);
+            postingState.asyncBatch.clear();
+        }
+    }
+
     /**
      * Called from a subscriber's event handling method, further event delivery will be canceled. Subsequent
      * subscribers
@@ -307,9 +460,17 @@ import android.util.Log;
      * {@link #getStickyEvent(Class)}.
      */
     public void postSticky(Object event) {
-        synchronized (stickyEvents) {
-            stickyEvents.put(event.getClass(), event);
+        postSticky(event, stickyEvents.getDefaultTtlMillis());
+    }
+
+    /**
+     * Like {@link #postSticky(Object)}, the sticky event is removed after the given time to live.
+     */
+    public void postSticky(Object event, long ttlMillis) {
+        if (ttlMillis <= 0) {
+            throw new IllegalArgumentException("Invalid time to live: " + ttlMillis);
         }
+        stickyEvents.put(event, lookupAllEventTypes(event.getClass()), ttlMillis);
         // Should be posted after it is putted, in case the subscriber wants to remove immediately
         post(event);
     }
@@ -320,9 +481,7 @@ import android.util.Log;
      * @see #postSticky(Object)
      */
     public <T> T getStickyEvent(Class<T> eventType) {
-        synchronized (stickyEvents) {
-            return eventType.cast(stickyEvents.get(eventType));
-        }
+        return eventType.cast(stickyEvents.get(eventType));
     }
 
     /**
@@ -331,9 +490,7 @@ import android.util.Log;
      * @see #postSticky(Object)
      */
     public <T> T removeStickyEvent(Class<T> eventType) {
-        synchronized (stickyEvents) {
-            return eventType.cast(stickyEvents.remove(eventType));
-        }
+        return eventType.cast(stickyEvents.remove(eventType));
     }
 
     /**
@@ -342,25 +499,14 @@ import android.util.Log;
      * @return true if the events matched and the sticky event was removed.
      */
     public boolean removeStickyEvent(Object event) {
-        synchronized (stickyEvents) {
-            Class<?> eventType = event.getClass();
-            Object existingEvent = stickyEvents.get(eventType);
-            if (event.equals(existingEvent)) {
-                stickyEvents.remove(eventType);
-                return true;
-            } else {
-                return false;
-            }
-        }
+        return stickyEvents.remove(event);
     }
 
     /**
      * Removes all sticky events.
      */
     public void removeAllStickyEvents() {
-        synchronized (stickyEvents) {
-            stickyEvents.clear();
-        }
+        stickyEvents.clear();
     }
 
     public boolean hasSubscriberForEvent(Class<?> eventClass) {
@@ -369,10 +515,7 @@ import android.util.Log;
             int countTypes = eventTypes.size();
             for (int h = 0; h < countTypes; h++) {
                 Class<?> clazz = eventTypes.get(h);
-                CopyOnWriteArrayList<Subscription> subscriptions;
-                synchronized (this) {
-                    subscriptions = subscriptionsByEventType.get(clazz);
-                }
+                CopyOnWriteArrayList<Subscription> subscriptions = subscriptionsByEventType.get(clazz);
                 if (subscriptions != null && !subscriptions.isEmpty()) {
                     return true;
                 }
@@ -395,30 +538,38 @@ import android.util.Log;
             subscriptionFound = postSingleEventForEventType(event, postingState, eventClass);
         }
         if (!subscriptionFound) {
-            if (logNoSubscriberMessages) {
-                if (DEBUG) {
-                    Log.d(TAG, "No subscribers registered for event " + eventClass);
-                }
-            }
-            if (sendNoSubscriberEvent && eventClass != NoSubscriberEvent.class &&
-                    eventClass != SubscriberExceptionEvent.class) {
-                post(new NoSubscriberEvent(this, event));
+            handleNoSubscriber(event);
+        }
+    }
+
+    private void handleNoSubscriber(Object event) {
+        Class<?> eventClass = event.getClass();
+        if (logNoSubscriberMessages) {
+            if (DEBUG) {
+                Log.d(TAG, "No subscribers registered for event " + eventClass);
             }
         }
+        if (sendNoSubscriberEvent && eventClass != NoSubscriberEvent.class &&
+                eventClass != SubscriberExceptionEvent.class) {
+            post(new NoSubscriberEvent(this, event));
+        }
     }
 
     private boolean postSingleEventForEventType(Object event, PostingThreadState postingState, Class<?> eventClass) {
-        CopyOnWriteArrayList<Subscription> subscriptions;
-        synchronized (this) {
-            subscriptions = subscriptionsByEventType.get(eventClass);
-        }
+        // Lock free, the snapshot map is never modified after it is published
+        return postToSubscriptions(event, postingState, subscriptionsByEventType.get(eventClass));
+    }
+
+    private boolean postToSubscriptions(Object event, PostingThreadState postingState,
+            CopyOnWriteArrayList<Subscription> subscriptions) {
         if (subscriptions != null && !subscriptions.isEmpty()) {
             for (Subscription subscription : subscriptions) {
                 postingState.event = event;
                 postingState.subscription = subscription;
                 boolean aborted = false;
                 try {
-                    postToSubscription(subscription, event, postingState.isMainThread);
+                    postToSubscription(subscription, event, postingState.isMainThread,
+                            postingState.batching ? postingState : null);
                     aborted = postingState.canceled;
                 } finally {
                     postingState.event = null;
@@ -435,26 +586,41 @@ import android.util.Log;
     }
 
     private void postToSubscription(Subscription subscription, Object event, boolean isMainThread) {
+        postToSubscription(subscription, event, isMainThread, null);
+    }
+
+    /** @param batch the posting state collecting the events of {@link #postAll(Collection)}, or null */
+    private void postToSubscription(Subscription subscription, Object event, boolean isMainThread,
+            PostingThreadState batch) {
         switch (subscription.subscriberMethod.threadMode) {
             case PostThread:
                 invokeSubscriber(subscription, event);
                 break;
             case MainThread:
-                if (isMainThread) {
+                // A coalesced event still queued must not be delivered after this newer one, so replace it instead
+                if (isMainThread && subscription.pendingCoalescedPost == null) {
                     invokeSubscriber(subscription, event);
+                } else if (batch != null && !subscription.coalesce) {
+                    batch.mainThreadBatch.add(PendingPost.obtainPendingPost(subscription, event));
                 } else {
                     mainThreadPoster.enqueue(subscription, event);
                 }
                 break;
             case BackgroundThread:
-                if (isMainThread) {
-                    backgroundPoster.enqueue(subscription, event);
-                } else {
+                if (!isMainThread) {
                     invokeSubscriber(subscription, event);
+                } else if (batch != null) {
+                    batch.backgroundBatch.add(PendingPost.obtainPendingPost(subscription, event));
+                } else {
+                    backgroundPoster.enqueue(subscription, event, isMainThread);
                 }
                 break;
             case Async:
-                asyncPoster.enqueue(subscription, event);
+                if (batch != null) {
+                    batch.asyncBatch.add(PendingPost.obtainPendingPost(subscription, event));
+                } else {
+                    asyncPoster.enqueue(subscription, event, isMainThread);
+                }
                 break;
             default:
                 throw new IllegalStateException("Unknown thread mode: " + subscription.subscriberMethod.threadMode);
@@ -463,20 +629,19 @@ import android.util.Log;
 
     /** Looks up all Class objects including super classes and interfaces. Should also work for interfaces. */
     private List<Class<?>> lookupAllEventTypes(Class<?> eventClass) {
-        synchronized (eventTypesCache) {
-            List<Class<?>> eventTypes = eventTypesCache.get(eventClass);
-            if (eventTypes == null) {
-                eventTypes = new ArrayList<Class<?>>();
-                Class<?> clazz = eventClass;
-                while (clazz != null) {
-                    eventTypes.add(clazz);
-                    addInterfaces(eventTypes, clazz.getInterfaces());
-                    clazz = clazz.getSuperclass();
-                }
-                eventTypesCache.put(eventClass, eventTypes);
+        List<Class<?>> eventTypes = eventTypesCache.get(eventClass);
+        if (eventTypes == null) {
+            // Racing threads compute the same list, the last one wins, which is harmless
+            eventTypes = new ArrayList<Class<?>>();
+            Class<?> clazz = eventClass;
+            while (clazz != null) {
+                eventTypes.add(clazz);
+                addInterfaces(eventTypes, clazz.getInterfaces());
+                clazz = clazz.getSuperclass();
             }
-            return eventTypes;
+            eventTypesCache.put(eventClass, eventTypes);
         }
+        return eventTypes;
     }
 
     /** Recurses through super interfaces. */
@@ -505,6 +670,38 @@ import android.util.Log;
     }
 
     void invokeSubscriber(Subscription subscription, Object event) {
+        SubscriberStats stats = subscription.stats;
+        if (stats == null) {
+            invokeSubscriberMethod(subscription, event);
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            invokeSubscriberMethod(subscription, event);
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            boolean slow = elapsed > mainThreadBudgetNanos && Looper.getMainLooper() == Looper.myLooper();
+            stats.record(elapsed, slow);
+            if (slow) {
+                Log.w(TAG, "Slow subscriber on the main thread: " + stats.getMethodName() + " took "
+                        + TimeUnit.NANOSECONDS.toMillis(elapsed) + "ms for " + event.getClass().getName());
+            }
+        }
+    }
+
+    private void invokeSubscriberMethod(Subscription subscription, Object event) {
+        SubscriberInvoker invoker = subscription.subscriberMethod.invoker;
+        if (invoker != null) {
+            // Plain interface call generated by the subscriber index, no reflection
+            try {
+                invoker.invoke(subscription.subscriber, event);
+            } catch (Throwable e) {
+                handleSubscriberException(subscription, event, e);
+            }
+            return;
+        }
+
         try {
             subscription.subscriberMethod.method.invoke(subscription.subscriber, event);
         } catch (InvocationTargetException e) {
@@ -542,8 +739,13 @@ import android.util.Log;
 
     /** For ThreadLocal, much faster to set (and get multiple values). */
     final static class PostingThreadState {
-        final List<Object> eventQueue = new ArrayList<Object>();
+        final ArrayDeque<Object> eventQueue = new ArrayDeque<Object>();
+        final List<PendingPost> mainThreadBatch = new ArrayList<PendingPost>();
+        final List<PendingPost> backgroundBatch = new ArrayList<PendingPost>();
+        final List<PendingPost> asyncBatch = new ArrayList<PendingPost>();
         boolean isPosting;
+        /** Inside {@link #postAll(Collection)}, queued deliveries are collected into the batches */
+        boolean batching;
         boolean isMainThread;
         Subscription subscription;
         Object event;
@@ -554,6 +756,83 @@ import android.util.Log;
         return executorService;
     }
 
+    /**
+     * Snapshots of the counters of each subscriber method, empty unless enabled by
+     * {@link EventBusBuilder#subscriberMetrics(long)}. The queue wait time per thread mode is in
+     * {@link #getPosterMetrics()}.
+     */
+    public List<SubscriberMetrics> getSubscriberMetrics() {
+        if (subscriberStats == null) {
+            return Collections.emptyList();
+        }
+        List<SubscriberMetrics> metrics = new ArrayList<SubscriberMetrics>(subscriberStats.size());
+        for (SubscriberStats stats : subscriberStats.values()) {
+            metrics.add(stats.snapshot());
+        }
+        return metrics;
+    }
+
+    /** Logs the subscriber and poster metrics. */
+    public void dumpMetrics() {
+        for (SubscriberMetrics metrics : getSubscriberMetrics()) {
+            Log.i(TAG, metrics.toString());
+        }
+        for (PosterMetrics metrics : getPosterMetrics()) {
+            Log.i(TAG, metrics.toString());
+        }
+    }
+
+    /** Stops the periodic dump configured by {@link EventBusBuilder#metricsDumpInterval(long, TimeUnit)}. */
+    public void stopMetricsDump() {
+        if (metricsDumper != null) {
+            metricsDumper.stop();
+        }
+    }
+
+    /** Snapshots of the main thread, background and async posters, in this order. */
+    public List<PosterMetrics> getPosterMetrics() {
+        List<PosterMetrics> metrics = new ArrayList<PosterMetrics>(3);
+        metrics.add(mainThreadPoster.getMetrics());
+        metrics.add(backgroundPoster.getMetrics());
+        metrics.add(asyncPoster.getMetrics());
+        return metrics;
+    }
+
+    /**
+     * Reposts itself on the main thread to dump the metrics. It holds the bus weakly and posts to its own handler, so
+     * the main looper doesn't keep a bus nobody uses any more; it stops once the bus is collected.
+     */
+    private static final class MetricsDumper implements Runnable {
+        private final WeakReference<EventBus> eventBusRef;
+        private final Handler handler = new Handler(Looper.getMainLooper());
+        private final long intervalMillis;
+        private volatile boolean stopped;
+
+        MetricsDumper(EventBus eventBus, long intervalMillis) {
+            this.eventBusRef = new WeakReference<EventBus>(eventBus);
+            this.intervalMillis = intervalMillis;
+        }
+
+        void start() {
+            handler.postDelayed(this, intervalMillis);
+        }
+
+        void stop() {
+            stopped = true;
+            handler.removeCallbacks(this);
+        }
+
+        @Override
+        public void run() {
+            EventBus eventBus = eventBusRef.get();
+            if (stopped || eventBus == null) {
+                return;
+            }
+            eventBus.dumpMetrics();
+            handler.postDelayed(this, intervalMillis);
+        }
+    }
+
     // Just an idea: we could provide a callback to post() to be notified, an alternative would be events, of course...
     /* public */interface PostCallback {
         void onPostCompleted(List<SubscriberExceptionEvent> exceptionEvents);
@@ -20,14 +20,18 @@ package com.lee.sdk.app.event;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Creates EventBus instances with custom parameters and also allows to install a custom default EventBus instance.
  * Create a new builder using {@link EventBus#builder()}.
  */
 public class EventBusBuilder {
-    private final static ExecutorService DEFAULT_EXECUTOR_SERVICE = Executors.newCachedThreadPool();
+    private final static ExecutorService DEFAULT_EXECUTOR_SERVICE = createDefaultExecutorService();
 
     boolean logSubscriberExceptions = true;
     boolean logNoSubscriberMessages = true;
@@ -36,11 +40,44 @@ public class EventBusBuilder {
     boolean throwSubscriberException;
     boolean eventInheritance = true;
     ExecutorService executorService = DEFAULT_EXECUTOR_SERVICE;
+    int backgroundQueueLimit = Integer.MAX_VALUE;
+    BackpressurePolicy backgroundBackpressurePolicy = BackpressurePolicy.BLOCK;
+    int asyncQueueLimit = Integer.MAX_VALUE;
+    BackpressurePolicy asyncBackpressurePolicy = BackpressurePolicy.BLOCK;
     List<Class<?>> skipMethodVerificationForClasses;
+    List<SubscriberInfoIndex> subscriberInfoIndexes;
+    List<Class<?>> coalescedEventTypes;
+    int maxStickyEvents = Integer.MAX_VALUE;
+    long stickyEventTtlMillis = StickyEventStore.NO_TTL;
+    boolean subscriberMetrics;
+    long mainThreadBudgetMillis;
+    long metricsDumpIntervalMillis;
 
     EventBusBuilder() {
     }
 
+    /**
+     * A bounded pool instead of a cached one, so a burst of Async events can't create unbounded threads. Idle threads
+     * time out. The queue of the pool holds at most one runner of the background poster and
+     * {@link AsyncPoster#MAX_RUNNERS} runners of the async poster per bus, the events wait in the queues of the
+     * posters. Async and BackgroundThread delivery share this pool: Async subscribers blocking all of its threads
+     * starve the background delivery.
+     */
+    private static ExecutorService createDefaultExecutorService() {
+        int poolSize = AsyncPoster.MAX_RUNNERS;
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger(1);
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        return new Thread(r, "EventBus_" + count.getAndIncrement());
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     /** Default: true */
     public EventBusBuilder logSubscriberExceptions(boolean logSubscriberExceptions) {
         this.logSubscriberExceptions = logSubscriberExceptions;
@@ -94,12 +131,45 @@ public class EventBusBuilder {
     /**
      * Provide a custom thread pool to EventBus used for async and background event delivery. This is an advanced
      * setting to that can break things: ensure the given ExecutorService won't get stuck to avoid undefined behavior.
+     * <p/>
+     * Async and BackgroundThread delivery share this one pool (bounded by default). Async subscribers that block, e.g.
+     * on I/O, occupy its threads and delay the BackgroundThread subscribers; give long blocking work its own executor.
      */
     public EventBusBuilder executorService(ExecutorService executorService) {
         this.executorService = executorService;
         return this;
     }
 
+    /**
+     * Limits the events queued for {@link ThreadMode#BackgroundThread} subscribers (default: no limit). The policy
+     * decides what happens when the queue is full. These events are queued by the main thread only, which is never
+     * blocked, so {@link BackpressurePolicy#BLOCK} enqueues them beyond the limit and only counts them in
+     * {@link PosterMetrics#getOverLimitCount()}. Choose {@link BackpressurePolicy#CALLER_RUNS} to run the subscriber
+     * on the main thread instead.
+     */
+    public EventBusBuilder backgroundQueueLimit(int limit, BackpressurePolicy policy) {
+        if (limit <= 0 || policy == null) {
+            throw new IllegalArgumentException("Invalid queue limit " + limit + " or policy " + policy);
+        }
+        this.backgroundQueueLimit = limit;
+        this.backgroundBackpressurePolicy = policy;
+        return this;
+    }
+
+    /**
+     * Limits the events queued for {@link ThreadMode#Async} subscribers (default: no limit). The policy decides what
+     * happens when the queue is full. {@link BackpressurePolicy#BLOCK} enqueues the event beyond the limit instead of
+     * blocking when it is posted from the main thread or from a delivery thread of the bus.
+     */
+    public EventBusBuilder asyncQueueLimit(int limit, BackpressurePolicy policy) {
+        if (limit <= 0 || policy == null) {
+            throw new IllegalArgumentException("Invalid queue limit " + limit + " or policy " + policy);
+        }
+        this.asyncQueueLimit = limit;
+        this.asyncBackpressurePolicy = policy;
+        return this;
+    }
+
     /**
      * Method name verification is done for methods starting with onEvent to avoid typos; using this method you can
      * exclude subscriber classes from this check. Also disables checks for method modifiers (public, not static nor
@@ -113,6 +183,79 @@ public class EventBusBuilder {
         return this;
     }
 
+    /**
+     * MainThread subscribers of the given event type keep only the newest pending event, older events posted before
+     * the main thread delivers are replaced. Same as {@link Subscribe#coalesce()} for all subscribers of the type.
+     */
+    public EventBusBuilder coalesceEventType(Class<?> eventType) {
+        if (coalescedEventTypes == null) {
+            coalescedEventTypes = new ArrayList<Class<?>>();
+        }
+        coalescedEventTypes.add(eventType);
+        return this;
+    }
+
+    /**
+     * Caps the count of sticky events (default: no cap), the oldest one is removed when a new one is over the cap.
+     */
+    public EventBusBuilder maxStickyEvents(int maxStickyEvents) {
+        if (maxStickyEvents <= 0) {
+            throw new IllegalArgumentException("Invalid max sticky events: " + maxStickyEvents);
+        }
+        this.maxStickyEvents = maxStickyEvents;
+        return this;
+    }
+
+    /**
+     * Default time to live of the sticky events (default: forever), so long running processes don't keep large
+     * stale events. {@link EventBus#postSticky(Object, long)} overrides it for a single event.
+     */
+    public EventBusBuilder stickyEventTtl(long ttl, TimeUnit unit) {
+        if (ttl <= 0) {
+            throw new IllegalArgumentException("Invalid time to live: " + ttl);
+        }
+        this.stickyEventTtlMillis = unit.toMillis(ttl);
+        return this;
+    }
+
+    /**
+     * Records the invocation count, total and max time of each subscriber method (default: off). Handlers running
+     * longer than the budget on the main thread are logged and counted as slow. See
+     * {@link EventBus#getSubscriberMetrics()}.
+     */
+    public EventBusBuilder subscriberMetrics(long mainThreadBudgetMillis) {
+        if (mainThreadBudgetMillis <= 0) {
+            throw new IllegalArgumentException("Invalid main thread budget: " + mainThreadBudgetMillis);
+        }
+        this.subscriberMetrics = true;
+        this.mainThreadBudgetMillis = mainThreadBudgetMillis;
+        return this;
+    }
+
+    /**
+     * Logs the subscriber and poster metrics periodically, requires {@link #subscriberMetrics(long)}. Stop it with
+     * {@link EventBusWrapper#stopMetricsDump()}; the dump also stops once the bus is garbage collected.
+     */
+    public EventBusBuilder metricsDumpInterval(long interval, TimeUnit unit) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("Invalid dump interval: " + interval);
+        }
+        this.metricsDumpIntervalMillis = unit.toMillis(interval);
+        return this;
+    }
+
+    /**
+     * Adds an index generated by the annotation processor of the event-processor module. Indexed subscriber classes
+     * are registered without scanning their methods by reflection; classes not in any index still use reflection.
+     */
+    public EventBusBuilder addIndex(SubscriberInfoIndex index) {
+        if (subscriberInfoIndexes == null) {
+            subscriberInfoIndexes = new ArrayList<SubscriberInfoIndex>();
+        }
+        subscriberInfoIndexes.add(index);
+        return this;
+    }
+
     /**
      * Installs the default EventBus returned by {@link EventBus#getDefault()} using this builders' values. Must be
      * done only once before the first usage of the default EventBus.
@@ -4,6 +4,9 @@
 
 package com.lee.sdk.app.event;
 
+import java.util.Collection;
+import java.util.List;
+
 import com.lee.sdk.Configuration;
 
 import android.util.Log;
@@ -54,6 +57,64 @@ public final class EventBusWrapper {
         
     }
     
+    /**
+     * 创建事件总线的配置，例如队列容量、合并事件的类型等，调用{@link EventBusBuilder#installDefaultEventBus()}后生效。
+     * 必须在第一次使用事件总线之前调用，例如在Application#onCreate()中。同时需要订阅者索引时，通过
+     * {@link EventBusBuilder#addIndex(SubscriberInfoIndex)}添加到同一个配置中，例如
+     * <code>builder().addIndex(new MyEventBusIndex()).backgroundQueueLimit(...).installDefaultEventBus()</code>。
+     * 
+     * @return 事件总线的配置
+     */
+    public static EventBusBuilder builder() {
+        return EventBus.builder();
+    }
+    
+    /**
+     * 得到主线程、后台线程和异步投递队列的指标快照，包括队列长度、丢弃的事件数以及事件的排队时间。
+     * 
+     * @return 指标快照
+     */
+    public static List<PosterMetrics> getPosterMetrics() {
+        return EventBus.getDefault().getPosterMetrics();
+    }
+    
+    /**
+     * 得到每个订阅方法的调用次数、累计和最大执行时间，以及在主线程中超过时间预算的次数。需要先通过
+     * {@link EventBusBuilder#subscriberMetrics(long)}打开统计。
+     * 
+     * @return 指标快照，没有打开统计时为空
+     */
+    public static List<SubscriberMetrics> getSubscriberMetrics() {
+        return EventBus.getDefault().getSubscriberMetrics();
+    }
+    
+    /**
+     * 停止{@link EventBusBuilder#metricsDumpInterval(long, java.util.concurrent.TimeUnit)}配置的定期输出指标。
+     */
+    public static void stopMetricsDump() {
+        EventBus.getDefault().stopMetricsDump();
+    }
+    
+    /**
+     * 安装编译期生成的订阅者索引，被索引的类在注册时不再通过反射扫描方法。必须在第一次使用事件总线之前调用，
+     * 例如在Application#onCreate()中。
+     * 
+     * <p>
+     * 这个方法使用默认配置安装事件总线，不能再和{@link #builder()}的其他配置一起使用。需要同时配置时，调用
+     * {@link #builder()}并通过{@link EventBusBuilder#addIndex(SubscriberInfoIndex)}添加索引。
+     * </p>
+     * 
+     * @param indexes 注解处理器生成的索引
+     * @throws EventBusException 事件总线已经被使用过
+     */
+    public static void installIndex(SubscriberInfoIndex... indexes) {
+        EventBusBuilder builder = EventBus.builder();
+        for (SubscriberInfoIndex index : indexes) {
+            builder.addIndex(index);
+        }
+        builder.installDefaultEventBus();
+    }
+    
     /**
      * Registers the given subscriber to receive events. Subscribers must call {@link #unregister(Object)} once they
      * are no longer interested in receiving events.
@@ -96,4 +157,14 @@ public final class EventBusWrapper {
     public static void post(Object event) {
         EventBus.getDefault().post(event);
     }
+    
+    /** 
+     * Posts the given events to the event bus in order, the subscriptions are resolved once per event class and the
+     * events are enqueued to each thread as one batch.
+     * 
+     * @param events events
+     */
+    public static void postAll(Collection<?> events) {
+        EventBus.getDefault().postAll(events);
+    }
 }
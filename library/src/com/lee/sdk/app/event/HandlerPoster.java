@@ -17,6 +17,8 @@ package com.lee.sdk.app.event;
 
 //CHECKSTYLE:OFF
 
+import java.util.List;
+
 import android.os.Handler;
 import android.os.Looper;
 import android.os.Message;
@@ -28,6 +30,7 @@ final class HandlerPoster extends Handler {
     private final int maxMillisInsideHandleMessage;
     private final EventBus eventBus;
     private boolean handlerActive;
+    private final PosterStats stats = new PosterStats(ThreadMode.MainThread);
 
     HandlerPoster(EventBus eventBus, Looper looper, int maxMillisInsideHandleMessage) {
         super(looper);
@@ -37,6 +40,10 @@ final class HandlerPoster extends Handler {
     }
 
     void enqueue(Subscription subscription, Object event) {
+        if (subscription.coalesce) {
+            enqueueCoalesced(subscription, event);
+            return;
+        }
         PendingPost pendingPost = PendingPost.obtainPendingPost(subscription, event);
         synchronized (this) {
             queue.enqueue(pendingPost);
@@ -49,6 +56,39 @@ final class HandlerPoster extends Handler {
         }
     }
 
+    /** Enqueues the pending posts of a batch, the main thread is notified once */
+    void enqueueAll(List<PendingPost> pendingPosts) {
+        synchronized (this) {
+            queue.enqueueAll(pendingPosts);
+            if (!handlerActive) {
+                handlerActive = true;
+                if (!sendMessage(obtainMessage())) {
+                    throw new EventBusException("Could not send handler message");
+                }
+            }
+        }
+    }
+
+    /** Replaces the event of the pending post in place if the subscription already has one in the queue */
+    private void enqueueCoalesced(Subscription subscription, Object event) {
+        synchronized (this) {
+            PendingPost pendingPost = subscription.pendingCoalescedPost;
+            if (pendingPost != null) {
+                pendingPost.event = event;
+                return;
+            }
+            pendingPost = PendingPost.obtainPendingPost(subscription, event);
+            subscription.pendingCoalescedPost = pendingPost;
+            queue.enqueue(pendingPost);
+            if (!handlerActive) {
+                handlerActive = true;
+                if (!sendMessage(obtainMessage())) {
+                    throw new EventBusException("Could not send handler message");
+                }
+            }
+        }
+    }
+
     @Override
     public void handleMessage(Message msg) {
         boolean rescheduled = false;
@@ -66,6 +106,13 @@ final class HandlerPoster extends Handler {
                         }
                     }
                 }
+                if (pendingPost.subscription.coalesce) {
+                    synchronized (this) {
+                        // From now on the event is fixed, newer events go to a new pending post
+                        pendingPost.subscription.pendingCoalescedPost = null;
+                    }
+                }
+                stats.onDeliver(pendingPost);
                 eventBus.invokeSubscriber(pendingPost);
                 long timeInMethod = SystemClock.uptimeMillis() - started;
                 if (timeInMethod >= maxMillisInsideHandleMessage) {
@@ -80,5 +127,9 @@ final class HandlerPoster extends Handler {
             handlerActive = rescheduled;
         }
     }
+
+    PosterMetrics getMetrics() {
+        return stats.snapshot(queue.size(), Integer.MAX_VALUE);
+    }
 }
 //CHECKSTYLE:ON
@@ -17,43 +17,93 @@ package com.lee.sdk.app.event;
 
 //CHECKSTYLE:OFF
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 final class PendingPost {
-    private final static List<PendingPost> pendingPostPool = new ArrayList<PendingPost>();
+    /** Don't let the pool of a thread grow indefinitely */
+    private final static int MAX_POOL_SIZE = 1000;
+
+    /**
+     * Per thread pool, so obtaining never locks. Posts are obtained on the posting thread but released on the
+     * delivering thread, so a released post goes back to the pool of the thread which created it.
+     */
+    private final static ThreadLocal<Pool> pendingPostPool = new ThreadLocal<Pool>() {
+        @Override
+        protected Pool initialValue() {
+            return new Pool();
+        }
+    };
 
     Object event;
     Subscription subscription;
     PendingPost next;
+    /** System.nanoTime() when obtained, used to measure the delivery latency */
+    long enqueueTime;
+    /** The pool of the thread which created this post */
+    private final Pool pool;
 
-    private PendingPost(Object event, Subscription subscription) {
+    private PendingPost(Object event, Subscription subscription, Pool pool) {
         this.event = event;
         this.subscription = subscription;
+        this.pool = pool;
     }
 
     static PendingPost obtainPendingPost(Subscription subscription, Object event) {
-        synchronized (pendingPostPool) {
-            int size = pendingPostPool.size();
-            if (size > 0) {
-                PendingPost pendingPost = pendingPostPool.remove(size - 1);
-                pendingPost.event = event;
-                pendingPost.subscription = subscription;
-                pendingPost.next = null;
-                return pendingPost;
-            }
+        Pool pool = pendingPostPool.get();
+        PendingPost pendingPost = pool.pop();
+        if (pendingPost != null) {
+            pendingPost.event = event;
+            pendingPost.subscription = subscription;
+            pendingPost.next = null;
+            pendingPost.enqueueTime = System.nanoTime();
+            return pendingPost;
         }
-        return new PendingPost(event, subscription);
+        pendingPost = new PendingPost(event, subscription, pool);
+        pendingPost.enqueueTime = System.nanoTime();
+        return pendingPost;
     }
 
     static void releasePendingPost(PendingPost pendingPost) {
         pendingPost.event = null;
         pendingPost.subscription = null;
         pendingPost.next = null;
-        synchronized (pendingPostPool) {
-            // Don't let the pool grow indefinitely
-            if (pendingPostPool.size() < 10000) {
-                pendingPostPool.add(pendingPost);
+        pendingPost.pool.push(pendingPost);
+    }
+
+    /**
+     * Lock-free stack linked through {@link PendingPost#next}. Only the owner thread pops, any thread may push, so a
+     * popped head can not come back during the compare-and-set and there is no ABA problem.
+     */
+    private static final class Pool {
+        private final AtomicReference<PendingPost> head = new AtomicReference<PendingPost>();
+        /** Approximate size, only used to bound the pool */
+        private final AtomicInteger size = new AtomicInteger();
+
+        PendingPost pop() {
+            while (true) {
+                PendingPost pendingPost = head.get();
+                if (pendingPost == null) {
+                    return null;
+                }
+                if (head.compareAndSet(pendingPost, pendingPost.next)) {
+                    size.decrementAndGet();
+                    return pendingPost;
+                }
+            }
+        }
+
+        void push(PendingPost pendingPost) {
+            if (size.get() >= MAX_POOL_SIZE) {
+                return;
+            }
+            size.incrementAndGet();
+            while (true) {
+                PendingPost top = head.get();
+                pendingPost.next = top;
+                if (head.compareAndSet(top, pendingPost)) {
+                    return;
+                }
             }
         }
     }
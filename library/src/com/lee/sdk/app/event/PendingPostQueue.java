@@ -2,9 +2,17 @@ package com.lee.sdk.app.event;
 
 //CHECKSTYLE:OFF
 
+import java.util.List;
+
 final class PendingPostQueue {
+    /** Marks the threads delivering queued events, the BLOCK policy must not block them */
+    private static final ThreadLocal<Boolean> deliveryThread = new ThreadLocal<Boolean>();
+
     private PendingPost head;
     private PendingPost tail;
+    private int size;
+    /** Count of the threads blocked in offer() by the BLOCK policy */
+    private int blockedProducers;
 
     synchronized void enqueue(PendingPost pendingPost) {
         if (pendingPost == null) {
@@ -18,9 +26,77 @@ final class PendingPostQueue {
         } else {
             throw new IllegalStateException("Head present, but no tail");
         }
+        size++;
         notifyAll();
     }
 
+    /** Enqueues the pending posts in one go, ignoring any limit */
+    synchronized void enqueueAll(List<PendingPost> pendingPosts) {
+        for (int i = 0, count = pendingPosts.size(); i < count; i++) {
+            PendingPost pendingPost = pendingPosts.get(i);
+            if (tail != null) {
+                tail.next = pendingPost;
+                tail = pendingPost;
+            } else {
+                head = tail = pendingPost;
+            }
+        }
+        size += pendingPosts.size();
+        notifyAll();
+    }
+
+    /**
+     * Enqueues the pending post if the queue has less than limit posts, otherwise applies the policy. BLOCK enqueues
+     * the post beyond the limit if the producer can't block: a delivery thread may wait for its own pool to run the
+     * queue, and the main thread must not stall. Delivering in the caller instead would run the subscriber on the
+     * wrong thread.
+     *
+     * @param canBlock false if the producer is the main thread or a delivery thread
+     * @return false if the caller should deliver the event itself (CALLER_RUNS)
+     */
+    synchronized boolean offer(PendingPost pendingPost, int limit, BackpressurePolicy policy, PosterStats stats,
+            boolean canBlock) {
+        while (size >= limit) {
+            switch (policy) {
+                case BLOCK:
+                    if (!canBlock) {
+                        stats.onOverLimit();
+                        enqueue(pendingPost);
+                        return true;
+                    }
+                    blockedProducers++;
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        // Don't lose the event, enqueue it beyond the limit
+                        Thread.currentThread().interrupt();
+                        stats.onOverLimit();
+                        enqueue(pendingPost);
+                        return true;
+                    } finally {
+                        blockedProducers--;
+                    }
+                    break;
+                case DROP_OLDEST:
+                    PendingPost oldest = poll();
+                    PendingPost.releasePendingPost(oldest);
+                    stats.onDropped();
+                    break;
+                case CALLER_RUNS:
+                    stats.onCallerRuns();
+                    return false;
+                default:
+                    throw new IllegalStateException("Unknown backpressure policy: " + policy);
+            }
+        }
+        enqueue(pendingPost);
+        return true;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
     synchronized PendingPost poll() {
         PendingPost pendingPost = head;
         if (head != null) {
@@ -28,6 +104,10 @@ final class PendingPostQueue {
             if (head == null) {
                 tail = null;
             }
+            size--;
+            if (blockedProducers > 0) {
+                notifyAll();
+            }
         }
         return pendingPost;
     }
@@ -39,5 +119,26 @@ final class PendingPostQueue {
         return poll();
     }
 
+    /**
+     * Marks the current thread as delivering queued events.
+     *
+     * @return the previous mark, pass it to {@link #exitDelivery(boolean)}
+     */
+    static boolean enterDelivery() {
+        boolean delivering = isDeliveryThread();
+        deliveryThread.set(Boolean.TRUE);
+        return delivering;
+    }
+
+    static void exitDelivery(boolean delivering) {
+        if (!delivering) {
+            deliveryThread.remove();
+        }
+    }
+
+    static boolean isDeliveryThread() {
+        return deliveryThread.get() != null;
+    }
+
 }
 //CHECKSTYLE:ON
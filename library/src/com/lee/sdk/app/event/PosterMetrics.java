@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2014 Baidu Inc. All rights reserved.
+ */
+
+package com.lee.sdk.app.event;
+
+/**
+ * 事件投递队列的指标快照，通过{@link EventBusWrapper#getPosterMetrics()}得到。
+ * 
+ * @author lihong06
+ * @since 2014-11-20
+ */
+public final class PosterMetrics {
+    /** 投递的线程 */
+    private final ThreadMode threadMode;
+    /** 排队中的事件数 */
+    private final int queueDepth;
+    /** 队列容量 */
+    private final int queueLimit;
+    /** 已经投递的事件数 */
+    private final long deliveredCount;
+    /** 丢弃的事件数 */
+    private final long droppedCount;
+    /** 在发送线程中直接调用的事件数 */
+    private final long callerRunsCount;
+    /** 超出队列容量进入队列的事件数 */
+    private final long overLimitCount;
+    /** 累计的排队时间，纳秒 */
+    private final long totalLatencyNanos;
+    /** 最大的排队时间，纳秒 */
+    private final long maxLatencyNanos;
+
+    /**
+     * Constructor method
+     */
+    PosterMetrics(ThreadMode threadMode, int queueDepth, int queueLimit, long deliveredCount, long droppedCount,
+            long callerRunsCount, long overLimitCount, long totalLatencyNanos, long maxLatencyNanos) {
+        this.threadMode = threadMode;
+        this.queueDepth = queueDepth;
+        this.queueLimit = queueLimit;
+        this.deliveredCount = deliveredCount;
+        this.droppedCount = droppedCount;
+        this.callerRunsCount = callerRunsCount;
+        this.overLimitCount = overLimitCount;
+        this.totalLatencyNanos = totalLatencyNanos;
+        this.maxLatencyNanos = maxLatencyNanos;
+    }
+
+    /**
+     * @return 投递的线程
+     */
+    public ThreadMode getThreadMode() {
+        return threadMode;
+    }
+
+    /**
+     * @return 排队中的事件数
+     */
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * @return 队列容量，{@link Integer#MAX_VALUE}表示不限制
+     */
+    public int getQueueLimit() {
+        return queueLimit;
+    }
+
+    /**
+     * @return 已经投递的事件数
+     */
+    public long getDeliveredCount() {
+        return deliveredCount;
+    }
+
+    /**
+     * @return 因为队列已满而丢弃的事件数
+     */
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * @return 因为队列已满而在发送线程中直接调用的事件数
+     */
+    public long getCallerRunsCount() {
+        return callerRunsCount;
+    }
+
+    /**
+     * @return 队列已满、发送者又不能阻塞时，超出队列容量进入队列的事件数，参考{@link BackpressurePolicy#BLOCK}
+     */
+    public long getOverLimitCount() {
+        return overLimitCount;
+    }
+
+    /**
+     * @return 事件从发送到开始投递的平均时间，单位毫秒
+     */
+    public double getAverageLatencyMillis() {
+        return (deliveredCount > 0) ? (totalLatencyNanos / (double) deliveredCount / 1000000.0) : 0;
+    }
+
+    /**
+     * @return 事件从发送到开始投递的最大时间，单位毫秒
+     */
+    public double getMaxLatencyMillis() {
+        return maxLatencyNanos / 1000000.0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(threadMode).append(" [queueDepth = ").append(queueDepth);
+        sb.append(", queueLimit = ").append(queueLimit);
+        sb.append(", delivered = ").append(deliveredCount);
+        sb.append(", dropped = ").append(droppedCount);
+        sb.append(", callerRuns = ").append(callerRunsCount);
+        sb.append(", overLimit = ").append(overLimitCount);
+        sb.append(", avgLatency = ").append(getAverageLatencyMillis()).append("ms");
+        sb.append(", maxLatency = ").append(getMaxLatencyMillis()).append("ms]");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2014 Baidu Inc. All rights reserved.
+ */
+
+package com.lee.sdk.app.event;
+
+//CHECKSTYLE:OFF
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The counters of a poster, updated without locking.
+ */
+final class PosterStats {
+    private final ThreadMode threadMode;
+    private final AtomicLong deliveredCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong callerRunsCount = new AtomicLong();
+    private final AtomicLong overLimitCount = new AtomicLong();
+    private final AtomicLong totalLatencyNanos = new AtomicLong();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+    PosterStats(ThreadMode threadMode) {
+        this.threadMode = threadMode;
+    }
+
+    /** Called right before the pending post is delivered */
+    void onDeliver(PendingPost pendingPost) {
+        long latency = System.nanoTime() - pendingPost.enqueueTime;
+        deliveredCount.incrementAndGet();
+        totalLatencyNanos.addAndGet(latency);
+        long max;
+        while (latency > (max = maxLatencyNanos.get())) {
+            if (maxLatencyNanos.compareAndSet(max, latency)) {
+                break;
+            }
+        }
+    }
+
+    void onDropped() {
+        droppedCount.incrementAndGet();
+    }
+
+    void onCallerRuns() {
+        callerRunsCount.incrementAndGet();
+    }
+
+    void onOverLimit() {
+        overLimitCount.incrementAndGet();
+    }
+
+    PosterMetrics snapshot(int queueDepth, int queueLimit) {
+        return new PosterMetrics(threadMode, queueDepth, queueLimit, deliveredCount.get(), droppedCount.get(),
+                callerRunsCount.get(), overLimitCount.get(), totalLatencyNanos.get(), maxLatencyNanos.get());
+    }
+}
+//CHECKSTYLE:ON
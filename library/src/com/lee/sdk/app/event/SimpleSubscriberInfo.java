@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2014 Baidu Inc. All rights reserved.
+ */
+
+package com.lee.sdk.app.event;
+
+/**
+ * {@link SubscriberInfo}的简单实现，供生成的{@link SubscriberInfoIndex}使用。
+ * 
+ * @author lihong06
+ * @since 2014-11-20
+ */
+public class SimpleSubscriberInfo implements SubscriberInfo {
+    /** 订阅者的类 */
+    private final Class<?> subscriberClass;
+    /** 订阅方法 */
+    private final SubscriberMethodInfo[] methodInfos;
+
+    /**
+     * Constructor method
+     * 
+     * @param subscriberClass 订阅者的类
+     * @param methodInfos 该类中声明的订阅方法
+     */
+    public SimpleSubscriberInfo(Class<?> subscriberClass, SubscriberMethodInfo[] methodInfos) {
+        this.subscriberClass = subscriberClass;
+        this.methodInfos = methodInfos;
+    }
+
+    @Override
+    public Class<?> getSubscriberClass() {
+        return subscriberClass;
+    }
+
+    @Override
+    public SubscriberMethodInfo[] getSubscriberMethodInfos() {
+        return methodInfos;
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2014 Baidu Inc. All rights reserved.
+ */
+
+package com.lee.sdk.app.event;
+
+//CHECKSTYLE:OFF
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import android.os.SystemClock;
+
+/**
+ * The sticky events, keyed by the event class. Reads and writes take no shared lock. Each super type of a sticky
+ * event class is indexed, so a subscriber finds the sticky events it can receive without scanning all of them.
+ * Entries expire after their time to live, and the oldest entry is evicted when the store is over its size cap.
+ */
+final class StickyEventStore {
+    /** No time to live */
+    static final long NO_TTL = Long.MAX_VALUE;
+
+    private final ConcurrentHashMap<Class<?>, Entry> entries = new ConcurrentHashMap<Class<?>, Entry>();
+    /**
+     * Super type (including the class itself) -> the sticky event classes assignable to it. The index only grows: a
+     * class stays after its entry is removed or cleared, and {@link #findAssignable(Class)} validates it against the
+     * entries. Clearing it would race with {@link #put(Object, List, long)} and lose the classes of new entries.
+     */
+    private final ConcurrentHashMap<Class<?>, Set<Class<?>>> classesBySuperType =
+            new ConcurrentHashMap<Class<?>, Set<Class<?>>>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final int maxSize;
+    private final long defaultTtlMillis;
+
+    StickyEventStore(int maxSize, long defaultTtlMillis) {
+        this.maxSize = maxSize;
+        this.defaultTtlMillis = defaultTtlMillis;
+    }
+
+    long getDefaultTtlMillis() {
+        return defaultTtlMillis;
+    }
+
+    /**
+     * @param eventTypes the event class and its super types, indexed for {@link #findAssignable(Class)}
+     */
+    void put(Object event, List<Class<?>> eventTypes, long ttlMillis) {
+        Class<?> eventClass = event.getClass();
+        long expireTime = getExpireTime(SystemClock.elapsedRealtime(), ttlMillis);
+        entries.put(eventClass, new Entry(event, expireTime, sequence.incrementAndGet()));
+
+        for (int i = 0, count = eventTypes.size(); i < count; i++) {
+            Class<?> superType = eventTypes.get(i);
+            Set<Class<?>> classes = classesBySuperType.get(superType);
+            if (classes == null) {
+                Set<Class<?>> newClasses = Collections.newSetFromMap(new ConcurrentHashMap<Class<?>, Boolean>());
+                classes = classesBySuperType.putIfAbsent(superType, newClasses);
+                if (classes == null) {
+                    classes = newClasses;
+                }
+            }
+            classes.add(eventClass);
+        }
+
+        if (entries.size() > maxSize) {
+            evictOldest();
+        }
+    }
+
+    /** The sticky event of exactly the given class, or null if absent or expired */
+    Object get(Class<?> eventClass) {
+        Entry entry = entries.get(eventClass);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.isExpired(SystemClock.elapsedRealtime())) {
+            entries.remove(eventClass, entry);
+            return null;
+        }
+        return entry.event;
+    }
+
+    /** The sticky events assignable to the given type, the index keeps this free of a full scan */
+    List<Object> findAssignable(Class<?> eventType) {
+        Set<Class<?>> classes = classesBySuperType.get(eventType);
+        if (classes == null || classes.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Object> events = new ArrayList<Object>(classes.size());
+        for (Class<?> eventClass : classes) {
+            Object event = get(eventClass);
+            if (event != null) {
+                events.add(event);
+            }
+        }
+        return events;
+    }
+
+    Object remove(Class<?> eventClass) {
+        Entry entry = entries.remove(eventClass);
+        if (entry == null || entry.isExpired(SystemClock.elapsedRealtime())) {
+            return null;
+        }
+        return entry.event;
+    }
+
+    /** Removes the sticky event of the event's class only if it equals the given event */
+    boolean remove(Object event) {
+        Class<?> eventClass = event.getClass();
+        Entry entry = entries.get(eventClass);
+        return entry != null && event.equals(entry.event) && entries.remove(eventClass, entry);
+    }
+
+    /** Removes the entries, the index keeps the classes, see {@link #classesBySuperType} */
+    void clear() {
+        entries.clear();
+    }
+
+    /** The expire time saturates at {@link #NO_TTL}, a huge time to live must not overflow into the past */
+    static long getExpireTime(long now, long ttlMillis) {
+        return (ttlMillis >= NO_TTL - now) ? NO_TTL : now + ttlMillis;
+    }
+
+    /** Removes the expired entries, or the oldest one if none expired */
+    private void evictOldest() {
+        long now = SystemClock.elapsedRealtime();
+        Class<?> oldestClass = null;
+        Entry oldest = null;
+        boolean expiredFound = false;
+        for (Map.Entry<Class<?>, Entry> mapEntry : entries.entrySet()) {
+            Entry entry = mapEntry.getValue();
+            if (entry.isExpired(now)) {
+                entries.remove(mapEntry.getKey(), entry);
+                expiredFound = true;
+            } else if (oldest == null || entry.sequence < oldest.sequence) {
+                oldestClass = mapEntry.getKey();
+                oldest = entry;
+            }
+        }
+        if (!expiredFound && oldest != null && entries.size() > maxSize) {
+            entries.remove(oldestClass, oldest);
+        }
+    }
+
+    private static final class Entry {
+        final Object event;
+        /** Based on SystemClock.elapsedRealtime() */
+        final long expireTime;
+        /** Insertion order, used to evict the oldest entry */
+        final long sequence;
+
+        Entry(Object event, long expireTime, long sequence) {
+            this.event = event;
+            this.expireTime = expireTime;
+            this.sequence = sequence;
+        }
+
+        boolean isExpired(long now) {
+            return expireTime != NO_TTL && now >= expireTime;
+        }
+    }
+}
+//CHECKSTYLE:ON
@@ -20,5 +20,11 @@ import java.lang.annotation.Target;
 @Retention(RetentionPolicy.RUNTIME)
 @Target(ElementType.METHOD)
 public @interface Subscribe {
-
+    /**
+     * 是否合并事件：只对{@link ThreadMode#MainThread}的方法有效，主线程处理之前连续发送的多个事件只保留最新的一个，
+     * 适用于进度、网络状态、滚动位置等表示状态的事件。
+     * 
+     * @return true表示合并，默认为false
+     */
+    boolean coalesce() default false;
 }
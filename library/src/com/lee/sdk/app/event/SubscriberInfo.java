@@ -0,0 +1,23 @@
+/*
+ * Copyright (C) 2014 Baidu Inc. All rights reserved.
+ */
+
+package com.lee.sdk.app.event;
+
+/**
+ * 一个订阅者类自身声明的订阅方法，不包括父类中的方法。
+ * 
+ * @author lihong06
+ * @since 2014-11-20
+ */
+public interface SubscriberInfo {
+    /**
+     * @return 订阅者的类
+     */
+    Class<?> getSubscriberClass();
+
+    /**
+     * @return 该类中声明的订阅方法
+     */
+    SubscriberMethodInfo[] getSubscriberMethodInfos();
+}
@@ -0,0 +1,25 @@
+/*
+ * Copyright (C) 2014 Baidu Inc. All rights reserved.
+ */
+
+package com.lee.sdk.app.event;
+
+/**
+ * 编译期生成的订阅者索引，由event-processor模块中的注解处理器根据{@link Subscribe}注解生成。
+ * 
+ * <p>
+ * 注册订阅者时，被索引的类不再通过反射扫描全部方法，没有被索引的类仍然使用反射。
+ * </p>
+ * 
+ * @author lihong06
+ * @since 2014-11-20
+ */
+public interface SubscriberInfoIndex {
+    /**
+     * 得到指定类的订阅信息
+     * 
+     * @param subscriberClass 订阅者的类
+     * @return 订阅信息，没有被索引时返回null
+     */
+    SubscriberInfo getSubscriberInfo(Class<?> subscriberClass);
+}
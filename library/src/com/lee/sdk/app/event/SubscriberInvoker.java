@@ -0,0 +1,23 @@
+/*
+ * Copyright (C) 2014 Baidu Inc. All rights reserved.
+ */
+
+package com.lee.sdk.app.event;
+
+/**
+ * 预编译的订阅方法调用器，由生成的{@link SubscriberInfoIndex}提供，分发事件时直接调用订阅方法，不再经过
+ * {@link java.lang.reflect.Method#invoke(Object, Object...)}。
+ * 
+ * @author lihong06
+ * @since 2014-11-20
+ */
+public interface SubscriberInvoker {
+    /**
+     * 调用订阅方法
+     * 
+     * @param subscriber 订阅者
+     * @param event 事件
+     * @throws Throwable 订阅方法抛出的异常
+     */
+    void invoke(Object subscriber, Object event) throws Throwable;
+}
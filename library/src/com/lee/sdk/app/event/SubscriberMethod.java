@@ -23,13 +23,32 @@ final class SubscriberMethod {
     final Method method;
     final ThreadMode threadMode;
     final Class<?> eventType;
+    /** Precompiled invoker from the subscriber index, null if the method is invoked by reflection */
+    final SubscriberInvoker invoker;
+    /** Keep only the newest pending event, see {@link Subscribe#coalesce()} */
+    final boolean coalesce;
     /** Used for efficient comparison */
     String methodString;
 
-    SubscriberMethod(Method method, ThreadMode threadMode, Class<?> eventType) {
+    SubscriberMethod(Method method, ThreadMode threadMode, Class<?> eventType, boolean coalesce) {
+        this(method, threadMode, eventType, null, coalesce);
+    }
+
+    SubscriberMethod(Method method, ThreadMode threadMode, Class<?> eventType, SubscriberInvoker invoker,
+            boolean coalesce) {
         this.method = method;
         this.threadMode = threadMode;
         this.eventType = eventType;
+        this.invoker = invoker;
+        this.coalesce = coalesce;
+        if (invoker == null) {
+            try {
+                // Suppress the access check of every Method.invoke, the method is public anyway
+                method.setAccessible(true);
+            } catch (SecurityException e) {
+                // Invoke with the access check
+            }
+        }
     }
 
     @Override
@@ -20,7 +20,6 @@ package com.lee.sdk.app.event;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -46,25 +45,26 @@ class SubscriberMethodFinder {
     private static final int SYNTHETIC = 0x1000;
 
     private static final int MODIFIERS_IGNORE = Modifier.ABSTRACT | Modifier.STATIC | BRIDGE | SYNTHETIC;
-    private static final Map<String, List<SubscriberMethod>> methodCache = new HashMap<String, List<SubscriberMethod>>();
+    private static final Map<String, List<SubscriberMethod>> methodCache =
+            new ConcurrentHashMap<String, List<SubscriberMethod>>();
 
     private final Map<Class<?>, Class<?>> skipMethodVerificationForClasses;
+    private final List<SubscriberInfoIndex> subscriberInfoIndexes;
 
-    SubscriberMethodFinder(List<Class<?>> skipMethodVerificationForClassesList) {
+    SubscriberMethodFinder(List<Class<?>> skipMethodVerificationForClassesList,
+            List<SubscriberInfoIndex> subscriberInfoIndexes) {
         skipMethodVerificationForClasses = new ConcurrentHashMap<Class<?>, Class<?>>();
         if (skipMethodVerificationForClassesList != null) {
             for (Class<?> clazz : skipMethodVerificationForClassesList) {
                 skipMethodVerificationForClasses.put(clazz, clazz);
             }
         }
+        this.subscriberInfoIndexes = subscriberInfoIndexes;
     }
 
     List<SubscriberMethod> findSubscriberMethods(Class<?> subscriberClass) {
         String key = subscriberClass.getName();
-        List<SubscriberMethod> subscriberMethods;
-        synchronized (methodCache) {
-            subscriberMethods = methodCache.get(key);
-        }
+        List<SubscriberMethod> subscriberMethods = methodCache.get(key);
         if (subscriberMethods != null) {
             return subscriberMethods;
         }
@@ -79,57 +79,12 @@ class SubscriberMethodFinder {
                 break;
             }
 
-            // Starting with EventBus 2.2 we enforced methods to be public (might change with annotations again)
-            Method[] methods = clazz.getDeclaredMethods();
-            for (Method method : methods) {
-                // Added by lihong06 2014/11/20 begin ======
-                //
-                // If the method is not marked by Subscribe annotation, we skip it.
-                if (!method.isAnnotationPresent(Subscribe.class)) {
-                    continue;
-                }
-                // Added by lihong06 2014/11/20 end ========
-                
-                String methodName = method.getName();
-                if (methodName.startsWith(ON_EVENT_METHOD_NAME)) {
-                    int modifiers = method.getModifiers();
-                    if ((modifiers & Modifier.PUBLIC) != 0 && (modifiers & MODIFIERS_IGNORE) == 0) {
-                        Class<?>[] parameterTypes = method.getParameterTypes();
-                        if (parameterTypes.length == 1) {
-                            String modifierString = methodName.substring(ON_EVENT_METHOD_NAME.length());
-                            ThreadMode threadMode;
-                            if (modifierString.length() == 0) {
-                                threadMode = ThreadMode.PostThread;
-                            } else if (modifierString.equals("MainThread")) {
-                                threadMode = ThreadMode.MainThread;
-                            } else if (modifierString.equals("BackgroundThread")) {
-                                threadMode = ThreadMode.BackgroundThread;
-                            } else if (modifierString.equals("Async")) {
-                                threadMode = ThreadMode.Async;
-                            } else {
-                                if (skipMethodVerificationForClasses.containsKey(clazz)) {
-                                    continue;
-                                } else {
-                                    throw new EventBusException("Illegal onEvent method, check for typos: " + method);
-                                }
-                            }
-                            Class<?> eventType = parameterTypes[0];
-                            methodKeyBuilder.setLength(0);
-                            methodKeyBuilder.append(methodName);
-                            methodKeyBuilder.append('>').append(eventType.getName());
-                            String methodKey = methodKeyBuilder.toString();
-                            if (eventTypesFound.add(methodKey)) {
-                                // Only add if not already found in a sub class
-                                subscriberMethods.add(new SubscriberMethod(method, threadMode, eventType));
-                            }
-                        }
-                    } else if (!skipMethodVerificationForClasses.containsKey(clazz)) {
-                        if (DEBUG) {
-                            Log.d(EventBus.TAG, "Skipping method (not public, static or abstract): " + clazz + "."
-                                + methodName);
-                        }
-                    }
-                }
+            // Use the index generated at compile time, scan the methods by reflection only if the class is not indexed
+            SubscriberInfo subscriberInfo = getSubscriberInfo(clazz);
+            if (subscriberInfo != null) {
+                findUsingInfo(subscriberInfo, subscriberMethods, eventTypesFound, methodKeyBuilder);
+            } else {
+                findUsingReflection(clazz, subscriberMethods, eventTypesFound, methodKeyBuilder);
             }
             clazz = clazz.getSuperclass();
         }
@@ -139,19 +94,109 @@ class SubscriberMethodFinder {
                         + ON_EVENT_METHOD_NAME);
             }
         } else {
-            synchronized (methodCache) {
-                methodCache.put(key, subscriberMethods);
-            }
+            methodCache.put(key, subscriberMethods);
         }
         
         return subscriberMethods;
     }
 
-    static void clearCaches() {
-        synchronized (methodCache) {
-            methodCache.clear();
+    private SubscriberInfo getSubscriberInfo(Class<?> clazz) {
+        if (subscriberInfoIndexes != null) {
+            for (SubscriberInfoIndex index : subscriberInfoIndexes) {
+                SubscriberInfo info = index.getSubscriberInfo(clazz);
+                if (info != null) {
+                    return info;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void findUsingInfo(SubscriberInfo subscriberInfo, List<SubscriberMethod> subscriberMethods,
+            HashSet<String> eventTypesFound, StringBuilder methodKeyBuilder) {
+        Class<?> clazz = subscriberInfo.getSubscriberClass();
+        for (SubscriberMethodInfo methodInfo : subscriberInfo.getSubscriberMethodInfos()) {
+            if (checkAdd(methodInfo.methodName, methodInfo.eventType, eventTypesFound, methodKeyBuilder)) {
+                Method method;
+                try {
+                    // Look up the single method, much cheaper than scanning all declared methods
+                    method = clazz.getDeclaredMethod(methodInfo.methodName, methodInfo.eventType);
+                } catch (NoSuchMethodException e) {
+                    throw new EventBusException("Subscriber index is out of date: " + clazz + "."
+                            + methodInfo.methodName, e);
+                }
+                subscriberMethods.add(new SubscriberMethod(method, methodInfo.threadMode, methodInfo.eventType,
+                        methodInfo.invoker, methodInfo.coalesce));
+            }
         }
     }
 
+    private void findUsingReflection(Class<?> clazz, List<SubscriberMethod> subscriberMethods,
+            HashSet<String> eventTypesFound, StringBuilder methodKeyBuilder) {
+        // Starting with EventBus 2.2 we enforced methods to be public (might change with annotations again)
+        Method[] methods = clazz.getDeclaredMethods();
+        for (Method method : methods) {
+            // Added by lihong06 2014/11/20 begin ======
+            //
+            // If the method is not marked by Subscribe annotation, we skip it.
+            Subscribe subscribe = method.getAnnotation(Subscribe.class);
+            if (subscribe == null) {
+                continue;
+            }
+            // Added by lihong06 2014/11/20 end ========
+            
+            String methodName = method.getName();
+            if (methodName.startsWith(ON_EVENT_METHOD_NAME)) {
+                int modifiers = method.getModifiers();
+                if ((modifiers & Modifier.PUBLIC) != 0 && (modifiers & MODIFIERS_IGNORE) == 0) {
+                    Class<?>[] parameterTypes = method.getParameterTypes();
+                    if (parameterTypes.length == 1) {
+                        String modifierString = methodName.substring(ON_EVENT_METHOD_NAME.length());
+                        ThreadMode threadMode;
+                        if (modifierString.length() == 0) {
+                            threadMode = ThreadMode.PostThread;
+                        } else if (modifierString.equals("MainThread")) {
+                            threadMode = ThreadMode.MainThread;
+                        } else if (modifierString.equals("BackgroundThread")) {
+                            threadMode = ThreadMode.BackgroundThread;
+                        } else if (modifierString.equals("Async")) {
+                            threadMode = ThreadMode.Async;
+                        } else {
+                            if (skipMethodVerificationForClasses.containsKey(clazz)) {
+                                continue;
+                            } else {
+                                throw new EventBusException("Illegal onEvent method, check for typos: " + method);
+                            }
+                        }
+                        Class<?> eventType = parameterTypes[0];
+                        if (checkAdd(methodName, eventType, eventTypesFound, methodKeyBuilder)) {
+                            // Only add if not already found in a sub class
+                            subscriberMethods.add(new SubscriberMethod(method, threadMode, eventType,
+                                    subscribe.coalesce()));
+                        }
+                    }
+                } else if (!skipMethodVerificationForClasses.containsKey(clazz)) {
+                    if (DEBUG) {
+                        Log.d(EventBus.TAG, "Skipping method (not public, static or abstract): " + clazz + "."
+                            + methodName);
+                    }
+                }
+            }
+        }
+    }
+
+    /** @return true if the method is not overridden by a sub class, which is already found */
+    private static boolean checkAdd(String methodName, Class<?> eventType, HashSet<String> eventTypesFound,
+            StringBuilder methodKeyBuilder) {
+        methodKeyBuilder.setLength(0);
+        methodKeyBuilder.append(methodName);
+        methodKeyBuilder.append('>').append(eventType.getName());
+        return eventTypesFound.add(methodKeyBuilder.toString());
+    }
+
+    static void clearCaches() {
+        methodCache.clear();
+    }
+
 }
 //CHECKSTYLE:ON
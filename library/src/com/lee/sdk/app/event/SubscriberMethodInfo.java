@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2014 Baidu Inc. All rights reserved.
+ */
+
+package com.lee.sdk.app.event;
+
+/**
+ * 订阅方法的描述，由生成的{@link SubscriberInfoIndex}创建。
+ * 
+ * @author lihong06
+ * @since 2014-11-20
+ */
+public class SubscriberMethodInfo {
+    /** 方法名 */
+    final String methodName;
+    /** 执行的线程 */
+    final ThreadMode threadMode;
+    /** 事件类型 */
+    final Class<?> eventType;
+    /** 调用器，为null时通过反射调用 */
+    final SubscriberInvoker invoker;
+    /** 是否合并事件，参考{@link Subscribe#coalesce()} */
+    final boolean coalesce;
+
+    /**
+     * Constructor method
+     * 
+     * @param methodName 方法名
+     * @param threadMode 执行的线程
+     * @param eventType 事件类型，即方法唯一的参数类型
+     */
+    public SubscriberMethodInfo(String methodName, ThreadMode threadMode, Class<?> eventType) {
+        this(methodName, threadMode, eventType, null);
+    }
+
+    /**
+     * Constructor method
+     * 
+     * @param methodName 方法名
+     * @param threadMode 执行的线程
+     * @param eventType 事件类型，即方法唯一的参数类型
+     * @param invoker 预编译的调用器，为null时通过反射调用
+     */
+    public SubscriberMethodInfo(String methodName, ThreadMode threadMode, Class<?> eventType,
+            SubscriberInvoker invoker) {
+        this(methodName, threadMode, eventType, invoker, false);
+    }
+
+    /**
+     * Constructor method
+     * 
+     * @param methodName 方法名
+     * @param threadMode 执行的线程
+     * @param eventType 事件类型，即方法唯一的参数类型
+     * @param invoker 预编译的调用器，为null时通过反射调用
+     * @param coalesce 是否合并事件，参考{@link Subscribe#coalesce()}
+     */
+    public SubscriberMethodInfo(String methodName, ThreadMode threadMode, Class<?> eventType,
+            SubscriberInvoker invoker, boolean coalesce) {
+        this.methodName = methodName;
+        this.threadMode = threadMode;
+        this.eventType = eventType;
+        this.invoker = invoker;
+        this.coalesce = coalesce;
+    }
+}
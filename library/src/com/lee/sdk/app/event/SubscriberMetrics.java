@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2014 Baidu Inc. All rights reserved.
+ */
+
+package com.lee.sdk.app.event;
+
+/**
+ * 一个订阅方法的执行指标快照，通过{@link EventBusWrapper#getSubscriberMetrics()}得到，需要先通过
+ * {@link EventBusBuilder#subscriberMetrics(long)}打开统计。
+ * 
+ * @author lihong06
+ * @since 2014-11-20
+ */
+public final class SubscriberMetrics {
+    /** 方法名，包括类名 */
+    private final String methodName;
+    /** 事件类型 */
+    private final Class<?> eventType;
+    /** 执行的线程 */
+    private final ThreadMode threadMode;
+    /** 调用次数 */
+    private final long invocationCount;
+    /** 累计的执行时间，纳秒 */
+    private final long totalNanos;
+    /** 最大的执行时间，纳秒 */
+    private final long maxNanos;
+    /** 在主线程中超过时间预算的次数 */
+    private final long slowCount;
+
+    /**
+     * Constructor method
+     */
+    SubscriberMetrics(String methodName, Class<?> eventType, ThreadMode threadMode, long invocationCount,
+            long totalNanos, long maxNanos, long slowCount) {
+        this.methodName = methodName;
+        this.eventType = eventType;
+        this.threadMode = threadMode;
+        this.invocationCount = invocationCount;
+        this.totalNanos = totalNanos;
+        this.maxNanos = maxNanos;
+        this.slowCount = slowCount;
+    }
+
+    /**
+     * @return 方法名，格式为“类名#方法名”
+     */
+    public String getMethodName() {
+        return methodName;
+    }
+
+    /**
+     * @return 事件类型
+     */
+    public Class<?> getEventType() {
+        return eventType;
+    }
+
+    /**
+     * @return 执行的线程
+     */
+    public ThreadMode getThreadMode() {
+        return threadMode;
+    }
+
+    /**
+     * @return 调用次数
+     */
+    public long getInvocationCount() {
+        return invocationCount;
+    }
+
+    /**
+     * @return 累计的执行时间，单位毫秒
+     */
+    public double getTotalMillis() {
+        return totalNanos / 1000000.0;
+    }
+
+    /**
+     * @return 最大的执行时间，单位毫秒
+     */
+    public double getMaxMillis() {
+        return maxNanos / 1000000.0;
+    }
+
+    /**
+     * @return 在主线程中执行时间超过预算的次数，大于0说明该方法可能造成卡顿
+     */
+    public long getSlowCount() {
+        return slowCount;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(methodName).append("(").append(eventType.getName()).append(") ").append(threadMode);
+        sb.append(" [count = ").append(invocationCount);
+        sb.append(", total = ").append(getTotalMillis()).append("ms");
+        sb.append(", max = ").append(getMaxMillis()).append("ms");
+        sb.append(", slow = ").append(slowCount).append("]");
+        return sb.toString();
+    }
+}
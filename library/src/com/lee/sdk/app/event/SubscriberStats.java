@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2014 Baidu Inc. All rights reserved.
+ */
+
+package com.lee.sdk.app.event;
+
+//CHECKSTYLE:OFF
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The delivery counters of a subscriber method in one bus, updated without locking or allocation.
+ */
+final class SubscriberStats {
+    private final String methodName;
+    private final Class<?> eventType;
+    private final ThreadMode threadMode;
+    private final AtomicLong invocationCount = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+    private final AtomicLong slowCount = new AtomicLong();
+
+    SubscriberStats(SubscriberMethod subscriberMethod) {
+        methodName = subscriberMethod.method.getDeclaringClass().getName() + "#" + subscriberMethod.method.getName();
+        eventType = subscriberMethod.eventType;
+        threadMode = subscriberMethod.threadMode;
+    }
+
+    String getMethodName() {
+        return methodName;
+    }
+
+    void record(long nanos, boolean slow) {
+        invocationCount.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+        long max;
+        while (nanos > (max = maxNanos.get())) {
+            if (maxNanos.compareAndSet(max, nanos)) {
+                break;
+            }
+        }
+        if (slow) {
+            slowCount.incrementAndGet();
+        }
+    }
+
+    SubscriberMetrics snapshot() {
+        return new SubscriberMetrics(methodName, eventType, threadMode, invocationCount.get(), totalNanos.get(),
+                maxNanos.get(), slowCount.get());
+    }
+}
+//CHECKSTYLE:ON
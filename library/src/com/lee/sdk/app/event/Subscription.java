@@ -21,16 +21,25 @@ final class Subscription {
     final Object subscriber;
     final SubscriberMethod subscriberMethod;
     final int priority;
+    /** Keep only the newest pending event of this subscription in the main thread queue */
+    final boolean coalesce;
+    /** The pending post waiting for the main thread if coalescing, guarded by the {@link HandlerPoster} */
+    volatile PendingPost pendingCoalescedPost;
+    /** The delivery counters, null if the metrics of the bus are disabled */
+    final SubscriberStats stats;
     /**
      * Becomes false as soon as {@link EventBus#unregister(Object)} is called, which is checked by queued event delivery
      * {@link EventBus#invokeSubscriber(PendingPost)} to prevent race conditions.
      */
     volatile boolean active;
 
-    Subscription(Object subscriber, SubscriberMethod subscriberMethod, int priority) {
+    Subscription(Object subscriber, SubscriberMethod subscriberMethod, int priority, boolean coalesce,
+            SubscriberStats stats) {
         this.subscriber = subscriber;
         this.subscriberMethod = subscriberMethod;
         this.priority = priority;
+        this.coalesce = coalesce;
+        this.stats = stats;
         active = true;
     }
 
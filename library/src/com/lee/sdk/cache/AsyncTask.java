@@ -49,11 +49,13 @@ import java.util.concurrent.atomic.AtomicInteger;
  * so that threading behavior on all OS versions is the same and we can tweak behavior by using
  * executeOnExecutor() if needed.
  *
- * There are 3 changes in this copy of AsyncTask:
+ * There are 5 changes in this copy of AsyncTask:
  *    -pre-HC a single thread executor is used for serial operation
  *    (Executors.newSingleThreadExecutor) and is the default
  *    -the default THREAD_POOL_EXECUTOR was changed to use DiscardOldestPolicy
  *    -a new fixed thread pool called DUAL_THREAD_EXECUTOR was added
+ *    -a work-stealing executor called WORK_STEALING_EXECUTOR was added
+ *    -newKeyedSerialExecutor() was added to order the tasks per key
  * *************************************
  *
  * <p>AsyncTask enables proper and easy use of the UI thread. This class allows to
@@ -240,6 +242,19 @@ public abstract class AsyncTask<Params, Progress, Result> {
     public static final Executor DUAL_THREAD_EXECUTOR =
             Executors.newFixedThreadPool(2, sThreadFactory);
 
+    private static final int WORK_STEALING_CAPACITY = 256;
+
+    /**
+     * A work-stealing {@link Executor} with per-thread deques, its threads are created when
+     * needed and released when idle. Unlike {@link #THREAD_POOL_EXECUTOR}, it never drops the
+     * queued tasks: when the queue is full, the task is rejected with
+     * {@link java.util.concurrent.RejectedExecutionException}. Use
+     * {@link #setDefaultExecutor(Executor)} to make it the default one.
+     */
+    public static final WorkStealingExecutor WORK_STEALING_EXECUTOR =
+            new WorkStealingExecutor(MAXIMUM_POOL_SIZE, WORK_STEALING_CAPACITY, KEEP_ALIVE,
+                    TimeUnit.SECONDS, sThreadFactory, WorkStealingExecutor.OverflowPolicy.ABORT);
+
     private static final int MESSAGE_POST_RESULT = 0x1;
     private static final int MESSAGE_POST_PROGRESS = 0x2;
 
@@ -250,7 +265,7 @@ public abstract class AsyncTask<Params, Progress, Result> {
 
     private static volatile Executor sDefaultExecutor = SERIAL_EXECUTOR;
     private final WorkerRunnable<Params, Result> mWorker;
-    private final FutureTask<Result> mFuture;
+    private volatile FutureTask<Result> mFuture;
 
     private volatile Status mStatus = Status.PENDING;
 
@@ -302,6 +317,24 @@ public abstract class AsyncTask<Params, Progress, Result> {
         FINISHED,
     }
 
+    /**
+     * Creates an executor which keeps the FIFO order of the tasks with the same key, such as
+     * a file or a cache key, and runs the tasks with different keys in parallel on
+     * {@link #WORK_STEALING_EXECUTOR}.
+     */
+    public static KeyedSerialExecutor newKeyedSerialExecutor() {
+        return new KeyedSerialExecutor(WORK_STEALING_EXECUTOR);
+    }
+
+    /**
+     * Creates an executor which keeps the FIFO order of the tasks with the same key, and runs
+     * the tasks with different keys in parallel on the specified executor. The executor must
+     * not discard tasks silently, such as {@link #THREAD_POOL_EXECUTOR}.
+     */
+    public static KeyedSerialExecutor newKeyedSerialExecutor(Executor executor) {
+        return new KeyedSerialExecutor(executor);
+    }
+
     /** @hide Used to force static handler to be created. */
     public static void init() {
         sHandler.getLooper();
@@ -326,7 +359,11 @@ public abstract class AsyncTask<Params, Progress, Result> {
             }
         };
 
-        mFuture = new FutureTask<Result>(mWorker) {
+        mFuture = createFuture();
+    }
+
+    private FutureTask<Result> createFuture() {
+        return new FutureTask<Result>(mWorker) {
             @Override
             protected void done() {
                 try {
@@ -668,6 +705,36 @@ public abstract class AsyncTask<Params, Progress, Result> {
             onPostExecute(result);
         }
         mStatus = Status.FINISHED;
+        onFinished();
+    }
+
+    /**
+     * <p>Runs on the UI thread after {@link #onPostExecute} or {@link #onCancelled(Object)},
+     * when the status is already {@link Status#FINISHED}. Subclasses which pool their
+     * instances can call {@link #reset()} here.</p>
+     */
+    protected void onFinished() {
+    }
+
+    /**
+     * <p>Resets a finished task so that it can be executed again, this avoids allocating a
+     * new task for every execution. A cancelled task can not be reset: if it is cancelled
+     * while it is starting, its result may be posted once more after it has finished.</p>
+     *
+     * <p>This method must be invoked on the UI thread.</p>
+     *
+     * @return true if the task has been reset, false otherwise.
+     */
+    protected final boolean reset() {
+        if (mStatus != Status.FINISHED || isCancelled()) {
+            return false;
+        }
+
+        mWorker.mParams = null;
+        mTaskInvoked.set(false);
+        mFuture = createFuture();
+        mStatus = Status.PENDING;
+        return true;
     }
 
     private static class InternalHandler extends Handler {
@@ -29,6 +29,52 @@ import java.util.Map;
  * @since 2014-7-28
  */
 public abstract class ILoadImageImpl implements ILoadImage {
+    /**
+     * 缓存的key，{@link #isCacheKeyStable()}返回true时，第一次加载时计算，避免每次绑定View都调用{@link #toString()}
+     */
+    private volatile String mCacheKey;
+
+    /**
+     * 返回内存缓存和磁盘缓存的key，它是{@link #toString()}的结果。{@link #isCacheKeyStable()}返回true时只计算一次，
+     * URL为空时不缓存。
+     * 
+     * @return key
+     */
+    public String getCacheKey() {
+        if (!isCacheKeyStable()) {
+            return toString();
+        }
+
+        String key = mCacheKey;
+        if (null == key) {
+            String url = getUrl();
+            if (TextUtils.isEmpty(url)) {
+                return toString();
+            }
+            key = toString();
+            mCacheKey = key;
+        }
+        
+        return key;
+    }
+
+    /**
+     * 缓存的key是否不会改变，默认返回false，每次加载都调用{@link #toString()}。URL不会改变的子类可以返回true，
+     * URL改变后需要调用{@link #resetCacheKey()}
+     * 
+     * @return true表示缓存key
+     */
+    protected boolean isCacheKeyStable() {
+        return false;
+    }
+
+    /**
+     * 数据的URL改变后，子类需要调用这个方法，让下次加载时重新计算缓存的key
+     */
+    protected final void resetCacheKey() {
+        mCacheKey = null;
+    }
+
     @Override
     public Bitmap loadImage() {
         return null;
@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2016 LiHong (https://github.com/leehong2005)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lee.sdk.cache;
+
+import java.util.List;
+
+/**
+ * 支持多种尺寸的图片数据，Model类可以实现这个接口来列出服务器提供的所有尺寸。
+ *
+ * <p>
+ * {@link ImageWorker}会根据View的大小和当前的网络类型，选择能覆盖View大小的最小尺寸来下载，
+ * 如果更大尺寸的图片已经在缓存中，则直接使用缓存的图片。{@link #getUrl()}仍然返回原图的URL。
+ * </p>
+ *
+ * @author lihong06
+ * @since 2016-10-19
+ */
+public interface IMultiSizeImage extends ILoadImage {
+    /**
+     * 返回服务器提供的所有尺寸，顺序不限
+     *
+     * @return 尺寸列表，可以为null
+     */
+    List<ImageVariant> getVariants();
+}
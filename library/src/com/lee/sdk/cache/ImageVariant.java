@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2016 LiHong (https://github.com/leehong2005)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lee.sdk.cache;
+
+/**
+ * 描述服务器提供的某一个尺寸的图片，它由{@link IMultiSizeImage#getVariants()}返回。
+ *
+ * @author lihong06
+ * @since 2016-10-19
+ */
+public class ImageVariant {
+    /**
+     * 该尺寸图片的URL，同时也作为缓存的key
+     */
+    public final String url;
+    /**
+     * 图片的宽度
+     */
+    public final int width;
+    /**
+     * 图片的高度
+     */
+    public final int height;
+
+    /**
+     * 构造方法
+     *
+     * @param url    url
+     * @param width  图片宽度
+     * @param height 图片高度
+     */
+    public ImageVariant(String url, int width, int height) {
+        this.url = url;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * 判断该尺寸是否能覆盖指定的大小
+     *
+     * @param targetWidth  目标宽度
+     * @param targetHeight 目标高度
+     * @return true/false
+     */
+    public boolean covers(int targetWidth, int targetHeight) {
+        return width >= targetWidth && height >= targetHeight;
+    }
+
+    /**
+     * 图片的像素数
+     *
+     * @return 像素数
+     */
+    public long getPixels() {
+        return (long) width * height;
+    }
+
+    @Override
+    public String toString() {
+        return url;
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright (C) 2016 LiHong (https://github.com/leehong2005)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lee.sdk.cache;
+
+import android.content.Context;
+import android.os.SystemClock;
+
+import com.lee.sdk.utils.NetUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 根据目标大小和网络类型，从{@link IMultiSizeImage}提供的多种尺寸中选择合适的一个。
+ *
+ * <p>
+ * 选择的规则是：先根据网络类型缩小目标大小（2G/3G下不需要那么清晰），然后选择能覆盖目标大小的最小尺寸，
+ * 如果所有尺寸都不能覆盖，则选择最大的尺寸。
+ * </p>
+ *
+ * @author lihong06
+ * @since 2016-10-19
+ */
+public final class ImageVariantSelector {
+    /**
+     * 网络类型缓存的有效时间，避免每次绑定都去查询ConnectivityManager
+     */
+    private static final long NETWORK_CLASS_EXPIRE = 3000;
+    /**
+     * 缓存的网络类型
+     */
+    private static volatile int sNetworkClass = NetUtils.NETWORK_CLASS_UNKNOWN;
+    /**
+     * 网络类型的查询时间
+     */
+    private static volatile long sNetworkClassTime = 0;
+
+    /**
+     * 按像素数从小到大排序
+     */
+    private static final Comparator<ImageVariant> SIZE_COMPARATOR = new Comparator<ImageVariant>() {
+        @Override
+        public int compare(ImageVariant lhs, ImageVariant rhs) {
+            long lp = lhs.getPixels();
+            long rp = rhs.getPixels();
+            return (lp < rp) ? -1 : ((lp == rp) ? 0 : 1);
+        }
+    };
+
+    /**
+     * 构造方法
+     */
+    private ImageVariantSelector() {
+    }
+
+    /**
+     * 得到当前的网络类型，结果会缓存一小段时间
+     *
+     * @param context context
+     * @return 网络类型，参考{@link NetUtils#getNetworkClass(Context)}
+     */
+    public static int getNetworkClass(Context context) {
+        final long now = SystemClock.uptimeMillis();
+        if (0 == sNetworkClassTime || now - sNetworkClassTime > NETWORK_CLASS_EXPIRE) {
+            sNetworkClass = NetUtils.getNetworkClass(context);
+            sNetworkClassTime = now;
+        }
+
+        return sNetworkClass;
+    }
+
+    /**
+     * 根据网络类型得到目标大小的缩放比例
+     *
+     * @param networkClass 网络类型
+     * @return 缩放比例
+     */
+    public static float getNetworkScale(int networkClass) {
+        switch (networkClass) {
+            case NetUtils.NETWORK_CLASS_2G:
+                return 0.5f;    // SUPPRESS CHECKSTYLE
+            case NetUtils.NETWORK_CLASS_3G:
+                return 0.75f;   // SUPPRESS CHECKSTYLE
+            default:
+                return 1.0f;
+        }
+    }
+
+    /**
+     * 按像素数从小到大返回所有的尺寸
+     *
+     * @param image image
+     * @return 排序后的尺寸列表，不会为null
+     */
+    public static List<ImageVariant> getSortedVariants(IMultiSizeImage image) {
+        List<ImageVariant> variants = (null != image) ? image.getVariants() : null;
+        if (null == variants || variants.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        ArrayList<ImageVariant> sorted = new ArrayList<ImageVariant>(variants.size());
+        for (ImageVariant variant : variants) {
+            if (null != variant && null != variant.url) {
+                sorted.add(variant);
+            }
+        }
+        Collections.sort(sorted, SIZE_COMPARATOR);
+        return sorted;
+    }
+
+    /**
+     * 选择能覆盖目标大小的最小尺寸，如果都不能覆盖，则返回最大的尺寸
+     *
+     * @param sortedVariants 按像素数从小到大排序的尺寸
+     * @param targetWidth    目标宽度
+     * @param targetHeight   目标高度
+     * @param scale          目标大小的缩放比例，参考{@link #getNetworkScale(int)}
+     * @return 选定的尺寸，如果没有可用尺寸，返回null
+     */
+    public static ImageVariant select(List<ImageVariant> sortedVariants, int targetWidth, int targetHeight,
+            float scale) {
+        final int size = sortedVariants.size();
+        if (0 == size) {
+            return null;
+        }
+
+        final int width = (int) (targetWidth * scale);
+        final int height = (int) (targetHeight * scale);
+        for (int i = 0; i < size; ++i) {
+            ImageVariant variant = sortedVariants.get(i);
+            if (variant.covers(width, height)) {
+                return variant;
+            }
+        }
+
+        return sortedVariants.get(size - 1);
+    }
+
+    /**
+     * 在内存缓存中查找比指定尺寸更大的图片
+     *
+     * @param cache          image cache
+     * @param sortedVariants 按像素数从小到大排序的尺寸
+     * @param variant        选定的尺寸
+     * @return 已经缓存的更大的尺寸，没有则返回null
+     */
+    static ImageVariant findLargerInMemCache(ImageCache cache, List<ImageVariant> sortedVariants,
+            ImageVariant variant) {
+        if (null == cache) {
+            return null;
+        }
+
+        for (int i = sortedVariants.indexOf(variant) + 1, size = sortedVariants.size(); i < size; ++i) {
+            ImageVariant larger = sortedVariants.get(i);
+            if (null != cache.getBitmapFromMemCache(larger.url)) {
+                return larger;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * 在磁盘缓存中查找比指定尺寸更大的图片，这个方法会访问磁盘，不能在UI线程中调用
+     *
+     * @param cache          image cache
+     * @param sortedVariants 按像素数从小到大排序的尺寸
+     * @param variant        选定的尺寸
+     * @return 已经缓存的更大的尺寸，没有则返回null
+     */
+    static ImageVariant findLargerInDiskCache(ImageCache cache, List<ImageVariant> sortedVariants,
+            ImageVariant variant) {
+        if (null == cache) {
+            return null;
+        }
+
+        for (int i = sortedVariants.indexOf(variant) + 1, size = sortedVariants.size(); i < size; ++i) {
+            ImageVariant larger = sortedVariants.get(i);
+            if (cache.hasBitmapInDiskCache(larger.url)) {
+                return larger;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * 在内存缓存中查找比指定尺寸更小的图片，优先返回较大的，用于在加载原图时先显示出来
+     *
+     * @param cache          image cache
+     * @param sortedVariants 按像素数从小到大排序的尺寸
+     * @param variant        选定的尺寸
+     * @return 已经缓存的更小的尺寸，没有则返回null
+     */
+    static ImageVariant findSmallerInMemCache(ImageCache cache, List<ImageVariant> sortedVariants,
+            ImageVariant variant) {
+        if (null == cache) {
+            return null;
+        }
+
+        for (int i = sortedVariants.indexOf(variant) - 1; i >= 0; --i) {
+            ImageVariant smaller = sortedVariants.get(i);
+            if (null != cache.getBitmapFromMemCache(smaller.url)) {
+                return smaller;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * 在磁盘缓存中查找比指定尺寸更小的图片，优先返回较大的，这个方法会访问磁盘，不能在UI线程中调用
+     *
+     * @param cache          image cache
+     * @param sortedVariants 按像素数从小到大排序的尺寸
+     * @param variant        选定的尺寸
+     * @return 已经缓存的更小的尺寸，没有则返回null
+     */
+    static ImageVariant findSmallerInDiskCache(ImageCache cache, List<ImageVariant> sortedVariants,
+            ImageVariant variant) {
+        if (null == cache) {
+            return null;
+        }
+
+        for (int i = sortedVariants.indexOf(variant) - 1; i >= 0; --i) {
+            ImageVariant smaller = sortedVariants.get(i);
+            if (cache.hasBitmapInDiskCache(smaller.url)) {
+                return smaller;
+            }
+        }
+
+        return null;
+    }
+}
@@ -25,13 +25,19 @@ import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.ColorDrawable;
 import android.graphics.drawable.Drawable;
 import android.graphics.drawable.TransitionDrawable;
+import android.text.TextUtils;
+import android.util.DisplayMetrics;
 import android.util.Log;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageView;
 
 import com.lee.sdk.cache.task.ImageLoaderTask;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.ref.WeakReference;
+import java.util.List;
 
 //CHECKSTYLE:OFF
 
@@ -64,6 +70,10 @@ public abstract class ImageWorker {
     
     private static final String TAG = "ImageWorker";
     private static final int FADE_IN_TIME = 200;
+    /** 缓存的BitmapWorkerTask和AsyncDrawable的最大个数 */
+    private static final int MAX_POOL_SIZE = 16;
+    /** 缓存排序后尺寸的多尺寸Model的最大个数 */
+    private static final int MAX_VARIANT_SETS = 64;
 
     private ImageCache mImageCache;
     private ImageCache.ImageCacheParams mImageCacheParams;
@@ -75,6 +85,7 @@ public abstract class ImageWorker {
     private final Object mPauseWorkLock = new Object();
 
     protected Resources mResources;
+    private final Context mAppContext;
 
     private static final int MESSAGE_CLEAR = 0;
     private static final int MESSAGE_INIT_DISK_CACHE = 1;
@@ -84,9 +95,18 @@ public abstract class ImageWorker {
     private static final boolean DEBUG = true & BuildConfig.DEBUG;
     
     private WeakReference<OnLoadImageListener> mListener;
+    
+    /** 已完成的task，加载下一张图片时复用，只在UI线程中访问 */
+    private final RecyclePool<BitmapWorkerTask> mTaskPool = new RecyclePool<BitmapWorkerTask>(MAX_POOL_SIZE);
+    /** 已解除绑定的AsyncDrawable，加载下一张图片时复用，只在UI线程中访问 */
+    private final RecyclePool<AsyncDrawable> mAsyncDrawablePool = new RecyclePool<AsyncDrawable>(MAX_POOL_SIZE);
+    /** 多尺寸Model排序后的尺寸和绑定到每个尺寸的数据，避免每次绑定都排序和分配对象，只在UI线程中访问 */
+    private final LruCache<IMultiSizeImage, VariantSet> mVariantSets =
+            new LruCache<IMultiSizeImage, VariantSet>(MAX_VARIANT_SETS);
 
     protected ImageWorker(Context context) {
         mResources = context.getResources();
+        mAppContext = context.getApplicationContext();
     }
     
     /**
@@ -152,29 +172,35 @@ public abstract class ImageWorker {
         if (DEBUG) {
             Log.d(TAG, "ImageWorker loadImage data = " + data);
         }
+        if (data instanceof IMultiSizeImage) {
+            data = resolveVariant((IMultiSizeImage) data, imageView);
+        }
         Bitmap bitmap = null;
         boolean succeed = false;
 
         if (mImageCache != null) {
-            bitmap = mImageCache.getBitmapFromMemCache(String.valueOf(data));
+            bitmap = mImageCache.getBitmapFromMemCache(getCacheKey(data));
             if (DEBUG) {
                 Log.d(TAG, "get bitmap from memcache data = " + data);
             }
         }
 
         if (bitmap != null) {
-            // Bitmap found in memory cache
-            imageView.setImageDrawable(new BitmapDrawable(mResources, bitmap));
+            // Bitmap found in memory cache, the view may show it already when it is bound again.
+            if (!isShowingBitmap(imageView, bitmap)) {
+                imageView.setImageDrawable(new BitmapDrawable(mResources, bitmap));
+            }
             // Here set the drawable to null.
             imageView.setAsyncDrawable(null);
             
             // Added by LiHong at 2013/07/24 begin =======
-            perfermOnLoadImage(data, bitmap);
+            final Object sourceData = getSourceData(data);
+            perfermOnLoadImage(sourceData, bitmap);
             if (DEBUG) {
                 Log.d(TAG, "loadImage try to nofity listener data = " + data);
             }
             if (null != listener) {
-                listener.onLoadImage(data, bitmap);
+                listener.onLoadImage(sourceData, bitmap);
                 if (DEBUG) {
                     Log.d(TAG, "loadImage after nofity listener data = " + data);
                 }
@@ -212,10 +238,10 @@ public abstract class ImageWorker {
             }
             if (createTask) {
                 if (null == asyncDrawable) {
-                    asyncDrawable = new AsyncDrawable(mResources, mLoadingBitmap);
+                    asyncDrawable = obtainAsyncDrawable();
                 }
 
-                final BitmapWorkerTask task = new BitmapWorkerTask(imageView);
+                final BitmapWorkerTask task = obtainTask(data, imageView, asyncDrawable);
                 asyncDrawable.setWorkerTask(task);
                 // Set the listener.
                 if (DEBUG) {
@@ -228,7 +254,15 @@ public abstract class ImageWorker {
                 }
                 asyncDrawable.setOnLoadImageListener(listener);
                 asyncDrawable.setImageLoaderTask(loaderTask);
-                Drawable drawable = (null != mLoadingBitmap) ? new BitmapDrawable(mResources, mLoadingBitmap) : null;
+                // Show a smaller size variant in memory cache instead of the loading bitmap.
+                Drawable drawable = getPreviewFromMemCache(data);
+                if (null != drawable) {
+                    task.mPreviewDrawable = drawable;
+                } else if (null != mLoadingBitmap) {
+                    // The AsyncDrawable holds the loading bitmap, show it directly.
+                    drawable = (asyncDrawable.getBitmap() == mLoadingBitmap)
+                            ? asyncDrawable : new BitmapDrawable(mResources, mLoadingBitmap);
+                }
                 imageView.setImageDrawable(drawable);
                 imageView.setAsyncDrawable(asyncDrawable);
                 
@@ -236,7 +270,7 @@ public abstract class ImageWorker {
                 // framework and slightly modified. Refer to the docs at the top of the class
                 // for more info on what was changed.
                 //task.executeOnExecutor(AsyncTask.DUAL_THREAD_EXECUTOR, data);
-                task.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, data);
+                task.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, task.mParams);
                 if (DEBUG) {
                     Log.d(TAG, "BitmapWorkerTask start " + data);
                 }
@@ -247,6 +281,215 @@ public abstract class ImageWorker {
         return succeed;
     }
 
+    /**
+     * Return the key of the data in memory cache and disk cache, the key of {@link ILoadImageImpl}
+     * and {@link VariantLoadImage} is computed only once.
+     * 
+     * @param data the data used to load image
+     * @return the key
+     */
+    private static String getCacheKey(Object data) {
+        if (data instanceof String) {
+            return (String) data;
+        }
+        
+        if (data instanceof VariantLoadImage) {
+            return ((VariantLoadImage) data).getUrl();
+        }
+        
+        if (data instanceof ILoadImageImpl) {
+            return ((ILoadImageImpl) data).getCacheKey();
+        }
+        
+        return String.valueOf(data);
+    }
+    
+    /**
+     * Check whether the view is showing the bitmap, the top layer of the fade in drawable is also checked.
+     * 
+     * @param imageView the view
+     * @param bitmap the bitmap from memory cache
+     * @return true if the view is showing the bitmap
+     */
+    private static boolean isShowingBitmap(IAsyncView imageView, Bitmap bitmap) {
+        if (!(imageView instanceof ImageView)) {
+            return false;
+        }
+        
+        Drawable drawable = ((ImageView) imageView).getDrawable();
+        if (drawable instanceof TransitionDrawable) {
+            final TransitionDrawable transition = (TransitionDrawable) drawable;
+            drawable = transition.getDrawable(transition.getNumberOfLayers() - 1);
+        }
+        
+        return (drawable instanceof BitmapDrawable) && !(drawable instanceof PreviewDrawable)
+                && ((BitmapDrawable) drawable).getBitmap() == bitmap;
+    }
+    
+    /**
+     * Get a finished task from the pool or create a new one, and bind it to the data and view.
+     * Must be called in UI thread.
+     */
+    private BitmapWorkerTask obtainTask(Object data, IAsyncView imageView, AsyncDrawable asyncDrawable) {
+        BitmapWorkerTask task = mTaskPool.get();
+        if (null == task) {
+            task = new BitmapWorkerTask();
+        }
+        task.bind(data, imageView, asyncDrawable);
+        return task;
+    }
+    
+    /**
+     * Get an AsyncDrawable holding the current loading bitmap from the pool or create a new one.
+     * Must be called in UI thread.
+     */
+    private AsyncDrawable obtainAsyncDrawable() {
+        AsyncDrawable asyncDrawable = mAsyncDrawablePool.get();
+        // The loading bitmap may be changed after the drawable was recycled.
+        while (null != asyncDrawable && asyncDrawable.getBitmap() != mLoadingBitmap) {
+            asyncDrawable = mAsyncDrawablePool.get();
+        }
+        if (null == asyncDrawable) {
+            asyncDrawable = new AsyncDrawable(mResources, mLoadingBitmap);
+        }
+        return asyncDrawable;
+    }
+    
+    /**
+     * Recycle the AsyncDrawable which has been detached from the view. Must be called in UI thread.
+     */
+    private void recycleAsyncDrawable(AsyncDrawable asyncDrawable) {
+        asyncDrawable.setWorkerTask(null);
+        asyncDrawable.setOnLoadImageListener(null);
+        asyncDrawable.setImageLoaderTask(null);
+        asyncDrawable.setCallback(null);
+        if (asyncDrawable.getBitmap() == mLoadingBitmap) {
+            mAsyncDrawablePool.recycle(asyncDrawable);
+        }
+    }
+
+    /**
+     * Select the size variant for the view: the smallest one that covers the view size (scaled by
+     * the network quality), or a larger one which is already in the memory cache.
+     * 
+     * @param data the multi-size data
+     * @param imageView the view to show the bitmap
+     * @return the data bound to the selected variant, or the original data if no variant exists
+     */
+    private Object resolveVariant(IMultiSizeImage data, IAsyncView imageView) {
+        final VariantSet variantSet = getVariantSet(data);
+        if (null == variantSet) {
+            return data;
+        }
+        final List<ImageVariant> variants = variantSet.mSortedVariants;
+        
+        int targetWidth = 0;
+        int targetHeight = 0;
+        if (imageView instanceof View) {
+            final View view = (View) imageView;
+            targetWidth = view.getWidth();
+            targetHeight = view.getHeight();
+            final ViewGroup.LayoutParams params = view.getLayoutParams();
+            if (null != params) {
+                if (targetWidth <= 0) {
+                    targetWidth = params.width;
+                }
+                if (targetHeight <= 0) {
+                    targetHeight = params.height;
+                }
+            }
+        }
+        // Unknown view size, assume it is full screen.
+        final DisplayMetrics dm = mResources.getDisplayMetrics();
+        if (targetWidth <= 0) {
+            targetWidth = dm.widthPixels;
+        }
+        if (targetHeight <= 0) {
+            targetHeight = dm.heightPixels;
+        }
+        
+        final float scale = ImageVariantSelector.getNetworkScale(ImageVariantSelector.getNetworkClass(mAppContext));
+        ImageVariant variant = ImageVariantSelector.select(variants, targetWidth, targetHeight, scale);
+        if (null != mImageCache && null == mImageCache.getBitmapFromMemCache(variant.url)) {
+            final ImageVariant cached = ImageVariantSelector.findLargerInMemCache(mImageCache, variants, variant);
+            if (null != cached) {
+                variant = cached;
+            }
+        }
+        
+        if (DEBUG) {
+            Log.d(TAG, "resolveVariant target = " + targetWidth + "x" + targetHeight + ", scale = " + scale
+                    + ", variant = " + variant.width + "x" + variant.height + ", url = " + variant.url);
+        }
+        
+        return variantSet.getBoundData(variant);
+    }
+    
+    /**
+     * Get the sorted variants of the data from cache, sort them again only if the data is new or its
+     * variants have changed.
+     * 
+     * @param data the multi-size data
+     * @return the variant set, null if the data has no variant
+     */
+    private VariantSet getVariantSet(IMultiSizeImage data) {
+        final List<ImageVariant> variants = data.getVariants();
+        VariantSet variantSet = mVariantSets.get(data);
+        if (null != variantSet && variantSet.isValid(data, variants)) {
+            return variantSet;
+        }
+        
+        final List<ImageVariant> sortedVariants = ImageVariantSelector.getSortedVariants(data);
+        if (sortedVariants.isEmpty()) {
+            mVariantSets.remove(data);
+            return null;
+        }
+        
+        variantSet = new VariantSet(data, variants, sortedVariants);
+        mVariantSets.put(data, variantSet);
+        return variantSet;
+    }
+    
+    /**
+     * Find the best smaller size variant in memory cache, it is shown while the selected variant is loading.
+     * 
+     * @param data the data used to load image
+     * @return the preview drawable, null if not found
+     */
+    private Drawable getPreviewFromMemCache(Object data) {
+        if (!(data instanceof VariantLoadImage) || null == mImageCache) {
+            return null;
+        }
+        
+        final VariantLoadImage variantData = (VariantLoadImage) data;
+        final ImageVariant smaller = ImageVariantSelector.findSmallerInMemCache(mImageCache,
+                variantData.getSortedVariants(), variantData.getVariant());
+        if (null == smaller) {
+            return null;
+        }
+        
+        final Bitmap bitmap = mImageCache.getBitmapFromMemCache(smaller.url);
+        if (null == bitmap) {
+            return null;
+        }
+        
+        return new PreviewDrawable(mResources, bitmap, smaller, variantData.getVariant());
+    }
+    
+    /**
+     * Return the data which is passed by the caller, the listener should always receive it.
+     * 
+     * @param data the data used to load image
+     * @return the original data
+     */
+    private static Object getSourceData(Object data) {
+        if (data instanceof VariantLoadImage) {
+            return ((VariantLoadImage) data).getSource();
+        }
+        
+        return data;
+    }
+    
     /**
      * Get the bitmap from cache.
      * 
@@ -258,7 +501,7 @@ public abstract class ImageWorker {
         Bitmap bitmap = null;
 
         if (mImageCache != null) {
-            bitmap = mImageCache.getBitmapFromMemCache(String.valueOf(data));
+            bitmap = mImageCache.getBitmapFromMemCache(getCacheKey(data));
         }
         
         return bitmap;
@@ -495,15 +738,28 @@ public abstract class ImageWorker {
     /**
      * The actual AsyncTask that will asynchronously process the image.
      */
-    private class BitmapWorkerTask extends AsyncTask<Object, Void, Object> {
+    private class BitmapWorkerTask extends AsyncTask<Object, Object, Object> {
         /** 是否支持GIF，如果文件是GIF，则返回GifDrawable，否则返回Bitmap */
         private boolean mIsGifSupported = true;
         /** 当前Task中的数据 */
         private Object mData;
-        private final WeakReference<IAsyncView> imageViewReference;
+        /** 加载过程中显示的小尺寸图片，在UI线程中访问 */
+        private Drawable mPreviewDrawable;
+        /** 绑定的View，task结束时清空，所以不会泄漏 */
+        private IAsyncView mImageView;
+        /** 绑定的AsyncDrawable，task结束时清空 */
+        private AsyncDrawable mAsyncDrawable;
+        /** 执行参数，task复用时不再创建新的数组 */
+        private final Object[] mParams = new Object[1];
 
-        public BitmapWorkerTask(IAsyncView imageView) {
-            imageViewReference = new WeakReference<IAsyncView>(imageView);
+        /**
+         * Bind the task to the data and view before executing it. Must be called in UI thread.
+         */
+        private void bind(Object data, IAsyncView imageView, AsyncDrawable asyncDrawable) {
+            mData = data;
+            mParams[0] = data;
+            mImageView = imageView;
+            mAsyncDrawable = asyncDrawable;
             mIsGifSupported = imageView.isGifSupported();
         }
 
@@ -529,9 +785,11 @@ public abstract class ImageWorker {
          * @param data data
          */
         private Object doInBackgroundForStream(Object... params) {
-            mData = params[0];
-            final String dataString = String.valueOf(mData);
+            final Object data = params[0];
+            final String dataString = getCacheKey(data);
             InputStream inputStream = null;
+            // Decoded from a larger variant in the disk cache, the disk cache of the selected one is still empty.
+            boolean fromLargerVariant = false;
             Bitmap bitmap = null;
             
             // Wait here if work is paused and the task is not cancelled
@@ -550,6 +808,24 @@ public abstract class ImageWorker {
             if (mImageCache != null && !isCancelled() && getAttachedImageView() != null
                     && !mExitTasksEarly) {
                 inputStream = mImageCache.getStreamFromDiskCache(dataString);
+                
+                // Fall back to a larger size variant which is already in the disk cache.
+                if (inputStream == null && data instanceof VariantLoadImage) {
+                    final VariantLoadImage variantData = (VariantLoadImage) data;
+                    final ImageVariant cached = ImageVariantSelector.findLargerInDiskCache(mImageCache,
+                            variantData.getSortedVariants(), variantData.getVariant());
+                    if (null != cached) {
+                        inputStream = mImageCache.getStreamFromDiskCache(cached.url);
+                        fromLargerVariant = (null != inputStream);
+                    }
+                }
+            }
+            
+            // Show a smaller size variant in disk cache while downloading the selected one.
+            if (inputStream == null && mPreviewDrawable == null && data instanceof VariantLoadImage
+                    && mImageCache != null && !isCancelled() && getAttachedImageView() != null
+                    && !mExitTasksEarly) {
+                publishPreviewFromDiskCache((VariantLoadImage) data);
             }
             
             final ImageLoaderTask externalImageLoaderTask = getImageLoaderTask(getAttachedImageView());
@@ -564,9 +840,9 @@ public abstract class ImageWorker {
             if (inputStream == null && !isCancelled() && getAttachedImageView() != null
                     && !mExitTasksEarly) {
                 if (null != externalImageLoaderTask) {
-                    inputStream = externalImageLoaderTask.downloadStream(mData);
+                    inputStream = externalImageLoaderTask.downloadStream(data);
                 } else {
-                    inputStream = downloadStream(mData);
+                    inputStream = downloadStream(data);
                 }
             }
             
@@ -587,9 +863,9 @@ public abstract class ImageWorker {
             Object retData = null;
             
             if (null != externalImageLoaderTask) {
-                retData = externalImageLoaderTask.decodeStream(mData, inputStream, mIsGifSupported);
+                retData = externalImageLoaderTask.decodeStream(data, inputStream, mIsGifSupported);
             } else {
-                retData = decodeStream(mData, inputStream, mIsGifSupported);
+                retData = decodeStream(data, inputStream, mIsGifSupported);
             }
             
             if (retData instanceof Bitmap) {
@@ -602,8 +878,9 @@ public abstract class ImageWorker {
             // bitmap to our cache as it might be used again in the future
             if (bitmap != null && mImageCache != null) {
                 // If use cache, we add the bitmap to cache. 
+                // The memory cache key is always the selected variant's, the bitmap is decoded with its sample size.
                 if (mUseCache) {
-                    mImageCache.addBitmapToCache(dataString, bitmap, true);
+                    mImageCache.addBitmapToCache(dataString, bitmap, !fromLargerVariant);
                 }
             }
             
@@ -622,12 +899,50 @@ public abstract class ImageWorker {
             return retData;
         }
         
+        /**
+         * Decode the best smaller size variant in disk cache and publish it to UI thread.
+         * 
+         * @param variantData the data bound to the selected variant
+         */
+        private void publishPreviewFromDiskCache(VariantLoadImage variantData) {
+            final ImageVariant smaller = ImageVariantSelector.findSmallerInDiskCache(mImageCache,
+                    variantData.getSortedVariants(), variantData.getVariant());
+            if (null == smaller) {
+                return;
+            }
+            
+            final Bitmap preview = mImageCache.getBitmapFromDiskCache(smaller.url);
+            if (null != preview) {
+                if (mUseCache) {
+                    mImageCache.addBitmapToCache(smaller.url, preview, false);
+                }
+                publishProgress(preview, smaller, variantData.getVariant());
+            }
+        }
+        
+        /**
+         * Show the preview bitmap until the selected variant is loaded.
+         */
+        @Override
+        protected void onProgressUpdate(Object... values) {
+            if (isCancelled() || mExitTasksEarly || mPreviewDrawable != null) {
+                return;
+            }
+            
+            final IAsyncView imageView = getAttachedImageView();
+            if (null != imageView) {
+                mPreviewDrawable = new PreviewDrawable(mResources, (Bitmap) values[0],
+                        (ImageVariant) values[1], (ImageVariant) values[2]);
+                imageView.setImageDrawable(mPreviewDrawable);
+            }
+        }
+        
         /**
          * Once the image is processed, associates it to the imageView
          */
         @Override
         protected void onPostExecute(Object result) {
-            onPostExecuteForStream(mData, result);
+            onPostExecuteForStream(getSourceData(mData), result);
         }
         
         /**
@@ -657,8 +972,10 @@ public abstract class ImageWorker {
             final OnLoadImageListener listener = getLoadImageListener(imageView);
             
             if (null != imageView) {
-                setImageDrawable(imageView, drawable);
+                setImageDrawable(imageView, drawable, mPreviewDrawable);
                 imageView.setAsyncDrawable(null);
+                // The drawable is detached from the view, reuse it for the next loading.
+                recycleAsyncDrawable(mAsyncDrawable);
             }
             
             if (null != listener) {
@@ -681,12 +998,32 @@ public abstract class ImageWorker {
             }
         }
         
+        /**
+         * Release the references and put the task into the pool, the background work and all
+         * messages of this task have been finished here.
+         */
+        @Override
+        protected void onFinished() {
+            if (null != mAsyncDrawable && mAsyncDrawable.getBitmapWorkerTask() == this) {
+                mAsyncDrawable.setWorkerTask(null);
+            }
+            mData = null;
+            mParams[0] = null;
+            mImageView = null;
+            mAsyncDrawable = null;
+            mPreviewDrawable = null;
+            
+            if (reset()) {
+                mTaskPool.recycle(this);
+            }
+        }
+        
         /**
          * Returns the ImageView associated with this task as long as the ImageView's task still
          * points to this task as well. Returns null otherwise.
          */
         private IAsyncView getAttachedImageView() {
-            final IAsyncView imageView = imageViewReference.get();
+            final IAsyncView imageView = mImageView;
             final BitmapWorkerTask bitmapWorkerTask = getBitmapWorkerTask(imageView);
 
             if (this == bitmapWorkerTask) {
@@ -704,7 +1041,8 @@ public abstract class ImageWorker {
      * independently of the finish order.
      */
     private static class AsyncDrawable extends BitmapDrawable {
-        private WeakReference<BitmapWorkerTask> bitmapWorkerTaskReference;
+        /** 强引用，task结束时会清除 */
+        private BitmapWorkerTask bitmapWorkerTask;
         private OnLoadImageListener loadImageListener;
         private ImageLoaderTask imageLoaderTask;
 
@@ -716,17 +1054,15 @@ public abstract class ImageWorker {
         @Deprecated
         public AsyncDrawable(Resources res, Bitmap bitmap, BitmapWorkerTask bitmapWorkerTask) {
             super(res, bitmap);
-            bitmapWorkerTaskReference =
-                new WeakReference<BitmapWorkerTask>(bitmapWorkerTask);
+            this.bitmapWorkerTask = bitmapWorkerTask;
         }
         
         public void setWorkerTask(BitmapWorkerTask bitmapWorkerTask) {
-            bitmapWorkerTaskReference =
-                new WeakReference<BitmapWorkerTask>(bitmapWorkerTask);
+            this.bitmapWorkerTask = bitmapWorkerTask;
         }
 
         public BitmapWorkerTask getBitmapWorkerTask() {
-            return bitmapWorkerTaskReference.get();
+            return bitmapWorkerTask;
         }
         
         public void setOnLoadImageListener(OnLoadImageListener listener) {
@@ -764,15 +1100,106 @@ public abstract class ImageWorker {
     }
 
     
+    /**
+     * The variants of a multi-size data sorted by size, and the data bound to each variant which is
+     * created at the first time it is selected.
+     */
+    private static final class VariantSet {
+        private final IMultiSizeImage mSource;
+        private final ImageVariant[] mVariants;
+        private final List<ImageVariant> mSortedVariants;
+        private final VariantLoadImage[] mBoundData;
+
+        public VariantSet(IMultiSizeImage source, List<ImageVariant> variants, List<ImageVariant> sortedVariants) {
+            mSource = source;
+            mVariants = variants.toArray(new ImageVariant[variants.size()]);
+            mSortedVariants = sortedVariants;
+            mBoundData = new VariantLoadImage[sortedVariants.size()];
+        }
+
+        /**
+         * Check whether the set still describes the data, the variants are compared by their values so
+         * that a model which creates the variant list in every call can also use the cache.
+         */
+        public boolean isValid(IMultiSizeImage source, List<ImageVariant> variants) {
+            if (source != mSource || null == variants || variants.size() != mVariants.length) {
+                return false;
+            }
+            
+            for (int i = 0; i < mVariants.length; ++i) {
+                final ImageVariant lhs = mVariants[i];
+                final ImageVariant rhs = variants.get(i);
+                if (lhs == rhs) {
+                    continue;
+                }
+                if (null == lhs || null == rhs || lhs.width != rhs.width || lhs.height != rhs.height
+                        || !TextUtils.equals(lhs.url, rhs.url)) {
+                    return false;
+                }
+            }
+            
+            return true;
+        }
+
+        public VariantLoadImage getBoundData(ImageVariant variant) {
+            final int index = mSortedVariants.indexOf(variant);
+            VariantLoadImage data = mBoundData[index];
+            if (null == data) {
+                data = new VariantLoadImage(mSource, variant, mSortedVariants);
+                mBoundData[index] = data;
+            }
+            return data;
+        }
+    }
+    
+    /**
+     * A smaller size variant shown while the selected variant is loading. Its intrinsic size is
+     * scaled up to the selected variant, so the view layout does not change when the final drawable
+     * replaces it.
+     */
+    private static class PreviewDrawable extends BitmapDrawable {
+        private final float mScale;
+
+        public PreviewDrawable(Resources res, Bitmap bitmap, ImageVariant preview, ImageVariant target) {
+            super(res, bitmap);
+            mScale = (preview.width > 0 && target.width > 0) ? ((float) target.width / preview.width) : 1.0f;
+        }
+
+        @Override
+        public int getIntrinsicWidth() {
+            return Math.round(super.getIntrinsicWidth() * mScale);
+        }
+
+        @Override
+        public int getIntrinsicHeight() {
+            return Math.round(super.getIntrinsicHeight() * mScale);
+        }
+    }
+    
     /**
      * Called when the processing is complete and the final bitmap should be set on the ImageView.
      *
      * @param imageView
-     * @param bitmap
+     * @param drawable
+     * @param preview the preview drawable which is showing, may be null
      */
-    private void setImageDrawable(IAsyncView imageView, Drawable drawable) {
+    private void setImageDrawable(IAsyncView imageView, Drawable drawable, Drawable preview) {
         if (null == drawable) {
-            imageView.setImageDrawable(null);
+            // Keep the preview if failed to load the selected variant.
+            imageView.setImageDrawable(preview);
+            return;
+        }
+        
+        if (null != preview) {
+            // Cross fade from the preview, the final drawable covers the same bounds so it does not flicker.
+            if (mFadeInBitmap) {
+                final TransitionDrawable td = new TransitionDrawable(new Drawable[] { preview, drawable });
+                td.setCrossFadeEnabled(true);
+                imageView.setImageDrawable(td);
+                td.startTransition(FADE_IN_TIME);
+            } else {
+                imageView.setImageDrawable(drawable);
+            }
             return;
         }
         
@@ -913,7 +1340,7 @@ public abstract class ImageWorker {
      */
     public boolean hasBitmapInDiskCache(Object data) {
         if (mImageCache != null) {
-            return mImageCache.hasBitmapInDiskCache(String.valueOf(data));
+            return mImageCache.hasBitmapInDiskCache(getCacheKey(data));
         }
         return false;
     }
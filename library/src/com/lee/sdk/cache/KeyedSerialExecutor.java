@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2016 LiHong (https://github.com/leehong2005)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lee.sdk.cache;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+//CHECKSTYLE:OFF
+
+/**
+ * 按key串行执行任务的线程池：相同key的任务按照提交顺序逐个执行，不同key的任务在共享的线程池中并行执行。
+ * 某个key的任务全部执行完后，它的队列会被回收。
+ *
+ * <pre>
+ * KeyedSerialExecutor executor = AsyncTask.newKeyedSerialExecutor();
+ * // 对同一个磁盘缓存文件的写操作按顺序执行
+ * task.executeOnExecutor(executor.forKey(cacheKey), params);
+ * </pre>
+ */
+public class KeyedSerialExecutor {
+    private final Executor mExecutor;
+    /** 有任务的key对应的队列，由自身保护 */
+    private final HashMap<Object, KeyQueue> mQueues = new HashMap<Object, KeyQueue>();
+
+    /**
+     * 构造方法
+     *
+     * @param executor 共享的线程池，它不能静默丢弃任务，否则对应key的任务将不再执行
+     */
+    public KeyedSerialExecutor(Executor executor) {
+        if (null == executor) {
+            throw new NullPointerException();
+        }
+        mExecutor = executor;
+    }
+
+    /**
+     * 执行任务，相同key的任务按照提交的顺序执行
+     *
+     * @param key key，不能为null
+     * @param command 任务
+     * @throws RejectedExecutionException 共享线程池拒绝执行
+     */
+    public void execute(Object key, Runnable command) {
+        if (null == key || null == command) {
+            throw new NullPointerException();
+        }
+
+        synchronized (mQueues) {
+            KeyQueue queue = mQueues.get(key);
+            if (null == queue) {
+                queue = new KeyQueue(key);
+                mQueues.put(key, queue);
+            }
+            queue.mTasks.offer(command);
+
+            if (!queue.mScheduled) {
+                queue.mScheduled = true;
+                try {
+                    mExecutor.execute(queue);
+                } catch (RejectedExecutionException e) {
+                    // 回滚，调用者会收到异常
+                    queue.mScheduled = false;
+                    queue.mTasks.removeLast();
+                    if (queue.mTasks.isEmpty()) {
+                        mQueues.remove(key);
+                    }
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * 得到绑定到指定key的Executor，可以用于{@link AsyncTask#executeOnExecutor(Executor, Object...)}
+     *
+     * @param key key，不能为null
+     * @return Executor
+     */
+    public Executor forKey(final Object key) {
+        if (null == key) {
+            throw new NullPointerException();
+        }
+
+        return new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                KeyedSerialExecutor.this.execute(key, command);
+            }
+        };
+    }
+
+    /**
+     * @return 当前有任务的key的个数
+     */
+    public int getActiveKeyCount() {
+        synchronized (mQueues) {
+            return mQueues.size();
+        }
+    }
+
+    /**
+     * 一个key的任务队列，每次执行一个任务后重新提交自己，让其他key的任务有机会执行
+     */
+    private final class KeyQueue implements Runnable {
+        final Object mKey;
+        final ArrayDeque<Runnable> mTasks = new ArrayDeque<Runnable>();
+        /** 是否已经提交到共享线程池，由mQueues保护 */
+        boolean mScheduled;
+
+        KeyQueue(Object key) {
+            mKey = key;
+        }
+
+        @Override
+        public void run() {
+            Runnable task;
+            // 第一个任务抛出的异常，不能让它跳过后面的任务
+            Throwable failure = null;
+            while (true) {
+                synchronized (mQueues) {
+                    task = mTasks.poll();
+                    if (null == task) {
+                        // 回收空闲的key
+                        mScheduled = false;
+                        mQueues.remove(mKey);
+                        break;
+                    }
+                }
+
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    if (null == failure) {
+                        failure = e;
+                    }
+                } catch (Error e) {
+                    if (null == failure) {
+                        failure = e;
+                    }
+                }
+
+                if (scheduleNext()) {
+                    break;
+                }
+                // 共享线程池已满，在当前线程中继续执行，保证不丢失任务，任务抛出的异常在之后抛出
+            }
+
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            }
+            if (failure instanceof Error) {
+                throw (Error) failure;
+            }
+        }
+
+        /**
+         * @return true 已经重新提交或者没有更多任务
+         */
+        private boolean scheduleNext() {
+            synchronized (mQueues) {
+                if (mTasks.isEmpty()) {
+                    mScheduled = false;
+                    mQueues.remove(mKey);
+                    return true;
+                }
+            }
+
+            try {
+                // 工作窃取线程池中，工作线程提交的任务会被它自己马上取出，其他key的任务会饿死，因此放入提交队列
+                if (mExecutor instanceof WorkStealingExecutor) {
+                    ((WorkStealingExecutor) mExecutor).executeFifo(this);
+                } else {
+                    mExecutor.execute(this);
+                }
+                return true;
+            } catch (RejectedExecutionException e) {
+                return false;
+            }
+        }
+    }
+}
+//CHECKSTYLE:ON
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2016 LiHong (https://github.com/leehong2005)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lee.sdk.cache;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 对{@link IMultiSizeImage}的包装，表示已经选定了某一个尺寸的图片，{@link #getUrl()}返回选定尺寸的URL，
+ * 它同时也是内存缓存和磁盘缓存的key，所以不同尺寸的图片在缓存中是分开存放的。
+ *
+ * @author lihong06
+ * @since 2016-10-19
+ */
+final class VariantLoadImage implements ILoadImage {
+    /**
+     * 原始数据
+     */
+    private final IMultiSizeImage mSource;
+    /**
+     * 选定的尺寸
+     */
+    private final ImageVariant mVariant;
+    /**
+     * 按像素数从小到大排序的所有尺寸
+     */
+    private final List<ImageVariant> mSortedVariants;
+
+    /**
+     * 构造方法
+     *
+     * @param source         原始数据
+     * @param variant        选定的尺寸
+     * @param sortedVariants 按像素数从小到大排序的所有尺寸
+     */
+    VariantLoadImage(IMultiSizeImage source, ImageVariant variant, List<ImageVariant> sortedVariants) {
+        mSource = source;
+        mVariant = variant;
+        mSortedVariants = sortedVariants;
+    }
+
+    /**
+     * 得到原始数据，回调给使用者的数据都是原始数据
+     *
+     * @return 原始数据
+     */
+    IMultiSizeImage getSource() {
+        return mSource;
+    }
+
+    /**
+     * 得到选定的尺寸
+     *
+     * @return 尺寸
+     */
+    ImageVariant getVariant() {
+        return mVariant;
+    }
+
+    /**
+     * 得到按像素数从小到大排序的所有尺寸
+     *
+     * @return 尺寸列表
+     */
+    List<ImageVariant> getSortedVariants() {
+        return mSortedVariants;
+    }
+
+    @Override
+    public Bitmap loadImage() {
+        return mSource.loadImage();
+    }
+
+    @Override
+    public String getUrl() {
+        return mVariant.url;
+    }
+
+    @Override
+    public int getSampleSize(BitmapFactory.Options options) {
+        return mSource.getSampleSize(options);
+    }
+
+    @Override
+    public Map<String, String> getHeader() {
+        return mSource.getHeader();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+
+        if (!(o instanceof VariantLoadImage)) {
+            return false;
+        }
+
+        VariantLoadImage other = (VariantLoadImage) o;
+        return mSource.equals(other.mSource) && String.valueOf(mVariant.url).equals(other.mVariant.url);
+    }
+
+    @Override
+    public int hashCode() {
+        return String.valueOf(mVariant.url).hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return mVariant.url;
+    }
+}
@@ -0,0 +1,437 @@
+/*
+ * Copyright (C) 2016 LiHong (https://github.com/leehong2005)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lee.sdk.cache;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import android.util.Log;
+
+//CHECKSTYLE:OFF
+
+/**
+ * 一个work-stealing的线程池，每个线程拥有自己的任务队列。
+ *
+ * <ul>
+ * <li>工作线程提交的任务放入自己的队列，并以后进先出的方式执行；其他线程提交的任务放入共享的提交队列，
+ * 按先进先出的方式执行，不会被后提交的任务饿死。</li>
+ * <li>线程自己的队列为空时先从提交队列取任务，再从其他队列的头部窃取任务。</li>
+ * <li>线程在有任务时才创建，空闲超过keep alive时间后退出。</li>
+ * <li>排队的任务超过容量时，按照{@link OverflowPolicy}处理，不会静默丢弃任务。</li>
+ * </ul>
+ *
+ * 可以通过{@link AsyncTask#setDefaultExecutor(Executor)}设置为AsyncTask的默认线程池，并通过
+ * getXXX方法得到队列长度、拒绝的任务数、任务的排队时间等指标。
+ */
+public class WorkStealingExecutor implements Executor {
+    private static final String TAG = "WorkStealingExecutor";
+    private static final boolean DEBUG = BuildConfig.DEBUG;
+
+    /**
+     * 队列已满时的处理方式
+     */
+    public enum OverflowPolicy {
+        /** 抛出{@link RejectedExecutionException} */
+        ABORT,
+        /** 在提交任务的线程中直接执行，提交者因此被减速 */
+        CALLER_RUNS,
+    }
+
+    /** 当前线程对应的Worker，非工作线程为null */
+    private static final ThreadLocal<Worker> CURRENT_WORKER = new ThreadLocal<Worker>();
+    /** 工作线程每执行这么多个自己队列中的任务，就先检查一次提交队列，避免提交队列中的任务被饿死 */
+    private static final int SUBMISSION_CHECK_INTERVAL = 64;
+
+    private final Worker[] mWorkers;
+    /** 非工作线程提交的任务，先进先出 */
+    private final ConcurrentLinkedQueue<Item> mSubmissions = new ConcurrentLinkedQueue<Item>();
+    private final int mCapacity;
+    private final long mKeepAliveMillis;
+    private final OverflowPolicy mOverflowPolicy;
+    private final ThreadFactory mThreadFactory;
+
+    /** 保护线程的创建、退出以及空闲线程的等待 */
+    private final Object mLock = new Object();
+    private int mIdleCount = 0;
+    private int mPoolSize = 0;
+
+    private final AtomicInteger mQueued = new AtomicInteger(0);
+    private final AtomicLong mCompletedCount = new AtomicLong(0);
+    private final AtomicLong mRejectedCount = new AtomicLong(0);
+    private final AtomicLong mStealCount = new AtomicLong(0);
+    private final AtomicLong mTotalLatencyNanos = new AtomicLong(0);
+    private final AtomicLong mMaxLatencyNanos = new AtomicLong(0);
+
+    /**
+     * 构造方法
+     *
+     * @param parallelism 最大线程数
+     * @param capacity 所有队列中排队任务的最大个数
+     * @param keepAlive 空闲线程的存活时间
+     * @param unit keepAlive的单位
+     * @param threadFactory 线程工厂
+     * @param overflowPolicy 队列已满时的处理方式
+     */
+    public WorkStealingExecutor(int parallelism, int capacity, long keepAlive, TimeUnit unit,
+            ThreadFactory threadFactory, OverflowPolicy overflowPolicy) {
+        if (parallelism <= 0 || capacity <= 0 || keepAlive <= 0) {
+            throw new IllegalArgumentException();
+        }
+        if (null == threadFactory || null == overflowPolicy) {
+            throw new NullPointerException();
+        }
+
+        mWorkers = new Worker[parallelism];
+        for (int i = 0; i < parallelism; ++i) {
+            mWorkers[i] = new Worker(i);
+        }
+        mCapacity = capacity;
+        mKeepAliveMillis = Math.max(1, unit.toMillis(keepAlive));
+        mThreadFactory = threadFactory;
+        mOverflowPolicy = overflowPolicy;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        execute(command, false);
+    }
+
+    /**
+     * 执行任务，即使在工作线程中提交，也放入提交队列，按照提交顺序执行。用于执行一部分后重新提交自己、
+     * 让出线程的任务：放入工作线程自己的队列会被它马上取出（后进先出），其他任务得不到执行。
+     *
+     * @param command 任务
+     */
+    public void executeFifo(Runnable command) {
+        execute(command, true);
+    }
+
+    /**
+     * 执行任务
+     *
+     * @param command 任务
+     * @param fifo 是否总是放入提交队列
+     */
+    private void execute(Runnable command, boolean fifo) {
+        if (null == command) {
+            throw new NullPointerException();
+        }
+
+        if (mQueued.incrementAndGet() > mCapacity) {
+            mQueued.decrementAndGet();
+            mRejectedCount.incrementAndGet();
+            if (DEBUG) {
+                Log.w(TAG, "queue is full, capacity = " + mCapacity + ", policy = " + mOverflowPolicy);
+            }
+
+            if (OverflowPolicy.CALLER_RUNS == mOverflowPolicy) {
+                command.run();
+                return;
+            }
+            throw new RejectedExecutionException("Queue is full, capacity = " + mCapacity);
+        }
+
+        // 工作线程提交的任务放入自己的队列，其他线程提交的任务放入提交队列
+        final Item item = new Item(command, System.nanoTime());
+        Worker worker = fifo ? null : CURRENT_WORKER.get();
+        if (null != worker && worker.getExecutor() == this) {
+            worker.push(item);
+        } else {
+            worker = null;
+            mSubmissions.offer(item);
+        }
+
+        signalWork(worker);
+    }
+
+    /**
+     * @return 排队中的任务数
+     */
+    public int getQueueDepth() {
+        return mQueued.get();
+    }
+
+    /**
+     * @return 当前的线程数
+     */
+    public int getPoolSize() {
+        synchronized (mLock) {
+            return mPoolSize;
+        }
+    }
+
+    /**
+     * @return 因为队列已满而被拒绝或者由提交线程执行的任务数
+     */
+    public long getRejectedCount() {
+        return mRejectedCount.get();
+    }
+
+    /**
+     * @return 已经执行完成的任务数
+     */
+    public long getCompletedCount() {
+        return mCompletedCount.get();
+    }
+
+    /**
+     * @return 从其他队列窃取的任务数
+     */
+    public long getStealCount() {
+        return mStealCount.get();
+    }
+
+    /**
+     * @return 任务从提交到开始执行的平均时间，单位毫秒
+     */
+    public double getAverageLatencyMillis() {
+        final long count = mCompletedCount.get();
+        return (count > 0) ? (mTotalLatencyNanos.get() / (double) count / 1000000.0) : 0;
+    }
+
+    /**
+     * @return 任务从提交到开始执行的最大时间，单位毫秒
+     */
+    public double getMaxLatencyMillis() {
+        return mMaxLatencyNanos.get() / 1000000.0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("WorkStealingExecutor [poolSize = ").append(getPoolSize());
+        sb.append(", queueDepth = ").append(getQueueDepth());
+        sb.append(", completed = ").append(getCompletedCount());
+        sb.append(", rejected = ").append(getRejectedCount());
+        sb.append(", steals = ").append(getStealCount());
+        sb.append(", avgLatency = ").append(getAverageLatencyMillis()).append("ms");
+        sb.append(", maxLatency = ").append(getMaxLatencyMillis()).append("ms]");
+        return sb.toString();
+    }
+
+    /**
+     * 唤醒空闲线程，或者在没有空闲线程时创建新线程
+     *
+     * @param target 任务所在队列的Worker，任务在提交队列中时为null
+     */
+    private void signalWork(Worker target) {
+        synchronized (mLock) {
+            if (mIdleCount > 0) {
+                mLock.notify();
+                return;
+            }
+
+            // 优先启动任务所在队列的线程，否则启动任意一个空闲的队列的线程，它会窃取任务
+            Worker worker = (null != target && null == target.mThread) ? target : null;
+            for (int i = 0; null == worker && i < mWorkers.length; ++i) {
+                if (null == mWorkers[i].mThread) {
+                    worker = mWorkers[i];
+                }
+            }
+
+            if (null != worker) {
+                startWorker(worker);
+            }
+        }
+    }
+
+    /**
+     * 启动线程，必须持有mLock
+     */
+    private void startWorker(Worker worker) {
+        final Thread thread = mThreadFactory.newThread(worker);
+        worker.mThread = thread;
+        ++mPoolSize;
+        thread.start();
+    }
+
+    /**
+     * 取得下一个任务：先从自己的队列尾部取，再从提交队列的头部取，最后从其他队列的头部窃取
+     */
+    private Item nextItem(Worker self) {
+        Item item = null;
+        // 定期先检查提交队列，工作线程不断提交任务时，提交队列中的任务也能执行
+        if (0 == (++self.mLocalCount % SUBMISSION_CHECK_INTERVAL)) {
+            item = mSubmissions.poll();
+        }
+        if (null == item) {
+            item = self.pollLast();
+        }
+        if (null == item) {
+            item = mSubmissions.poll();
+        }
+        if (null != item) {
+            return item;
+        }
+
+        final int count = mWorkers.length;
+        for (int i = 1; i < count; ++i) {
+            item = mWorkers[(self.mIndex + i) % count].pollFirst();
+            if (null != item) {
+                mStealCount.incrementAndGet();
+                return item;
+            }
+        }
+        return null;
+    }
+
+    private void runItem(Item item) {
+        mQueued.decrementAndGet();
+
+        final long latency = System.nanoTime() - item.mSubmitTime;
+        mTotalLatencyNanos.addAndGet(latency);
+        long max;
+        while (latency > (max = mMaxLatencyNanos.get())) {
+            if (mMaxLatencyNanos.compareAndSet(max, latency)) {
+                break;
+            }
+        }
+
+        try {
+            item.mCommand.run();
+        } catch (RuntimeException e) {
+            Log.e(TAG, "task threw an exception", e);
+        } finally {
+            mCompletedCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * 等待新任务
+     *
+     * @return false 表示空闲超时，线程应该退出
+     */
+    private boolean awaitWork(Worker self) {
+        synchronized (mLock) {
+            if (mQueued.get() > 0) {
+                return true;
+            }
+
+            // 被提前唤醒但任务已经被其他线程取走时，继续等待剩余的时间
+            final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(mKeepAliveMillis);
+            long remaining = mKeepAliveMillis;
+            ++mIdleCount;
+            try {
+                while (remaining > 0 && mQueued.get() <= 0) {
+                    try {
+                        mLock.wait(remaining);
+                    } catch (InterruptedException e) {
+                        // 继续检查是否有任务
+                    }
+                    remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                }
+            } finally {
+                --mIdleCount;
+            }
+
+            if (mQueued.get() > 0) {
+                return true;
+            }
+
+            // 空闲超时，释放线程；之后提交的任务会重新创建线程
+            self.mThread = null;
+            --mPoolSize;
+            return false;
+        }
+    }
+
+    /**
+     * 排队中的任务
+     */
+    private static final class Item {
+        final Runnable mCommand;
+        final long mSubmitTime;
+
+        Item(Runnable command, long submitTime) {
+            mCommand = command;
+            mSubmitTime = submitTime;
+        }
+    }
+
+    /**
+     * 一个工作队列以及执行它的线程
+     */
+    private final class Worker implements Runnable {
+        final int mIndex;
+        final ArrayDeque<Item> mDeque = new ArrayDeque<Item>();
+        /** 取任务的次数，只由执行该队列的线程访问 */
+        int mLocalCount;
+        /** 执行该队列的线程，由mLock保护 */
+        Thread mThread;
+
+        Worker(int index) {
+            mIndex = index;
+        }
+
+        WorkStealingExecutor getExecutor() {
+            return WorkStealingExecutor.this;
+        }
+
+        void push(Item item) {
+            synchronized (mDeque) {
+                mDeque.addLast(item);
+            }
+        }
+
+        Item pollLast() {
+            synchronized (mDeque) {
+                return mDeque.pollLast();
+            }
+        }
+
+        Item pollFirst() {
+            synchronized (mDeque) {
+                return mDeque.pollFirst();
+            }
+        }
+
+        @Override
+        public void run() {
+            CURRENT_WORKER.set(this);
+            boolean exited = false;
+            try {
+                while (true) {
+                    final Item item = nextItem(this);
+                    if (null != item) {
+                        runItem(item);
+                    } else if (!awaitWork(this)) {
+                        exited = true;
+                        return;
+                    }
+                }
+            } finally {
+                CURRENT_WORKER.set(null);
+                if (!exited) {
+                    // 线程因为Error异常退出
+                    synchronized (mLock) {
+                        if (mThread == Thread.currentThread()) {
+                            mThread = null;
+                            --mPoolSize;
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
+//CHECKSTYLE:ON
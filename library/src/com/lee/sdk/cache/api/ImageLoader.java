@@ -18,8 +18,15 @@ package com.lee.sdk.cache.api;
 
 import android.content.Context;
 import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.graphics.drawable.ColorDrawable;
+import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.text.TextUtils;
 import android.util.Log;
+import android.view.View;
 
 import com.lee.sdk.app.BaseApplication;
 import com.lee.sdk.cache.BuildConfig;
@@ -27,14 +34,18 @@ import com.lee.sdk.cache.IAsyncView;
 import com.lee.sdk.cache.ImageCache;
 import com.lee.sdk.cache.ImageCache.ImageCacheParams;
 import com.lee.sdk.cache.ImageFetcher;
+import com.lee.sdk.cache.ImageWorker;
 import com.lee.sdk.cache.ImageWorker.OnLoadImageListener;
 import com.lee.sdk.cache.task.ImageLoaderTask;
 import com.lee.sdk.utils.PathUtils;
 
 import java.io.File;
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * 这个类封装了加载图片的一些业务逻辑，它先从本地文件查找，如果不行，再从网络请求。
@@ -250,8 +261,7 @@ public final class ImageLoader {
      */
     public boolean loadImage(Object data, IAsyncView view, OnLoadImageListener listener, ImageLoaderTask loadTask) {
         // Added by lihong06 2015/01/30 begin ==============
-        if (sHasHoldOn) {
-            saveWaitingTasks(data, view, listener, loadTask);
+        if (sHasHoldOn && saveWaitingTasks(this, data, view, listener, loadTask)) {
             return false;
         }
         // Added by lihong06 2015/01/30 end ==============
@@ -575,26 +585,57 @@ public final class ImageLoader {
     }
 
     // Added by lihong06 2015/01/30 begin ============
+    /**
+     * 等待队列的最大长度，超过时丢弃最早的请求
+     */
+    private static final int MAX_HOLD_ON_SIZE = 64;
+    /**
+     * 每一帧中用于恢复等待任务的最长时间（毫秒）
+     */
+    private static final long HOLD_ON_FRAME_BUDGET = 8;
     /**
      * 是否等待
      */
-    private static boolean sHasHoldOn = false;
+    private static volatile boolean sHasHoldOn = false;
     /**
      * 锁对象
      */
     private static Object sLockObj = new Object();
     /**
-     * 等待任务队列
+     * 等待任务队列，以View为key，按绑定顺序排列，同一个View后绑定的请求会覆盖之前的请求
+     */
+    private static LinkedHashMap<IAsyncView, HoldOnParams> sHoldOnList = null;
+    /**
+     * 正在分帧恢复的任务，等待队列超出长度时被挤出的任务也放在这里，取消暂停后和等待的任务一起按可见性顺序恢复，
+     * 不能丢弃，否则View会一直是空白的
+     */
+    private static ArrayList<HoldOnParams> sReplayList = null;
+    /**
+     * 主线程Handler，用于分帧恢复任务
      */
-    private static HashMap<Object, HoldOnParams> sHoldOnList = null;
+    private static Handler sMainHandler = null;
+
+    /**
+     * 计算View位置时复用的数组
+     */
+    private static final int[] sLocation = new int[2];
 
     /**
      * 暂停时的任务的数据封装
      *
+     * <p>
+     * 它同时作为一个标记设置到{@link IAsyncView#setAsyncDrawable(Drawable)}中，如果恢复时View的async drawable
+     * 已经不是它，说明View已经被重新绑定，该请求直接丢弃。
+     * </p>
+     *
      * @author lihong06
      * @since 2015-1-30
      */
-    static class HoldOnParams {
+    static class HoldOnParams extends ColorDrawable {
+        /**
+         * image loader
+         */
+        public ImageLoader loader;
         /**
          * data
          */
@@ -611,11 +652,57 @@ public final class ImageLoader {
          * load task
          */
         public ImageLoaderTask loadTask;
+        /**
+         * 可见性排序的等级
+         */
+        int visibleRank;
+        /**
+         * 可见性排序的位置
+         */
+        int visibleOrder;
+
+        /**
+         * 构造方法
+         */
+        HoldOnParams() {
+            super(Color.TRANSPARENT);
+        }
+
+        /**
+         * 判断该请求是否已经失效，即View已经被重新绑定了
+         *
+         * @return true/false
+         */
+        boolean isStale() {
+            return null == view || view.getAsyncDrawable() != this;
+        }
     }
 
+    /**
+     * 可见性排序，可见的View按照屏幕位置排在前面，无法判断的保持绑定顺序，不可见的排在最后
+     */
+    private static final Comparator<HoldOnParams> VISIBLE_COMPARATOR = new Comparator<HoldOnParams>() {
+        @Override
+        public int compare(HoldOnParams lhs, HoldOnParams rhs) {
+            if (lhs.visibleRank != rhs.visibleRank) {
+                return (lhs.visibleRank < rhs.visibleRank) ? -1 : 1;
+            }
+
+            if (lhs.visibleOrder != rhs.visibleOrder) {
+                return (lhs.visibleOrder < rhs.visibleOrder) ? -1 : 1;
+            }
+
+            return 0;
+        }
+    };
+
     /**
      * 让当前ImageLoader暂停住，不会发起实际的异步任务操作，它与{@link ImageLoader#setPauseWork(boolean)}不同。
      *
+     * <p>
+     * 取消暂停后，等待的任务会按照可见性顺序，在主线程中分帧恢复，已经被重新绑定的View的任务会被丢弃。
+     * </p>
+     *
      * @param holdOn 是否hold one
      */
     public static void setHoldOn(boolean holdOn) {
@@ -634,60 +721,221 @@ public final class ImageLoader {
     }
 
     /**
-     * 处理等待的任务
+     * 处理等待的任务，在锁内只取出队列，实际的加载在主线程中分帧进行
      */
     private static void handleWaitingTasks() {
         synchronized (sLockObj) {
-            if (null != sHoldOnList && !sHoldOnList.isEmpty()) {
-                ImageLoader imageLoader = ImageLoader.getInstance();
-                Collection<HoldOnParams> params = sHoldOnList.values();
-                for (HoldOnParams param : params) {
+            final boolean hasHoldOnTasks = null != sHoldOnList && !sHoldOnList.isEmpty();
+            if (!hasHoldOnTasks && (null == sReplayList || sReplayList.isEmpty())) {
+                return;
+            }
+
+            if (hasHoldOnTasks) {
+                if (null == sReplayList) {
+                    sReplayList = new ArrayList<HoldOnParams>(sHoldOnList.size());
+                }
+                sReplayList.addAll(sHoldOnList.values());
+                sHoldOnList.clear();
+            }
+
+            if (null == sMainHandler) {
+                sMainHandler = new Handler(Looper.getMainLooper());
+            }
+            sMainHandler.removeCallbacks(REPLAY_RUNNABLE);
+            sMainHandler.post(REPLAY_RUNNABLE);
+        }
+    }
+
+    /**
+     * 在主线程中分帧恢复等待的任务
+     */
+    private static final Runnable REPLAY_RUNNABLE = new Runnable() {
+        @Override
+        public void run() {
+            ArrayList<HoldOnParams> replayList = null;
+            synchronized (sLockObj) {
+                if (null == sReplayList || sReplayList.isEmpty()) {
+                    return;
+                }
+
+                // 每次开始时重新排序，因为上一帧之后View的位置可能已经变化
+                sortByVisibility(sReplayList);
+                replayList = sReplayList;
+                sReplayList = null;
+            }
+
+            final long deadline = SystemClock.uptimeMillis() + HOLD_ON_FRAME_BUDGET;
+            final int size = replayList.size();
+            int index = 0;
+            while (index < size) {
+                if (sHasHoldOn || SystemClock.uptimeMillis() >= deadline) {
+                    break;
+                }
+
+                HoldOnParams param = replayList.get(index++);
+                if (param.isStale()) {
                     if (BuildConfig.DEBUG) {
-                        Log.d(TAG, "handleWaitingTasks   data = " + param.data);
+                        Log.d(TAG, "handleWaitingTasks   drop stale data = " + param.data);
                     }
+                    continue;
+                }
 
-                    // 加载图片
-                    imageLoader.loadImage(param.data, param.view, param.listener, param.loadTask);
+                if (BuildConfig.DEBUG) {
+                    Log.d(TAG, "handleWaitingTasks   data = " + param.data);
                 }
 
-                sHoldOnList.clear();
+                // 加载图片
+                param.view.setAsyncDrawable(null);
+                param.loader.loadImage(param.data, param.view, param.listener, param.loadTask);
+            }
+
+            if (index < size) {
+                requeueWaitingTasks(replayList.subList(index, size));
             }
         }
-    }
+    };
 
     /**
-     * 保存等待的任务
+     * 将还没有恢复的任务放回队列，如果又被暂停了，则放回等待队列，否则在下一帧继续
      *
-     * @param data     data
-     * @param view     view
-     * @param listener listener
-     * @param loadTask loadTask
+     * @param remains 剩余的任务
      */
-    private static void saveWaitingTasks(Object data,
-                                         IAsyncView view,
-                                         OnLoadImageListener listener,
-                                         ImageLoaderTask loadTask) {
+    private static void requeueWaitingTasks(List<HoldOnParams> remains) {
         synchronized (sLockObj) {
             if (sHasHoldOn) {
-                if (null == sHoldOnList) {
-                    sHoldOnList = new HashMap<Object, HoldOnParams>();
+                ensureHoldOnList();
+                for (HoldOnParams param : remains) {
+                    // 暂停期间同一个View的新请求优先
+                    if (!param.isStale() && !sHoldOnList.containsKey(param.view)) {
+                        sHoldOnList.put(param.view, param);
+                    }
+                }
+            } else {
+                if (null == sReplayList) {
+                    sReplayList = new ArrayList<HoldOnParams>(remains);
+                } else {
+                    sReplayList.addAll(0, remains);
                 }
+                sMainHandler.post(REPLAY_RUNNABLE);
+            }
+        }
+    }
 
-                if (!sHoldOnList.containsKey(data)) {
-                    if (BuildConfig.DEBUG) {
-                        Log.d(TAG, "saveWaitingTasks   data = " + data);
+    /**
+     * 按可见性对任务进行排序
+     *
+     * @param list 任务列表
+     */
+    private static void sortByVisibility(ArrayList<HoldOnParams> list) {
+        for (HoldOnParams param : list) {
+            final IAsyncView asyncView = param.view;
+            if (asyncView instanceof View) {
+                View view = (View) asyncView;
+                if (view.isShown() && null != view.getWindowToken()) {
+                    view.getLocationInWindow(sLocation);
+                    param.visibleRank = 0;
+                    param.visibleOrder = sLocation[1];
+                } else {
+                    param.visibleRank = 2;
+                    param.visibleOrder = 0;
+                }
+            } else {
+                // 无法判断可见性，保持绑定顺序
+                param.visibleRank = 1;
+                param.visibleOrder = 0;
+            }
+        }
+
+        Collections.sort(list, VISIBLE_COMPARATOR);
+    }
+
+    /**
+     * 确保等待队列已经创建
+     */
+    private static void ensureHoldOnList() {
+        if (null == sHoldOnList) {
+            sHoldOnList = new LinkedHashMap<IAsyncView, HoldOnParams>() {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<IAsyncView, HoldOnParams> eldest) {
+                    if (size() <= MAX_HOLD_ON_SIZE) {
+                        return false;
                     }
 
-                    HoldOnParams params = new HoldOnParams();
-                    params.data = data;
-                    params.view = view;
-                    params.listener = listener;
-                    params.loadTask = loadTask;
+                    addEvictedTask(eldest.getValue());
+                    return true;
+                }
+            };
+        }
+    }
 
-                    sHoldOnList.put(data, params);
+    /**
+     * 将被挤出等待队列的任务放到恢复队列中，超出长度时先清理已经被重新绑定的任务，必须在锁内调用
+     *
+     * @param param 被挤出的任务
+     */
+    private static void addEvictedTask(HoldOnParams param) {
+        if (null == sReplayList) {
+            sReplayList = new ArrayList<HoldOnParams>();
+        } else if (sReplayList.size() >= MAX_HOLD_ON_SIZE) {
+            for (int i = sReplayList.size() - 1; i >= 0; --i) {
+                if (sReplayList.get(i).isStale()) {
+                    sReplayList.remove(i);
                 }
             }
         }
+
+        sReplayList.add(param);
+    }
+
+    /**
+     * 保存等待的任务
+     *
+     * @param loader   loader
+     * @param data     data
+     * @param view     view
+     * @param listener listener
+     * @param loadTask loadTask
+     * @return 是否保存成功，如果已经不在等待状态，返回false
+     */
+    private static boolean saveWaitingTasks(ImageLoader loader,
+                                            Object data,
+                                            IAsyncView view,
+                                            OnLoadImageListener listener,
+                                            ImageLoaderTask loadTask) {
+        if (null == view) {
+            return false;
+        }
+
+        synchronized (sLockObj) {
+            if (!sHasHoldOn) {
+                return false;
+            }
+
+            ensureHoldOnList();
+
+            if (BuildConfig.DEBUG) {
+                Log.d(TAG, "saveWaitingTasks   data = " + data);
+            }
+
+            HoldOnParams params = new HoldOnParams();
+            params.loader = loader;
+            params.data = data;
+            params.view = view;
+            params.listener = listener;
+            params.loadTask = loadTask;
+
+            // View已经绑定到新的数据，取消之前的任务，并标记View当前的请求
+            ImageWorker.cancelWork(view);
+            view.setAsyncDrawable(params);
+
+            // 同一个View后绑定的请求覆盖之前的，并移到队尾
+            sHoldOnList.remove(view);
+            sHoldOnList.put(view, params);
+        }
+
+        return true;
     }
     // Added by lihong06 2015/01/30 end ==============
 }
@@ -0,0 +1,91 @@
+package com.lee.sdk.downloads;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The write path of a download: the data is read into a buffer, which is written to the
+ * destination when it is full or has waited for {@link Constants#MIN_PROGRESS_TIME}, and then
+ * resized by {@link WriteBuffers}. It does not use Android, so {@link DownloadThread} and the JVM
+ * benchmark run the same loop.
+ *
+ * @param <E> the exception thrown by the source and the destination
+ */
+abstract class BufferedTransfer<E extends Throwable> {
+    /** the data read but not yet written to the destination. */
+    private ByteBuffer mBuffer = ByteBuffer.allocate(Constants.BUFFER_SIZE);
+
+    /** the time when the buffer started to fill. */
+    private long mTimeBufferStarted;
+
+    /**
+     * Read the data from the source into the buffer, at the position of the buffer.
+     *
+     * @param buffer the buffer to fill
+     * @return the number of bytes read, or -1 at the end of the stream
+     * @throws E E
+     */
+    protected abstract int read(ByteBuffer buffer) throws E;
+
+    /**
+     * Write all the remaining bytes of the buffer to the destination, after the bytes written
+     * before.
+     *
+     * @param buffer the buffer to write
+     * @throws E E
+     */
+    protected abstract void write(ByteBuffer buffer) throws E;
+
+    /**
+     * Called after the buffer has been written because it was full or has waited long enough.
+     *
+     * @throws E E
+     */
+    protected abstract void onFlushed() throws E;
+
+    /**
+     * @return the current time in ms
+     */
+    protected abstract long currentTimeMillis();
+
+    /**
+     * Transfer the data until the end of the stream, the buffered data is written before it
+     * returns.
+     *
+     * @throws E E
+     */
+    final void run() throws E {
+        mTimeBufferStarted = currentTimeMillis();
+        for (;;) {
+            int bytesRead = read(mBuffer);
+            if (bytesRead == -1) {
+                flush();
+                return;
+            }
+
+            long waited = currentTimeMillis() - mTimeBufferStarted;
+            if (!mBuffer.hasRemaining() || waited > Constants.MIN_PROGRESS_TIME) {
+                flush();
+                onFlushed();
+            }
+        }
+    }
+
+    /**
+     * Write the buffered data to the destination, and resize the buffer so that it fills in about
+     * {@link Constants#BUFFER_FILL_TIME} at the measured throughput.
+     *
+     * @throws E E
+     */
+    final void flush() throws E {
+        ByteBuffer buffer = mBuffer;
+        int bytes = buffer.position();
+        if (bytes > 0) {
+            buffer.flip();
+            write(buffer);
+        }
+
+        long now = currentTimeMillis();
+        mBuffer = WriteBuffers.next(buffer, bytes, now - mTimeBufferStarted);
+        mTimeBufferStarted = now;
+    }
+}
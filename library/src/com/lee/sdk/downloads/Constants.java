@@ -46,6 +46,9 @@ public final class Constants {
     /** The column that is used for the downloads's ETag */
     public static final String ETAG = "etag";
 
+    /** The column that is used for the unfinished ranges of a segmented download */
+    public static final String SEGMENTS = "segments";
+
     /** The column that is used for the initiating app's UID */
     public static final String UID = "uid";
 
@@ -105,8 +108,41 @@ public final class Constants {
     /** The MIME type of APKs */
     public static final String MIMETYPE_APK = "application/vnd.android.package-archive";
 
-    /** The buffer size used to stream the data */
-    public static final int BUFFER_SIZE = 4096;
+    /** The buffer size used to stream the data, the initial size of the adaptive write buffer */
+    public static final int BUFFER_SIZE = 64 * 1024;
+
+    /** The maximum size of the adaptive write buffer */
+    public static final int MAX_BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * The write buffer doubles when it fills faster than this, and halves when it fills slower
+     * than four times this, in ms
+     */
+    public static final long BUFFER_FILL_TIME = 250;
+
+    /** The minimum length of a download that is fetched in segments over parallel connections */
+    public static final long MIN_SEGMENTED_LENGTH = 4 * 1024 * 1024;
+
+    /** The minimum length of a segment, a segment is not split into smaller ones */
+    public static final long MIN_SEGMENT_SIZE = 512 * 1024;
+
+    /** The number of connections that a segmented download starts with */
+    public static final int INITIAL_SEGMENTS = 2;
+
+    /** The maximum number of connections of a segmented download */
+    public static final int MAX_SEGMENTS = 4;
+
+    /**
+     * The maximum number of segment connections of all downloads together, not counting the first
+     * connection of each download, which runs in place of the download thread
+     */
+    public static final int MAX_EXTRA_SEGMENT_CONNECTIONS = 4;
+
+    /** The time that the throughput is measured before the number of connections changes, in ms */
+    public static final long SEGMENT_PROBE_TIME = 3000;
+
+    /** One more connection is opened only if the last one raised the throughput by this factor */
+    public static final float SEGMENT_GAIN_THRESHOLD = 1.1f;
 
     /** The minimum amount of progress that has to be done before the progress bar gets updated */
     public static final int MIN_PROGRESS_STEP = 4096;
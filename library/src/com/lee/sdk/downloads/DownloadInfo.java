@@ -105,6 +105,7 @@ public final class DownloadInfo {
                 info.mTotalBytes = getLong(Downloads.Impl.COLUMN_TOTAL_BYTES);
                 info.mCurrentBytes = getLong(Downloads.Impl.COLUMN_CURRENT_BYTES);
                 info.mETag = getString(info.mETag, Constants.ETAG);
+                info.mSegments = getString(info.mSegments, Constants.SEGMENTS);
                 info.mMediaScanned = getInt(Constants.MEDIA_SCANNED) == 1;
                 info.mDeleted = getInt(Downloads.Impl.COLUMN_DELETED) == 1;
                 info.mMediaProviderUri = getString(info.mMediaProviderUri,
@@ -298,6 +299,8 @@ public final class DownloadInfo {
     public long mCurrentBytes;
     /** http header etag. */
     public String mETag;
+    /** the unfinished ranges of a segmented download. */
+    public String mSegments;
     /** has been scanned? */
     public boolean mMediaScanned;
     /** has been deleted ? */
@@ -662,6 +665,7 @@ public final class DownloadInfo {
         Log.v(Constants.TAG, "TOTAL   : " + mTotalBytes);
         Log.v(Constants.TAG, "CURRENT : " + mCurrentBytes);
         Log.v(Constants.TAG, "ETAG    : " + mETag);
+        Log.v(Constants.TAG, "SEGMENTS: " + mSegments);
         Log.v(Constants.TAG, "SCANNED : " + mMediaScanned);
         Log.v(Constants.TAG, "DELETED : " + mDeleted);
         Log.v(Constants.TAG, "MEDIAPROVIDER_URI : " + mMediaProviderUri);
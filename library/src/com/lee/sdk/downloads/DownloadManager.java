@@ -934,6 +934,7 @@ public class DownloadManager {
         ContentValues values = new ContentValues();
         values.put(Downloads.Impl.COLUMN_CURRENT_BYTES, 0);
         values.put(Downloads.Impl.COLUMN_TOTAL_BYTES, -1);
+        values.putNull(Constants.SEGMENTS);
         values.put(Downloads.Impl.COLUMN_STATUS, Downloads.Impl.STATUS_PENDING);
         values.put(Downloads.Impl.COLUMN_CONTROL, Downloads.Impl.CONTROL_RUN);
 //        values.put(Downloads.Impl.COLUMN_VISIBILITY,
@@ -55,7 +55,7 @@ public final class DownloadProvider extends ContentProvider {
     /** Database filename */
     private static final String DB_NAME = "downloads.db";
     /** Current database version */
-    private static final int DB_VERSION = 106;
+    private static final int DB_VERSION = 107;
     /** Name of table in the database */
     private static final String DB_TABLE = "downloads";
 
@@ -328,6 +328,10 @@ public final class DownloadProvider extends ContentProvider {
                             "BOOLEAN NOT NULL DEFAULT 0");
                     break;
 
+                case 107: // SUPPRESS CHECKSTYLE
+                    addColumn(db, DB_TABLE, Constants.SEGMENTS, "TEXT");
+                    break;
+
                 default:
                     throw new IllegalStateException("Don't know how to upgrade to " + version);
             }
@@ -0,0 +1,163 @@
+package com.lee.sdk.downloads;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import android.text.TextUtils;
+
+/**
+ * 分段下载中的一段，表示文件中的区间[start, end)。下载的线程从current开始写入，下载线程之外的线程可以把未下载的部分拆分出去，
+ * 交给新的连接下载。
+ */
+final class DownloadSegment {
+    /** 持久化时区间之间的分隔符 */
+    private static final String RANGE_SEPARATOR = ",";
+    /** 持久化时区间内的分隔符 */
+    private static final String BOUND_SEPARATOR = "-";
+
+    /** 开始位置 */
+    private final long mStart;
+    /** 结束位置（不包含），拆分时会减小 */
+    private long mEnd;
+    /** 已经写入文件的位置 */
+    private long mCurrent;
+    /** 下载线程正在读取的数据的结束位置，拆分不能早于这个位置 */
+    private long mReserved;
+    /** 是否已经有连接负责下载，只由DownloadThread访问 */
+    boolean mAssigned;
+
+    /**
+     * 构造方法
+     *
+     * @param start 开始位置
+     * @param end 结束位置（不包含）
+     */
+    DownloadSegment(long start, long end) {
+        mStart = start;
+        mEnd = end;
+        mCurrent = start;
+        mReserved = start;
+    }
+
+    /**
+     * @return 开始位置
+     */
+    long getStart() {
+        return mStart;
+    }
+
+    /**
+     * @return 结束位置（不包含）
+     */
+    synchronized long getEnd() {
+        return mEnd;
+    }
+
+    /**
+     * @return 已经写入文件的位置
+     */
+    synchronized long getCurrent() {
+        return mCurrent;
+    }
+
+    /**
+     * @return 还没有下载的字节数
+     */
+    synchronized long getRemaining() {
+        return mEnd - mCurrent;
+    }
+
+    /**
+     * 下载线程在读取数据之前调用，得到这次最多可以读取的字节数
+     *
+     * @param max 缓冲区的大小
+     * @return 可以读取的字节数，0表示这一段已经下载完成
+     */
+    synchronized int reserve(int max) {
+        final int count = (int) Math.min(max, mEnd - mCurrent);
+        mReserved = mCurrent + count;
+        return count;
+    }
+
+    /**
+     * 下载线程把数据写入文件之后调用
+     *
+     * @param count 写入的字节数
+     */
+    synchronized void commit(int count) {
+        mCurrent += count;
+    }
+
+    /**
+     * 把还没有下载的后一半拆分出去
+     *
+     * @param minSize 拆分后每一段的最小长度
+     * @return 拆分出来的一段，剩余部分太小时返回null
+     */
+    synchronized DownloadSegment split(long minSize) {
+        final long from = Math.max(mCurrent, mReserved);
+        final long remaining = mEnd - from;
+        if (remaining < 2 * minSize) {
+            return null;
+        }
+
+        final long middle = from + remaining / 2;
+        final DownloadSegment segment = new DownloadSegment(middle, mEnd);
+        mEnd = middle;
+        return segment;
+    }
+
+    /**
+     * 把未完成的区间转换为保存到数据库中的字符串，格式为"current-end,current-end"
+     *
+     * @param segments 所有的分段
+     * @return 字符串，所有分段都已完成时返回空字符串
+     */
+    static String toString(List<DownloadSegment> segments) {
+        StringBuilder sb = new StringBuilder();
+        for (DownloadSegment segment : segments) {
+            synchronized (segment) {
+                if (segment.mCurrent >= segment.mEnd) {
+                    continue;
+                }
+                if (sb.length() > 0) {
+                    sb.append(RANGE_SEPARATOR);
+                }
+                sb.append(segment.mCurrent).append(BOUND_SEPARATOR).append(segment.mEnd);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 解析数据库中保存的未完成的区间
+     *
+     * @param value {@link #toString(List)}的结果
+     * @param totalBytes 文件的长度
+     * @return 分段，格式错误或者区间超出文件长度时返回null
+     */
+    static ArrayList<DownloadSegment> parse(String value, long totalBytes) {
+        if (TextUtils.isEmpty(value) || totalBytes <= 0) {
+            return null;
+        }
+
+        ArrayList<DownloadSegment> segments = new ArrayList<DownloadSegment>();
+        try {
+            for (String range : value.split(RANGE_SEPARATOR)) {
+                final int index = range.indexOf(BOUND_SEPARATOR);
+                if (index <= 0) {
+                    return null;
+                }
+                final long start = Long.parseLong(range.substring(0, index));
+                final long end = Long.parseLong(range.substring(index + 1));
+                if (start < 0 || start >= end || end > totalBytes) {
+                    return null;
+                }
+                segments.add(new DownloadSegment(start, end));
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return segments;
+    }
+}
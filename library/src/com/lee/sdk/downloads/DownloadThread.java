@@ -21,10 +21,15 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
 import java.io.SyncFailedException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
 import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.http.Header;
 import org.apache.http.HttpResponse;
@@ -51,6 +56,13 @@ import com.lee.sdk.res.R;
  */
 public class DownloadThread extends Thread {
 
+    /**
+     * The segment connections of all downloads besides the first one of each download. The first
+     * one stands in for the download thread, which DownloadService counts; the others are capped
+     * here so that the segmented downloads don't multiply the threads and sockets.
+     */
+    private static final AtomicInteger sExtraConnections = new AtomicInteger(0);
+
     private Context mContext;
     private DownloadInfo mInfo;
     private SystemFacade mSystemFacade;
@@ -82,8 +94,10 @@ public class DownloadThread extends Thread {
     private static class State {
         /** file name. */
         public String mFilename;
-        /** output stream. */
-        public FileOutputStream mStream;
+        /** destination file, kept open for the whole transfer. */
+        public RandomAccessFile mFile;
+        /** channel of the destination file. */
+        public FileChannel mChannel;
         /** mime type. */
         public String mMimeType;
         /** retry count. */
@@ -98,6 +112,10 @@ public class DownloadThread extends Thread {
         public boolean mGotData = false;
         /** mRequestUri */
         public String mRequestUri;
+        /** the unfinished ranges of a segmented download, null if it is not segmented. */
+        public String mSegments;
+        /** a segmented attempt had to restart, download over one connection. */
+        public boolean mSegmentedDisabled = false;
 
         /**
          * constructor.
@@ -109,6 +127,7 @@ public class DownloadThread extends Thread {
             mRedirectCount = info.mRedirectCount;
             mRequestUri = info.mUri;
             mFilename = info.mFileName;
+            mSegments = TextUtils.isEmpty(info.mSegments) ? null : info.mSegments;
         }
     }
 
@@ -117,7 +136,7 @@ public class DownloadThread extends Thread {
      */
     private static class InnerState {
         /** current download size. */
-        public int mBytesSoFar = 0;
+        public long mBytesSoFar = 0;
         /** header etag. */
         public String mHeaderETag;
         /** mContinuingDownload. */
@@ -128,8 +147,10 @@ public class DownloadThread extends Thread {
         public String mHeaderContentDisposition;
         /** mHeaderContentLocation */
         public String mHeaderContentLocation;
+        /** mHeaderAcceptRanges */
+        public String mHeaderAcceptRanges;
         /** mBytesNotified */
-        public int mBytesNotified = 0;
+        public long mBytesNotified = 0;
         /** mTimeLastNotification */
         public long mTimeLastNotification = 0;
     }
@@ -178,6 +199,36 @@ public class DownloadThread extends Thread {
 
     }
 
+    /**
+     * State of a segmented transfer, shared by the segment workers and guarded by itself.
+     */
+    private static class SegmentState {
+        /** all segments, including the finished ones. */
+        public final ArrayList<DownloadSegment> mSegments = new ArrayList<DownloadSegment>();
+        /** the running workers. */
+        public final ArrayList<SegmentWorker> mWorkers = new ArrayList<SegmentWorker>();
+        /** the destination file. */
+        public RandomAccessFile mFile;
+        /** the channel of the destination file, written at absolute positions. */
+        public FileChannel mChannel;
+        /** the strong ETag that every range request must match. */
+        public String mETag;
+        /** the first error thrown by the workers. */
+        public Throwable mError;
+        /** the workers stop as soon as possible. */
+        public volatile boolean mStopped = false;
+        /** the number of connections to download with. */
+        public int mTargetCount = Constants.INITIAL_SEGMENTS;
+        /** more connections do not make the download faster. */
+        public boolean mSaturated = false;
+        /** the throughput measured with one connection less, in bytes per second. */
+        public long mLastThroughput = 0;
+        /** the start time of the current measurement. */
+        public long mProbeStartTime;
+        /** the downloaded bytes at the start of the current measurement. */
+        public long mProbeStartBytes;
+    }
+
     /**
      * Executes the download in a separate thread
      */
@@ -334,7 +385,15 @@ public class DownloadThread extends Thread {
             RetryDownload {
         InnerState innerState = new InnerState();
 
-        byte[] data = new byte[Constants.BUFFER_SIZE];
+        if (state.mSegments != null) {
+            SegmentState segState = setupSegmentedResume(state, innerState);
+            if (segState != null) {
+                checkConnectivity(state);
+                mInfo.updateStatus(Impl.STATUS_RUNNING);
+                transferSegments(state, innerState, segState, null, null);
+                return;
+            }
+        }
 
         setupDestinationFile(state, innerState);
         addRequestHeaders(innerState, request);
@@ -363,7 +422,16 @@ public class DownloadThread extends Thread {
         if (Constants.LOGV) {
             Log.i(Constants.TAG, "executeDownload.transferData() set status: STATUS_RUNNING");
         }
-        transferData(state, innerState, data, entityStream);
+        if (shouldSegment(state, innerState)) {
+            // the response of this request becomes the first segment
+            closeDestination(state);
+            SegmentState segState = new SegmentState();
+            segState.mETag = innerState.mHeaderETag;
+            segState.mSegments.add(new DownloadSegment(0, mInfo.mTotalBytes));
+            transferSegments(state, innerState, segState, request, entityStream);
+            return;
+        }
+        transferData(state, innerState, entityStream);
     }
 
     /**
@@ -388,32 +456,620 @@ public class DownloadThread extends Thread {
     }
 
     /**
-     * Transfer as much data as possible from the HTTP response to the destination file.
+     * Transfer as much data as possible from the HTTP response to the destination file. The data is
+     * collected in a buffer which is written when it is full or has waited for the progress interval.
      * 
      * @param state state.
      * @param innerState inner state
-     * @param data buffer to use to read data
      * @param entityStream stream for reading the HTTP response entity
      * @throws StopRequest StopRequest
      */
-    private void transferData(State state, InnerState innerState, byte[] data, InputStream entityStream)
+    private void transferData(final State state, final InnerState innerState, final InputStream entityStream)
             throws StopRequest {
+        new BufferedTransfer<StopRequest>() {
+            @Override
+            protected int read(ByteBuffer buffer) throws StopRequest {
+                checkPausedOrCanceled(state);
+                int bytesRead = readFromResponse(state, innerState, this, buffer, entityStream);
+                if (bytesRead != -1) {
+                    state.mGotData = true;
+                }
+                return bytesRead;
+            }
+
+            @Override
+            protected void write(ByteBuffer buffer) throws StopRequest {
+                int bytes = buffer.remaining();
+                writeDataToDestination(state, buffer, innerState.mBytesSoFar);
+                innerState.mBytesSoFar += bytes;
+                if (Constants.LOGV) {
+                    Log.d(Constants.TAG, "downloaded " + innerState.mBytesSoFar + " for " + mInfo.mUri);
+                }
+            }
+
+            @Override
+            protected void onFlushed() {
+                reportProgress(state, innerState);
+            }
+
+            @Override
+            protected long currentTimeMillis() {
+                return mSystemFacade.currentTimeMillis();
+            }
+        }.run();
+        // success, end of stream already reached
+        handleEndOfStream(state, innerState);
+    }
+
+    /**
+     * Whether the download should be fetched in segments over parallel connections. The server
+     * must accept byte ranges and identify the content with a strong ETag, so that the ranges
+     * fetched by different connections are from the same content.
+     * 
+     * @param state state
+     * @param innerState innerState
+     * @return true to download in segments
+     */
+    private boolean shouldSegment(State state, InnerState innerState) {
+        if (state.mSegmentedDisabled || innerState.mContinuingDownload || isDrmFile(state)) {
+            return false;
+        }
+        if (innerState.mHeaderContentLength == null || mInfo.mTotalBytes < Constants.MIN_SEGMENTED_LENGTH) {
+            return false;
+        }
+        return isStrongETag(innerState.mHeaderETag) && "bytes".equalsIgnoreCase(innerState.mHeaderAcceptRanges);
+    }
+
+    /**
+     * Whether the ETag is a strong one, a weak ETag can't be used for the range requests.
+     * 
+     * @param etag etag
+     * @return true if it is a strong ETag
+     */
+    private static boolean isStrongETag(String etag) {
+        return !TextUtils.isEmpty(etag) && !etag.startsWith("W/");
+    }
+
+    /**
+     * Prepare to resume a segmented download from the unfinished ranges saved in the database. If
+     * they can't be resumed, the partial file is deleted and the download restarts from scratch.
+     * 
+     * @param state state
+     * @param innerState innerState
+     * @return the state of the segmented transfer, or null if it can't be resumed
+     * @throws StopRequest StopRequest
+     */
+    private SegmentState setupSegmentedResume(State state, InnerState innerState) throws StopRequest {
+        ArrayList<DownloadSegment> segments = DownloadSegment.parse(state.mSegments, mInfo.mTotalBytes);
+        state.mSegments = null;
+        if (state.mFilename == null) {
+            return null;
+        }
+        if (!Helpers.isFilenameValid(state.mFilename)) {
+            // this should never happen
+            throw new StopRequest(Downloads.Impl.STATUS_FILE_ERROR, "found invalid internal destination filename");
+        }
+
+        File f = new File(state.mFilename);
+        if (segments == null || !isStrongETag(mInfo.mETag) || f.length() != mInfo.mTotalBytes) {
+            // the file was preallocated, its length tells nothing about the downloaded data
+            if (f.exists() && !f.delete()) {
+                if (Configuration.DEBUG) {
+                    Log.v(Constants.TAG, "setupSegmentedResume delete file failed");
+                }
+            }
+            state.mFilename = null;
+            return null;
+        }
+
+        SegmentState segState = new SegmentState();
+        segState.mETag = mInfo.mETag;
+        segState.mSegments.addAll(segments);
+        segState.mTargetCount = Math.max(Constants.INITIAL_SEGMENTS,
+                Math.min(Constants.MAX_SEGMENTS, segments.size()));
+        innerState.mHeaderETag = mInfo.mETag;
+        innerState.mHeaderContentLength = Long.toString(mInfo.mTotalBytes);
+        innerState.mContinuingDownload = true;
+        innerState.mBytesSoFar = getSegmentedBytes(segState);
+        innerState.mBytesNotified = innerState.mBytesSoFar;
+        return segState;
+    }
+
+    /**
+     * Download the segments over parallel connections into the preallocated destination file. The
+     * number of connections grows while it raises the throughput, and a connection which finishes
+     * its segment takes over half of the largest unfinished one.
+     * 
+     * @param state state
+     * @param innerState innerState
+     * @param segState the state of the segmented transfer
+     * @param request the request whose response is the first segment, or null
+     * @param entityStream the response entity of the request, or null
+     * @throws StopRequest StopRequest
+     * @throws RetryDownload RetryDownload
+     */
+    private void transferSegments(State state, InnerState innerState, SegmentState segState, HttpGet request,
+            InputStream entityStream) throws StopRequest, RetryDownload {
+        try {
+            segState.mFile = new RandomAccessFile(state.mFilename, "rw");
+            if (segState.mFile.length() != mInfo.mTotalBytes) {
+                segState.mFile.setLength(mInfo.mTotalBytes);
+            }
+            segState.mChannel = segState.mFile.getChannel();
+        } catch (IOException ex) {
+            closeSegmentFile(segState);
+            throw newWriteError(state, ex, 0);
+        }
+
+        boolean completed = false;
+        Throwable error = null;
+        segState.mProbeStartTime = mSystemFacade.currentTimeMillis();
+        segState.mProbeStartBytes = getSegmentedBytes(segState);
+        reportSegmentProgress(state, innerState, segState, true);
+        try {
+            for (;;) {
+                startSegmentWorkers(state, segState, request, entityStream);
+                request = null;
+                entityStream = null;
+
+                synchronized (segState) {
+                    if (segState.mError == null && !isSegmentsFinished(segState)) {
+                        try {
+                            segState.wait(Constants.MIN_PROGRESS_TIME);
+                        } catch (InterruptedException e) {
+                            // check the state again
+                        }
+                    }
+                    error = segState.mError;
+                }
+                if (error != null) {
+                    break;
+                }
+
+                checkPausedOrCanceled(state);
+                if (isSegmentsFinished(segState)) {
+                    completed = true;
+                    break;
+                }
+                reportSegmentProgress(state, innerState, segState, false);
+                adaptSegmentCount(segState);
+            }
+        } finally {
+            stopSegmentWorkers(segState);
+            if (!completed) {
+                reportSegmentProgress(state, innerState, segState, true);
+            }
+            closeSegmentFile(segState);
+        }
+
+        if (error != null) {
+            throwSegmentError(state, segState, error);
+        }
+
+        ContentValues values = new ContentValues();
+        values.putNull(Constants.SEGMENTS);
+        mContext.getContentResolver().update(mInfo.getAllDownloadsUri(), values, null, null);
+        state.mGotData = true;
+        innerState.mBytesSoFar = mInfo.mTotalBytes;
+        handleEndOfStream(state, innerState);
+    }
+
+    /**
+     * Start workers until the target number of connections is reached. An unassigned segment is
+     * taken first, otherwise the largest unfinished segment is split in half.
+     * 
+     * @param state state
+     * @param segState the state of the segmented transfer
+     * @param request the request for the first worker, or null
+     * @param entityStream the response entity of the request, or null
+     */
+    private void startSegmentWorkers(State state, SegmentState segState, HttpGet request,
+            InputStream entityStream) {
+        synchronized (segState) {
+            while (segState.mError == null && segState.mWorkers.size() < segState.mTargetCount) {
+                boolean extra = !segState.mWorkers.isEmpty();
+                if (extra && !acquireExtraConnection()) {
+                    // try again on the next progress check
+                    return;
+                }
+                DownloadSegment segment = nextSegment(segState);
+                if (segment == null) {
+                    if (extra) {
+                        sExtraConnections.decrementAndGet();
+                    }
+                    return;
+                }
+                segment.mAssigned = true;
+                SegmentWorker worker = (request != null) ? new SegmentWorker(state, segState, segment, request,
+                        entityStream) : new SegmentWorker(state, segState, segment, new HttpGet(state.mRequestUri),
+                        null);
+                request = null;
+                entityStream = null;
+                worker.mExtraConnection = extra;
+                segState.mWorkers.add(worker);
+                worker.start();
+            }
+        }
+    }
+
+    /**
+     * Take one of the extra connections shared by all downloads.
+     * 
+     * @return false if all of them are in use
+     */
+    private static boolean acquireExtraConnection() {
         for (;;) {
-            int bytesRead = readFromResponse(state, innerState, data, entityStream);
-            if (bytesRead == -1) { // success, end of stream already reached
-                handleEndOfStream(state, innerState);
-                return;
+            int count = sExtraConnections.get();
+            if (count >= Constants.MAX_EXTRA_SEGMENT_CONNECTIONS) {
+                return false;
+            }
+            if (sExtraConnections.compareAndSet(count, count + 1)) {
+                return true;
             }
+        }
+    }
 
+    /**
+     * Find the next segment for a new worker.
+     * 
+     * @param segState the state of the segmented transfer
+     * @return the segment, or null if there is nothing large enough to split
+     */
+    private DownloadSegment nextSegment(SegmentState segState) {
+        DownloadSegment largest = null;
+        for (DownloadSegment segment : segState.mSegments) {
+            if (segment.getRemaining() <= 0) {
+                continue;
+            }
+            if (!segment.mAssigned) {
+                return segment;
+            }
+            if (largest == null || segment.getRemaining() > largest.getRemaining()) {
+                largest = segment;
+            }
+        }
+
+        DownloadSegment split = (largest != null) ? largest.split(Constants.MIN_SEGMENT_SIZE) : null;
+        if (split != null) {
+            segState.mSegments.add(split);
+        }
+        return split;
+    }
+
+    /**
+     * Change the target number of connections according to the measured throughput. One more
+     * connection is opened while the last one raised the throughput, otherwise the last one is
+     * not replaced when it finishes.
+     * 
+     * @param segState the state of the segmented transfer
+     */
+    private void adaptSegmentCount(SegmentState segState) {
+        if (segState.mSaturated) {
+            return;
+        }
+        long now = mSystemFacade.currentTimeMillis();
+        long elapsed = now - segState.mProbeStartTime;
+        if (elapsed < Constants.SEGMENT_PROBE_TIME) {
+            return;
+        }
+
+        long bytesSoFar = getSegmentedBytes(segState);
+        long throughput = (bytesSoFar - segState.mProbeStartBytes) * 1000 / elapsed; // SUPPRESS CHECKSTYLE
+        synchronized (segState) {
+            if (segState.mLastThroughput > 0
+                    && throughput < segState.mLastThroughput * Constants.SEGMENT_GAIN_THRESHOLD) {
+                segState.mTargetCount = Math.max(1, segState.mTargetCount - 1);
+                segState.mSaturated = true;
+            } else if (segState.mTargetCount < Constants.MAX_SEGMENTS) {
+                segState.mLastThroughput = throughput;
+                segState.mTargetCount++;
+            } else {
+                segState.mSaturated = true;
+            }
+        }
+        if (Constants.LOGV) {
+            Log.v(Constants.TAG, "segmented download " + mInfo.mId + ": " + throughput + " B/s, connections: "
+                    + segState.mTargetCount);
+        }
+        segState.mProbeStartTime = now;
+        segState.mProbeStartBytes = bytesSoFar;
+    }
+
+    /**
+     * The number of bytes written to the destination file.
+     * 
+     * @param segState the state of the segmented transfer
+     * @return the downloaded bytes
+     */
+    private long getSegmentedBytes(SegmentState segState) {
+        long remaining = 0;
+        synchronized (segState) {
+            for (DownloadSegment segment : segState.mSegments) {
+                remaining += segment.getRemaining();
+            }
+        }
+        return mInfo.mTotalBytes - remaining;
+    }
+
+    /**
+     * Whether all segments have been downloaded.
+     * 
+     * @param segState the state of the segmented transfer
+     * @return true if finished
+     */
+    private boolean isSegmentsFinished(SegmentState segState) {
+        return getSegmentedBytes(segState) >= mInfo.mTotalBytes;
+    }
+
+    /**
+     * Save the progress and the unfinished ranges to the database, so that a resumed download
+     * restarts only the unfinished segments.
+     * 
+     * @param state state
+     * @param innerState innerState
+     * @param segState the state of the segmented transfer
+     * @param force save it even if little progress has been made
+     */
+    private void reportSegmentProgress(State state, InnerState innerState, SegmentState segState, boolean force) {
+        innerState.mBytesSoFar = getSegmentedBytes(segState);
+        if (innerState.mBytesSoFar > innerState.mBytesNotified) {
             state.mGotData = true;
-            writeDataToDestination(state, data, bytesRead);
-            innerState.mBytesSoFar += bytesRead;
-            reportProgress(state, innerState);
+        }
+        if (!force && innerState.mBytesSoFar - innerState.mBytesNotified <= Constants.MIN_PROGRESS_STEP) {
+            return;
+        }
+
+        String segments;
+        synchronized (segState) {
+            segments = DownloadSegment.toString(segState.mSegments);
+        }
+        try {
+            // the saved ranges must not cover data that is lost on a power failure
+            segState.mChannel.force(false);
+        } catch (IOException ex) {
+            Log.w(Constants.TAG, "IOException trying to sync " + state.mFilename + ": " + ex);
+        }
+        ContentValues values = new ContentValues();
+        values.put(Downloads.Impl.COLUMN_CURRENT_BYTES, innerState.mBytesSoFar);
+        values.put(Constants.SEGMENTS, segments);
+        mContext.getContentResolver().update(mInfo.getAllDownloadsUri(), values, null, null);
+        innerState.mBytesNotified = innerState.mBytesSoFar;
+        innerState.mTimeLastNotification = mSystemFacade.currentTimeMillis();
+    }
+
+    /**
+     * Stop all workers and wait for them to exit.
+     * 
+     * @param segState the state of the segmented transfer
+     */
+    private void stopSegmentWorkers(SegmentState segState) {
+        ArrayList<SegmentWorker> workers;
+        synchronized (segState) {
+            segState.mStopped = true;
+            workers = new ArrayList<SegmentWorker>(segState.mWorkers);
+        }
+        for (SegmentWorker worker : workers) {
+            // unblock the worker waiting for the network
+            worker.mRequest.abort();
+        }
+        for (SegmentWorker worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Log.w(Constants.TAG, "interrupted while waiting for segment worker");
+            }
+        }
+    }
+
+    /**
+     * Close the destination file of a segmented transfer.
+     * 
+     * @param segState the state of the segmented transfer
+     */
+    private void closeSegmentFile(SegmentState segState) {
+        try {
+            if (segState.mFile != null) {
+                segState.mFile.close();
+            }
+        } catch (IOException ex) {
             if (Constants.LOGV) {
-                Log.d(Constants.TAG, "downloaded " + innerState.mBytesSoFar + " for " + mInfo.mUri);
+                Log.v(Constants.TAG, "exception when closing the file after download : " + ex);
             }
+        } finally {
+            segState.mFile = null;
+            segState.mChannel = null;
+        }
+    }
+
+    /**
+     * Rethrow the error of a segment worker in the download thread.
+     * 
+     * @param state state
+     * @param segState the state of the segmented transfer
+     * @param error the error
+     * @throws StopRequest StopRequest
+     * @throws RetryDownload RetryDownload
+     */
+    private void throwSegmentError(State state, SegmentState segState, Throwable error) throws StopRequest,
+            RetryDownload {
+        if (error instanceof StopRequest) {
+            throw (StopRequest) error;
+        }
+        if (error instanceof RetryDownload) {
+            // the content has changed or the server refuses the ranges, restart from scratch over one
+            // connection: servers whose nodes report different ETags for the same file would fail the
+            // If-Match of every segmented retry and restart the download forever
+            discardSegments(state);
+            state.mSegmentedDisabled = true;
+            throw (RetryDownload) error;
+        }
+        if (error instanceof IOException) {
+            logNetworkState();
+            throw new StopRequest(getFinalStatusForHttpError(state), "while reading segment: " + error.toString(),
+                    error);
+        }
+        throw new StopRequest(Downloads.Impl.STATUS_UNKNOWN_ERROR, "segment worker failed: " + error.toString(), error);
+    }
 
-            checkPausedOrCanceled(state);
+    /**
+     * Delete the partial file of a segmented download and its saved ranges.
+     * 
+     * @param state state
+     */
+    private void discardSegments(State state) {
+        File f = new File(state.mFilename);
+        if (f.exists() && !f.delete()) {
+            if (Configuration.DEBUG) {
+                Log.v(Constants.TAG, "discardSegments delete file failed");
+            }
+        }
+        ContentValues values = new ContentValues();
+        values.put(Downloads.Impl.COLUMN_CURRENT_BYTES, 0);
+        values.putNull(Constants.SEGMENTS);
+        mContext.getContentResolver().update(mInfo.getAllDownloadsUri(), values, null, null);
+
+        state.mSegments = null;
+        mInfo.mTotalBytes = 0;
+        mInfo.mCurrentBytes = 0;
+    }
+
+    /**
+     * Downloads one segment over its own connection, the first segment of a new download uses the
+     * connection of the initial request.
+     */
+    private class SegmentWorker extends Thread {
+        /** state. */
+        private final DownloadThread.State mState;
+        /** the state of the segmented transfer. */
+        private final SegmentState mSegState;
+        /** the segment. */
+        private final DownloadSegment mSegment;
+        /** the request, aborted to stop the worker. */
+        final HttpGet mRequest;
+        /** the response entity of the initial request, or null. */
+        private InputStream mEntityStream;
+        /** holds one of {@link DownloadThread#sExtraConnections}. */
+        boolean mExtraConnection;
+
+        /**
+         * constructor.
+         * 
+         * @param state state
+         * @param segState the state of the segmented transfer
+         * @param segment the segment
+         * @param request the request
+         * @param entityStream the response entity if the request has been sent, or null
+         */
+        SegmentWorker(DownloadThread.State state, SegmentState segState, DownloadSegment segment, HttpGet request,
+                InputStream entityStream) {
+            mState = state;
+            mSegState = segState;
+            mSegment = segment;
+            mRequest = request;
+            mEntityStream = entityStream;
+            setName("DownloadThread:" + mInfo.mId + ":" + segment.getStart());
+        }
+
+        @Override
+        public void run() {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+
+            AndroidHttpClient client = null;
+            Throwable error = null;
+            try {
+                InputStream entityStream = mEntityStream;
+                mEntityStream = null;
+                if (entityStream == null) {
+                    client = AndroidHttpClient.newInstance(userAgent(), mContext);
+                    entityStream = openSegment(client);
+                }
+                transferSegment(entityStream);
+            } catch (Throwable ex) { // sometimes the socket code throws unchecked exceptions
+                error = ex;
+            } finally {
+                // never close the entity stream, it would read the rest of the response
+                mRequest.abort();
+                if (client != null) {
+                    client.close();
+                }
+            }
+
+            if (mExtraConnection) {
+                sExtraConnections.decrementAndGet();
+            }
+            synchronized (mSegState) {
+                mSegState.mWorkers.remove(this);
+                if (error != null && !mSegState.mStopped && mSegState.mError == null) {
+                    mSegState.mError = error;
+                }
+                mSegment.mAssigned = false;
+                mSegState.notifyAll();
+            }
+        }
+
+        /**
+         * Send the range request of the segment.
+         * 
+         * @param client client
+         * @return the response entity
+         * @throws IOException IOException
+         * @throws RetryDownload if the content has changed or the server refuses the range
+         */
+        private InputStream openSegment(HttpClient client) throws IOException, RetryDownload {
+            for (Pair<String, String> header : mInfo.getHeaders()) {
+                mRequest.addHeader(header.first, header.second);
+            }
+            mRequest.addHeader("If-Match", mSegState.mETag);
+            mRequest.addHeader("Range", "bytes=" + mSegment.getCurrent() + "-" + (mSegment.getEnd() - 1));
+
+            HttpResponse response = client.execute(mRequest);
+            int statusCode = response.getStatusLine().getStatusCode();
+            if (statusCode == 206) { // SUPPRESS CHECKSTYLE
+                return response.getEntity().getContent();
+            }
+            // 412 Precondition Failed if the content has changed, otherwise the range is refused
+            if (Constants.LOGV) {
+                Log.v(Constants.TAG, "range request refused with http " + statusCode + " for " + mInfo.mId);
+            }
+            throw new RetryDownload();
+        }
+
+        /**
+         * Transfer the data of the segment to its position in the destination file.
+         * 
+         * @param entityStream the response entity
+         * @throws StopRequest StopRequest
+         * @throws IOException if the connection fails
+         */
+        private void transferSegment(InputStream entityStream) throws StopRequest, IOException {
+            byte[] data = new byte[Constants.BUFFER_SIZE];
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            for (;;) {
+                if (mSegState.mStopped) {
+                    return;
+                }
+                // the end moves back when the rest of the segment is split off to another worker
+                int limit = mSegment.reserve(data.length);
+                if (limit == 0) {
+                    return;
+                }
+                int bytesRead = entityStream.read(data, 0, limit);
+                if (bytesRead == -1) {
+                    throw new IOException("closed socket before end of segment");
+                }
+
+                long position = mSegment.getCurrent();
+                buffer.clear();
+                buffer.limit(bytesRead);
+                try {
+                    while (buffer.hasRemaining()) {
+                        position += mSegState.mChannel.write(buffer, position);
+                    }
+                } catch (IOException ex) {
+                    throw newWriteError(mState, ex, bytesRead);
+                }
+                mSegment.commit(bytesRead);
+            }
         }
     }
 
@@ -465,6 +1121,15 @@ public class DownloadThread extends Thread {
      * @param state state
      */
     private void syncDestination(State state) {
+        if (state.mChannel != null) {
+            try {
+                state.mChannel.force(true);
+            } catch (IOException ex) {
+                Log.w(Constants.TAG, "IOException trying to sync " + state.mFilename + ": " + ex);
+            }
+            return;
+        }
+
         FileOutputStream downloadedFileStream = null;
         try {
             downloadedFileStream = new FileOutputStream(state.mFilename, true);
@@ -519,22 +1184,37 @@ public class DownloadThread extends Thread {
     }
 
     /**
-     * Close the destination output stream.
+     * Open the destination file, it is kept open until the download thread finishes.
+     * 
+     * @param state state
+     * @throws IOException IOException
+     */
+    private void openDestination(State state) throws IOException {
+        if (state.mFile == null) {
+            state.mFile = new RandomAccessFile(state.mFilename, "rw");
+            state.mChannel = state.mFile.getChannel();
+        }
+    }
+
+    /**
+     * Close the destination file.
      * 
      * @param state state
      */
     private void closeDestination(State state) {
         try {
             // close the file
-            if (state.mStream != null) {
-                state.mStream.close();
-                state.mStream = null;
+            if (state.mFile != null) {
+                state.mFile.close();
             }
         } catch (IOException ex) {
             if (Constants.LOGV) {
                 Log.v(Constants.TAG, "exception when closing the file after download : " + ex);
             }
             // nothing can really be done if the file can't be closed
+        } finally {
+            state.mFile = null;
+            state.mChannel = null;
         }
     }
 
@@ -566,56 +1246,76 @@ public class DownloadThread extends Thread {
         long now = mSystemFacade.currentTimeMillis();
         if (innerState.mBytesSoFar - innerState.mBytesNotified > Constants.MIN_PROGRESS_STEP
                 && now - innerState.mTimeLastNotification > Constants.MIN_PROGRESS_TIME) {
-            ContentValues values = new ContentValues();
-            values.put(Downloads.Impl.COLUMN_CURRENT_BYTES, innerState.mBytesSoFar);
-            mContext.getContentResolver().update(mInfo.getAllDownloadsUri(), values, null, null);
+            checkpoint(state, innerState);
             innerState.mBytesNotified = innerState.mBytesSoFar;
             innerState.mTimeLastNotification = now;
         }
     }
 
+    /**
+     * Sync the written data to storage and then save the progress, a resumed download starts from
+     * the saved progress because the length of a preallocated file tells nothing.
+     * 
+     * @param state state
+     * @param innerState innerState
+     */
+    private void checkpoint(State state, InnerState innerState) {
+        syncDestination(state);
+        ContentValues values = new ContentValues();
+        values.put(Downloads.Impl.COLUMN_CURRENT_BYTES, innerState.mBytesSoFar);
+        mContext.getContentResolver().update(mInfo.getAllDownloadsUri(), values, null, null);
+    }
+
     /**
      * Write a data buffer to the destination file.
      * 
      * @param state state
-     * @param data buffer containing the data to write
-     * @param bytesRead how many bytes to write from the buffer
+     * @param buffer buffer containing the data to write
+     * @param position the position in the file to write at
      * @throws StopRequest StopRequest
      */
-    private void writeDataToDestination(State state, byte[] data, int bytesRead) throws StopRequest {
+    private void writeDataToDestination(State state, ByteBuffer buffer, long position) throws StopRequest {
         for (;;) {
             try {
-                if (state.mStream == null) {
-                    state.mStream = new FileOutputStream(state.mFilename, true);
-                }
-                state.mStream.write(data, 0, bytesRead);
-                if (mInfo.mDestination == Downloads.Impl.DESTINATION_EXTERNAL && !isDrmFile(state)) {
-                    closeDestination(state);
+                openDestination(state);
+                while (buffer.hasRemaining()) {
+                    position += state.mChannel.write(buffer, position);
                 }
                 return;
             } catch (IOException ex) {
-                if (mInfo.isOnCache()) {
-                    if (Helpers.discardPurgeableFiles(mContext, Constants.BUFFER_SIZE)) {
-                        continue;
-                    }
-                } else if (!Helpers.isExternalMediaMounted()) {
-                    throw new StopRequest(Downloads.Impl.STATUS_DEVICE_NOT_FOUND_ERROR,
-                            "external media not mounted while writing destination file");
-                }
-
-                long availableBytes = Helpers.getAvailableBytes(Helpers.getFilesystemRoot(state.mFilename));
-                if (availableBytes < bytesRead) {
-                    // modify by dognqi 修改提示文案
-                    // since @20130424
-                    throw new StopRequest(Downloads.Impl.STATUS_INSUFFICIENT_SPACE_ERROR,
-                            mContext.getString(R.string.download_noenough_space), ex);
+                if (mInfo.isOnCache() && Helpers.discardPurgeableFiles(mContext, buffer.remaining())) {
+                    continue;
                 }
-                throw new StopRequest(Downloads.Impl.STATUS_FILE_ERROR, "while writing destination file: "
-                        + ex.toString(), ex);
+                throw newWriteError(state, ex, buffer.remaining());
             }
         }
     }
 
+    /**
+     * Create the StopRequest for a failed write to the destination file.
+     * 
+     * @param state state
+     * @param ex the exception thrown by the write
+     * @param bytesRead how many bytes were being written
+     * @return the StopRequest to throw
+     */
+    private StopRequest newWriteError(State state, IOException ex, long bytesRead) {
+        if (!mInfo.isOnCache() && !Helpers.isExternalMediaMounted()) {
+            return new StopRequest(Downloads.Impl.STATUS_DEVICE_NOT_FOUND_ERROR,
+                    "external media not mounted while writing destination file");
+        }
+
+        long availableBytes = Helpers.getAvailableBytes(Helpers.getFilesystemRoot(state.mFilename));
+        if (availableBytes < bytesRead) {
+            // modify by dognqi 修改提示文案
+            // since @20130424
+            return new StopRequest(Downloads.Impl.STATUS_INSUFFICIENT_SPACE_ERROR,
+                    mContext.getString(R.string.download_noenough_space), ex);
+        }
+        return new StopRequest(Downloads.Impl.STATUS_FILE_ERROR, "while writing destination file: "
+                + ex.toString(), ex);
+    }
+
     /**
      * Called when we've reached the end of the HTTP response stream, to update the database and
      * check for consistency.
@@ -642,7 +1342,7 @@ public class DownloadThread extends Thread {
         mContext.getContentResolver().update(mInfo.getAllDownloadsUri(), values, null, null);
 
         boolean lengthMismatched = (innerState.mHeaderContentLength != null)
-                && (innerState.mBytesSoFar != Integer.parseInt(innerState.mHeaderContentLength));
+                && (innerState.mBytesSoFar != Long.parseLong(innerState.mHeaderContentLength));
         if (lengthMismatched) {
             if (cannotResume(innerState)) {
                 throw new StopRequest(Downloads.Impl.STATUS_CANNOT_RESUME, "mismatched content length");
@@ -667,20 +1367,26 @@ public class DownloadThread extends Thread {
      * 
      * @param state state
      * @param innerState innerState
-     * @param data buffer to use to read data
+     * @param transfer the transfer, its buffered data is written if the read fails
+     * @param buffer the buffer to read into
      * @param entityStream stream for reading the HTTP response entity
      * @return the number of bytes actually read or -1 if the end of the stream has been reached
      * @throws StopRequest StopRequest
      */
-    private int readFromResponse(State state, InnerState innerState, byte[] data, InputStream entityStream)
-            throws StopRequest {
+    private int readFromResponse(State state, InnerState innerState, BufferedTransfer<StopRequest> transfer,
+            ByteBuffer buffer, InputStream entityStream) throws StopRequest {
         try {
-            return entityStream.read(data);
+            int bytesRead = entityStream.read(buffer.array(), buffer.arrayOffset() + buffer.position(),
+                    buffer.remaining());
+            if (bytesRead > 0) {
+                buffer.position(buffer.position() + bytesRead);
+            }
+            return bytesRead;
         } catch (IOException ex) {
             logNetworkState();
-            ContentValues values = new ContentValues();
-            values.put(Downloads.Impl.COLUMN_CURRENT_BYTES, innerState.mBytesSoFar);
-            mContext.getContentResolver().update(mInfo.getAllDownloadsUri(), values, null, null);
+            // keep the data already received
+            transfer.flush();
+            checkpoint(state, innerState);
             if (cannotResume(innerState)) {
                 String message = "while reading response: " + ex.toString()
                         + ", can't resume interrupted download with no ETag";
@@ -774,11 +1480,20 @@ public class DownloadThread extends Thread {
                     }
                 }
                 // end by zhangyunhua>>
-                state.mStream = new FileOutputStream(state.mFilename);
-            } catch (FileNotFoundException exc) {
+                openDestination(state);
+                state.mFile.setLength(0);
+            } catch (IOException exc) {
                 throw new StopRequest(Downloads.Impl.STATUS_FILE_ERROR, "while opening destination file: "
                         + exc.toString(), exc);
             }
+            if (innerState.mHeaderContentLength != null && mInfo.mTotalBytes > 0) {
+                // preallocate the file, so that it does not grow on every write
+                try {
+                    state.mFile.setLength(mInfo.mTotalBytes);
+                } catch (IOException exc) {
+                    throw newWriteError(state, exc, mInfo.mTotalBytes);
+                }
+            }
             if (Constants.LOGV) {
                 Log.v(Constants.TAG, "writing " + mInfo.mUri + " to " + state.mFilename);
             }
@@ -803,6 +1518,7 @@ public class DownloadThread extends Thread {
         if (innerState.mHeaderETag != null) {
             values.put(Constants.ETAG, innerState.mHeaderETag);
         }
+        values.putNull(Constants.SEGMENTS);
         if (state.mMimeType != null) {
             values.put(Downloads.Impl.COLUMN_MIME_TYPE, state.mMimeType);
         }
@@ -902,6 +1618,10 @@ public class DownloadThread extends Thread {
         if (header != null) {
             innerState.mHeaderETag = header.getValue();
         }
+        header = response.getFirstHeader("Accept-Ranges");
+        if (header != null) {
+            innerState.mHeaderAcceptRanges = header.getValue();
+        }
         String headerTransferEncoding = null;
         header = response.getFirstHeader("Transfer-Encoding");
         if (header != null) {
@@ -1123,8 +1843,9 @@ public class DownloadThread extends Thread {
             // We're resuming a download that got interrupted
             File f = new File(state.mFilename);
             if (f.exists()) {
-                long fileLength = f.length();
-                if (fileLength == 0) {
+                // the file may have been preallocated, only the data before the last checkpoint is valid
+                long bytesSoFar = Math.min(f.length(), mInfo.mCurrentBytes);
+                if (bytesSoFar <= 0) {
                     // The download hadn't actually started, we can restart from scratch
                     boolean deleted = f.delete();
                     if (!deleted) {
@@ -1146,12 +1867,12 @@ public class DownloadThread extends Thread {
                 } else {
                     // All right, we'll be able to resume this download
                     try {
-                        state.mStream = new FileOutputStream(state.mFilename, true);
-                    } catch (FileNotFoundException exc) {
+                        openDestination(state);
+                    } catch (IOException exc) {
                         throw new StopRequest(Downloads.Impl.STATUS_FILE_ERROR,
                                 "while opening destination for resuming: " + exc.toString(), exc);
                     }
-                    innerState.mBytesSoFar = (int) fileLength;
+                    innerState.mBytesSoFar = bytesSoFar;
                     if (mInfo.mTotalBytes != -1) {
                         innerState.mHeaderContentLength = Long.toString(mInfo.mTotalBytes);
                     }
@@ -1160,10 +1881,6 @@ public class DownloadThread extends Thread {
                 }
             }
         }
-
-        if (state.mStream != null && mInfo.mDestination == Downloads.Impl.DESTINATION_EXTERNAL && !isDrmFile(state)) {
-            closeDestination(state);
-        }
     }
 
     /**
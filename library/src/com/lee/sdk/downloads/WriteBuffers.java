@@ -0,0 +1,38 @@
+package com.lee.sdk.downloads;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Sizes the write buffer of a download so that it fills in about
+ * {@link Constants#BUFFER_FILL_TIME} at the measured throughput, between
+ * {@link Constants#BUFFER_SIZE} and {@link Constants#MAX_BUFFER_SIZE}. It does not use Android,
+ * so the write path can be benchmarked on the JVM.
+ */
+final class WriteBuffers {
+    /**
+     * No instances.
+     */
+    private WriteBuffers() {
+    }
+
+    /**
+     * Get the buffer for the next data, after the buffer has been written to the destination.
+     * 
+     * @param buffer the buffer just written
+     * @param bytes the number of bytes in the buffer
+     * @param elapsed the time that the buffer took to fill, in ms
+     * @return a larger or smaller buffer, or the same buffer cleared
+     */
+    static ByteBuffer next(ByteBuffer buffer, int bytes, long elapsed) {
+        int capacity = buffer.capacity();
+        if (bytes == capacity && elapsed < Constants.BUFFER_FILL_TIME && capacity < Constants.MAX_BUFFER_SIZE) {
+            return ByteBuffer.allocate(capacity * 2);
+        }
+        if (elapsed > 4 * Constants.BUFFER_FILL_TIME // SUPPRESS CHECKSTYLE
+                && capacity > Constants.BUFFER_SIZE) {
+            return ByteBuffer.allocate(capacity / 2);
+        }
+        buffer.clear();
+        return buffer;
+    }
+}
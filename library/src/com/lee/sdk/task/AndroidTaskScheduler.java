@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2013 Lee Hong (http://blog.csdn.net/leehong2005)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lee.sdk.task;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * The {@link TaskScheduler} using the main looper of Android, it is the default scheduler of the
+ * {@link TaskManager}.
+ *
+ * @author LeeHong
+ *
+ * @since 2013/11/20
+ */
+public final class AndroidTaskScheduler implements TaskScheduler {
+    /**
+     * The single instance.
+     */
+    private static volatile AndroidTaskScheduler sInstance = null;
+
+    /**
+     * The handler associated to the main looper.
+     */
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * The handler associated to the timer thread, it is created when it is used first.
+     */
+    private volatile Handler mTimerHandler = null;
+
+    /**
+     * The private constructor.
+     */
+    private AndroidTaskScheduler() {
+    }
+
+    /**
+     * Get the single instance.
+     *
+     * @return the scheduler.
+     */
+    public static AndroidTaskScheduler getInstance() {
+        if (null == sInstance) {
+            synchronized (AndroidTaskScheduler.class) {
+                if (null == sInstance) {
+                    sInstance = new AndroidTaskScheduler();
+                }
+            }
+        }
+
+        return sInstance;
+    }
+
+    @Override
+    public void runOnMainThread(Runnable r) {
+        mHandler.post(r);
+    }
+
+    @Override
+    public void runOnMainThreadDelayed(Runnable r, long delayMillis) {
+        mHandler.postDelayed(r, delayMillis);
+    }
+
+    @Override
+    public void removeMainThreadCallbacks(Runnable r) {
+        mHandler.removeCallbacks(r);
+    }
+
+    @Override
+    public void runOnTimerThreadDelayed(Runnable r, long delayMillis) {
+        getTimerHandler().postDelayed(r, delayMillis);
+    }
+
+    @Override
+    public void removeTimerCallbacks(Runnable r) {
+        getTimerHandler().removeCallbacks(r);
+    }
+
+    /**
+     * Get the handler of the timer thread, start the thread if it is not started.
+     *
+     * @return the handler.
+     */
+    private Handler getTimerHandler() {
+        if (null == mTimerHandler) {
+            synchronized (this) {
+                if (null == mTimerHandler) {
+                    final HandlerThread thread = new HandlerThread("TaskScheduler_Timer");
+                    thread.start();
+                    mTimerHandler = new Handler(thread.getLooper());
+                }
+            }
+        }
+
+        return mTimerHandler;
+    }
+
+    @Override
+    public long uptimeMillis() {
+        return SystemClock.uptimeMillis();
+    }
+
+    @Override
+    public Worker newWorker(String name) {
+        return new LooperWorker(name);
+    }
+
+    @Override
+    public void log(String tag, String message) {
+        Log.d(tag, message);
+    }
+
+    /**
+     * The worker running a looper, the tasks can create their handlers in it.
+     */
+    private static final class LooperWorker implements Worker {
+        /**
+         * The thread running the looper.
+         */
+        private final ThreadWorker mThreadWorker;
+
+        /**
+         * The handler associated to the looper.
+         */
+        private final Handler mHandler;
+
+        /**
+         * The constructor method.
+         *
+         * @param name The name of the thread.
+         */
+        LooperWorker(String name) {
+            mThreadWorker = new ThreadWorker(name);
+            mHandler = new Handler(mThreadWorker.getLooper());
+        }
+
+        @Override
+        public void post(Runnable r) {
+            mHandler.post(r);
+        }
+
+        @Override
+        public void pause() {
+            mThreadWorker.pause();
+        }
+
+        @Override
+        public void restart() {
+            mThreadWorker.restart();
+        }
+
+        @Override
+        public void quit() {
+            mThreadWorker.quit();
+        }
+
+        @Override
+        public void join() {
+            mThreadWorker.join();
+        }
+    }
+}
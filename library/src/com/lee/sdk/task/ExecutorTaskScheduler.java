@@ -0,0 +1,258 @@
+/*
+ * Copyright (C) 2013 Lee Hong (http://blog.csdn.net/leehong2005)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lee.sdk.task;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@link TaskScheduler} running on the plain JVM, the "main" thread is a single thread
+ * executor. Use it with {@link TaskManager#TaskManager(String, boolean, TaskScheduler)} to run the
+ * task chains in the unit tests or benchmarks.
+ *
+ * <pre class="prettyprint">
+ * ExecutorTaskScheduler scheduler = new ExecutorTaskScheduler();
+ * new TaskManager(&quot;Benchmark&quot;, true, scheduler).next(task1).next(task2).execute();
+ * </pre>
+ *
+ * @author LeeHong
+ *
+ * @since 2013/11/20
+ */
+public class ExecutorTaskScheduler implements TaskScheduler {
+    /**
+     * The executor acting as the main thread.
+     */
+    private final ScheduledExecutorService mMainExecutor;
+
+    /**
+     * The pending delayed runnables.
+     */
+    private final ConcurrentHashMap<Runnable, ScheduledFuture<?>> mDelayedTasks =
+            new ConcurrentHashMap<Runnable, ScheduledFuture<?>>();
+
+    /**
+     * The executor acting as the timer thread.
+     */
+    private final ScheduledExecutorService mTimerExecutor =
+            Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "TaskScheduler_Timer");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    /**
+     * The pending runnables of the timer thread.
+     */
+    private final ConcurrentHashMap<Runnable, ScheduledFuture<?>> mTimerTasks =
+            new ConcurrentHashMap<Runnable, ScheduledFuture<?>>();
+
+    /**
+     * The constructor method, a new thread named "TaskScheduler_Main" acts as the main thread.
+     */
+    public ExecutorTaskScheduler() {
+        this(Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "TaskScheduler_Main");
+                thread.setDaemon(true);
+                return thread;
+            }
+        }));
+    }
+
+    /**
+     * The constructor method.
+     *
+     * @param mainExecutor The executor acting as the main thread, it must run the runnables one
+     *        by one in order.
+     */
+    public ExecutorTaskScheduler(ScheduledExecutorService mainExecutor) {
+        if (null == mainExecutor) {
+            throw new NullPointerException("mainExecutor is null");
+        }
+
+        mMainExecutor = mainExecutor;
+    }
+
+    @Override
+    public void runOnMainThread(Runnable r) {
+        mMainExecutor.execute(r);
+    }
+
+    @Override
+    public void runOnMainThreadDelayed(Runnable r, long delayMillis) {
+        schedule(mMainExecutor, mDelayedTasks, r, delayMillis);
+    }
+
+    @Override
+    public void removeMainThreadCallbacks(Runnable r) {
+        cancel(mDelayedTasks, r);
+    }
+
+    @Override
+    public void runOnTimerThreadDelayed(Runnable r, long delayMillis) {
+        schedule(mTimerExecutor, mTimerTasks, r, delayMillis);
+    }
+
+    @Override
+    public void removeTimerCallbacks(Runnable r) {
+        cancel(mTimerTasks, r);
+    }
+
+    /**
+     * Schedule the runnable and remember it so that it can be removed.
+     *
+     * @param executor The executor.
+     * @param pending The pending runnables of the executor.
+     * @param r The runnable.
+     * @param delayMillis The delay in milliseconds.
+     */
+    private static void schedule(ScheduledExecutorService executor,
+            final ConcurrentHashMap<Runnable, ScheduledFuture<?>> pending, final Runnable r, long delayMillis) {
+        final Runnable wrapper = new Runnable() {
+            @Override
+            public void run() {
+                pending.remove(r);
+                r.run();
+            }
+        };
+
+        pending.put(r, executor.schedule(wrapper, delayMillis, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Cancel the pending runnable.
+     *
+     * @param pending The pending runnables of the executor.
+     * @param r The runnable.
+     */
+    private static void cancel(ConcurrentHashMap<Runnable, ScheduledFuture<?>> pending, Runnable r) {
+        final ScheduledFuture<?> future = pending.remove(r);
+        if (null != future) {
+            future.cancel(false);
+        }
+    }
+
+    @Override
+    public long uptimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
+    @Override
+    public Worker newWorker(String name) {
+        return new ExecutorWorker(name);
+    }
+
+    @Override
+    public void log(String tag, String message) {
+        System.out.println(tag + ": " + message);
+    }
+
+    /**
+     * Shut down the executors acting as the main thread and the timer thread.
+     */
+    public void shutdown() {
+        mMainExecutor.shutdown();
+        mTimerExecutor.shutdown();
+    }
+
+    /**
+     * The worker running on a single thread executor.
+     */
+    private static final class ExecutorWorker implements Worker {
+        /**
+         * The single thread executor.
+         */
+        private final ThreadPoolExecutor mExecutor;
+
+        /**
+         * The lock used to pause the thread.
+         */
+        private final Object mPauseLock = new Object();
+
+        /**
+         * The constructor method.
+         *
+         * @param name The name of the thread.
+         */
+        ExecutorWorker(final String name) {
+            mExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+                    new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            Thread thread = new Thread(r, name);
+                            thread.setPriority(Thread.MIN_PRIORITY);
+                            return thread;
+                        }
+                    });
+            mExecutor.prestartCoreThread();
+        }
+
+        @Override
+        public void post(Runnable r) {
+            try {
+                mExecutor.execute(r);
+            } catch (RejectedExecutionException e) {
+                // The worker has quit, drop it as the looper does.
+            }
+        }
+
+        @Override
+        public void pause() {
+            synchronized (mPauseLock) {
+                try {
+                    mPauseLock.wait();
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        @Override
+        public void restart() {
+            synchronized (mPauseLock) {
+                mPauseLock.notifyAll();
+            }
+        }
+
+        @Override
+        public void quit() {
+            mExecutor.getQueue().clear();
+            mExecutor.shutdown();
+        }
+
+        @Override
+        public void join() {
+            try {
+                mExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2013 Lee Hong (http://blog.csdn.net/leehong2005)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lee.sdk.task;
+
+import java.util.Arrays;
+
+import com.lee.sdk.task.TaskManager.TaskManagerState;
+
+/**
+ * <p>
+ * A fan-out / fan-in stage of the {@link TaskManager}. The sibling tasks of this stage are running
+ * concurrently, each one on the thread specified by its own {@link Task.RunningStatus}, and every
+ * sibling receives a copy of the operation passed from the previous task.
+ * </p>
+ *
+ * <p>
+ * When all siblings are finished, their outputs are merged by {@link #join(TaskOperation, TaskOperation[])}
+ * and the merged operation is passed to the next task. Typically you need NOT create this class
+ * directly, call {@link TaskManager#nextParallel(Task...)} instead.
+ * </p>
+ *
+ * @author LeeHong
+ *
+ * @since 2013/11/20
+ */
+public class ParallelTask extends Task {
+    /**
+     * The sibling tasks.
+     */
+    private final Task[] mTasks;
+
+    /**
+     * The constructor method.
+     *
+     * @param tasks the sibling tasks, can NOT be empty.
+     */
+    public ParallelTask(Task... tasks) {
+        super(RunningStatus.WORK_THREAD);
+
+        if (null == tasks || 0 == tasks.length) {
+            throw new IllegalArgumentException("tasks can NOT be empty");
+        }
+
+        for (Task task : tasks) {
+            if (null == task) {
+                throw new NullPointerException("task is null");
+            }
+        }
+
+        mTasks = tasks.clone();
+    }
+
+    /**
+     * Get the sibling tasks.
+     *
+     * @return the sibling tasks.
+     */
+    public Task[] getTasks() {
+        return mTasks;
+    }
+
+    /**
+     * The siblings are dispatched by {@link TaskManager}, this method is not called by it, and
+     * return the operation directly.
+     *
+     * @param operation The operation is passed from previous task.
+     *
+     * @return the operation.
+     */
+    @Override
+    public TaskOperation onExecute(TaskOperation operation) {
+        return operation;
+    }
+
+    /**
+     * Cancel this stage and all siblings.
+     */
+    @Override
+    public void cancel() {
+        super.cancel();
+
+        for (Task task : mTasks) {
+            task.cancel();
+        }
+    }
+
+    /**
+     * Merge the outputs of the siblings. The merged parameters are the input parameters followed by
+     * the parameters added by each sibling, in the order of the sibling tasks. Since every sibling
+     * starts from a copy of the input, only the parameters after the input are taken from its
+     * output, unless the sibling has replaced the parameters, then all of them are taken. The task
+     * manager will pause if any sibling asks to pause. This method may be called in any thread.
+     *
+     * @param input the operation passed to the siblings.
+     * @param outputs the outputs of the siblings, the item is null if the sibling returns null.
+     *
+     * @return the operation passed to the next task.
+     */
+    protected TaskOperation join(TaskOperation input, TaskOperation[] outputs) {
+        TaskOperation merged = new TaskOperation(input);
+        final Object[] inputParams = (null != input) ? input.getTaskParams() : null;
+
+        for (TaskOperation output : outputs) {
+            if (null != output) {
+                merged.appendTaskParams(getAddedParams(inputParams, output.getTaskParams()));
+
+                if (TaskManagerState.PAUSE == output.getTaskManagerStatus()) {
+                    merged.setTaskManagerStatus(TaskManagerState.PAUSE);
+                }
+            }
+        }
+
+        return merged;
+    }
+
+    /**
+     * Get the parameters added by a sibling.
+     *
+     * @param inputParams the input parameters, may be null.
+     * @param params the output parameters of the sibling, may be null.
+     *
+     * @return the parameters after the input parameters, or all output parameters if they do not
+     *         start with the input parameters, null if nothing is added.
+     */
+    private static Object[] getAddedParams(Object[] inputParams, Object[] params) {
+        if (null == params || params == inputParams) {
+            return null;
+        }
+
+        final int count = (null != inputParams) ? inputParams.length : 0;
+        if (params.length < count) {
+            return params;
+        }
+
+        for (int i = 0; i < count; ++i) {
+            if (params[i] != inputParams[i]) {
+                return params;
+            }
+        }
+
+        return (params.length > count) ? Arrays.copyOfRange(params, count, params.length) : null;
+    }
+}
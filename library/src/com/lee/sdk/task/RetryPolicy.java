@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2013 Lee Hong (http://blog.csdn.net/leehong2005)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lee.sdk.task;
+
+/**
+ * The retry policy of a {@link Task}. A failed attempt is retried after a delay which grows by the
+ * multiplier, the delay is capped by the max delay and randomized by the jitter so that many
+ * failed tasks do not retry at the same time.
+ *
+ * <pre class="prettyprint">
+ * // Try 4 times at most, wait about 500ms, 1s and 2s between the attempts.
+ * task.setRetryPolicy(RetryPolicy.exponential(4, 500));
+ * </pre>
+ *
+ * @author LeeHong
+ *
+ * @since 2013/11/20
+ */
+public class RetryPolicy {
+    /**
+     * The policy which never retries.
+     */
+    public static final RetryPolicy NONE = new RetryPolicy(1, 0, 1.0f, 0, 0.0f);
+
+    /**
+     * The default multiplier of the exponential policy.
+     */
+    private static final float DEFAULT_MULTIPLIER = 2.0f;
+
+    /**
+     * The default max delay of the exponential policy, in milliseconds.
+     */
+    private static final long DEFAULT_MAX_DELAY = 30 * 1000;
+
+    /**
+     * The default jitter of the exponential policy.
+     */
+    private static final float DEFAULT_JITTER = 0.2f;
+
+    /**
+     * The max count of attempts, including the first one.
+     */
+    private final int mMaxAttempts;
+
+    /**
+     * The delay before the first retry, in milliseconds.
+     */
+    private final long mInitialDelay;
+
+    /**
+     * The delay grows by this multiplier for each retry.
+     */
+    private final float mMultiplier;
+
+    /**
+     * The max delay, in milliseconds.
+     */
+    private final long mMaxDelay;
+
+    /**
+     * The delay is randomized in the range [delay * (1 - jitter), delay * (1 + jitter)].
+     */
+    private final float mJitter;
+
+    /**
+     * The constructor method.
+     *
+     * @param maxAttempts The max count of attempts, including the first one.
+     * @param initialDelay The delay before the first retry, in milliseconds.
+     * @param multiplier The delay grows by this multiplier for each retry.
+     * @param maxDelay The max delay, in milliseconds.
+     * @param jitter The randomization factor of the delay, in the range [0, 1].
+     */
+    public RetryPolicy(int maxAttempts, long initialDelay, float multiplier, long maxDelay, float jitter) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be at least 1");
+        }
+
+        if (initialDelay < 0 || maxDelay < 0 || multiplier < 1.0f || jitter < 0.0f || jitter > 1.0f) {
+            throw new IllegalArgumentException("invalid delay arguments");
+        }
+
+        mMaxAttempts = maxAttempts;
+        mInitialDelay = initialDelay;
+        mMultiplier = multiplier;
+        mMaxDelay = maxDelay;
+        mJitter = jitter;
+    }
+
+    /**
+     * Create an exponential backoff policy with the default multiplier, max delay and jitter.
+     *
+     * @param maxAttempts The max count of attempts, including the first one.
+     * @param initialDelay The delay before the first retry, in milliseconds.
+     *
+     * @return the retry policy.
+     */
+    public static RetryPolicy exponential(int maxAttempts, long initialDelay) {
+        return new RetryPolicy(maxAttempts, initialDelay, DEFAULT_MULTIPLIER,
+                Math.max(initialDelay, DEFAULT_MAX_DELAY), DEFAULT_JITTER);
+    }
+
+    /**
+     * Get the max count of attempts.
+     *
+     * @return the max count of attempts, including the first one.
+     */
+    public int getMaxAttempts() {
+        return mMaxAttempts;
+    }
+
+    /**
+     * Get the delay before the next attempt.
+     *
+     * @param failedAttempts The count of the failed attempts, starts from 1.
+     *
+     * @return the delay in milliseconds.
+     */
+    public long getDelay(int failedAttempts) {
+        double delay = mInitialDelay * Math.pow(mMultiplier, Math.max(0, failedAttempts - 1));
+        delay = Math.min(delay, mMaxDelay);
+
+        if (mJitter > 0.0f) {
+            delay *= 1.0 + mJitter * (2.0 * Math.random() - 1.0);
+        }
+
+        return Math.max(0, Math.round(delay));
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("maxAttempts = ").append(mMaxAttempts).append("  ");
+        sb.append("initialDelay = ").append(mInitialDelay).append("  ");
+        sb.append("multiplier = ").append(mMultiplier).append("  ");
+        sb.append("maxDelay = ").append(mMaxDelay).append("  ");
+        sb.append("jitter = ").append(mJitter);
+
+        return sb.toString();
+    }
+}
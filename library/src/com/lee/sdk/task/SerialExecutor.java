@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2013 Lee Hong (http://blog.csdn.net/leehong2005)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lee.sdk.task;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+
+/**
+ * A serial queue multiplexed onto a shared executor. The runnables are executed one by one in the
+ * order they are added, but not always in the same thread. Only one runnable of the queue occupies
+ * a thread of the shared executor at a time, and a paused queue does not occupy any thread.
+ *
+ * @author LeeHong
+ *
+ * @since 2013/11/20
+ */
+final class SerialExecutor implements Executor {
+    /**
+     * The shared executor.
+     */
+    private final Executor mExecutor;
+
+    /**
+     * The waiting runnables.
+     */
+    private final ArrayDeque<Runnable> mTasks = new ArrayDeque<Runnable>();
+
+    /**
+     * Indicate the drain runnable has been submitted to the shared executor.
+     */
+    private boolean mScheduled = false;
+
+    /**
+     * Indicate the queue is paused.
+     */
+    private boolean mPaused = false;
+
+    /**
+     * Run one runnable of the queue, then submit itself again if there are more runnables, so
+     * that the other queues get the chance to run between them.
+     */
+    private final Runnable mDrain = new Runnable() {
+        @Override
+        public void run() {
+            Runnable task = null;
+            synchronized (SerialExecutor.this) {
+                if (!mPaused) {
+                    task = mTasks.poll();
+                }
+
+                if (null == task) {
+                    mScheduled = false;
+                    return;
+                }
+            }
+
+            try {
+                task.run();
+            } finally {
+                synchronized (SerialExecutor.this) {
+                    mScheduled = false;
+                    scheduleNext();
+                }
+            }
+        }
+    };
+
+    /**
+     * The constructor method.
+     *
+     * @param executor The shared executor.
+     */
+    SerialExecutor(Executor executor) {
+        mExecutor = executor;
+    }
+
+    @Override
+    public synchronized void execute(Runnable r) {
+        if (null == r) {
+            throw new NullPointerException("runnable is null");
+        }
+
+        mTasks.offer(r);
+        scheduleNext();
+    }
+
+    /**
+     * Stop to run the waiting runnables, the running one is not affected.
+     */
+    public synchronized void pause() {
+        mPaused = true;
+    }
+
+    /**
+     * Continue to run the waiting runnables.
+     */
+    public synchronized void resume() {
+        mPaused = false;
+        scheduleNext();
+    }
+
+    /**
+     * Remove all waiting runnables.
+     */
+    public synchronized void clear() {
+        mTasks.clear();
+    }
+
+    /**
+     * Submit the drain runnable if necessary, must be called with the lock held.
+     */
+    private void scheduleNext() {
+        if (!mScheduled && !mPaused && !mTasks.isEmpty()) {
+            mScheduled = true;
+            mExecutor.execute(mDrain);
+        }
+    }
+}
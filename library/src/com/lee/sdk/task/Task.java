@@ -17,6 +17,7 @@
 package com.lee.sdk.task;
 
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * <p>
@@ -62,6 +63,47 @@ public abstract class Task {
      */
     private volatile RunningStatus mRunStatus = RunningStatus.UI_THREAD;
 
+    /**
+     * The timeout of each attempt in milliseconds, 0 means no timeout.
+     */
+    private volatile long mTimeout = 0;
+
+    /**
+     * The retry policy, default value is {@link RetryPolicy#NONE}.
+     */
+    private volatile RetryPolicy mRetryPolicy = RetryPolicy.NONE;
+
+    /**
+     * The background thread which is running this task, it is interrupted when the task is
+     * cancelled or timed out. Guarded by this.
+     */
+    private Thread mRunningThread = null;
+
+    /**
+     * The default time to live of the cached result, in milliseconds.
+     */
+    public static final long DEFAULT_RESULT_CACHE_TTL = 5 * 60 * 1000;
+
+    /**
+     * The time to live of the cached result, in milliseconds.
+     */
+    private volatile long mResultCacheTtl = DEFAULT_RESULT_CACHE_TTL;
+
+    /**
+     * The task is not in the queue of any task manager.
+     */
+    private static final int QUEUE_STATE_NONE = 0;
+
+    /**
+     * The task is waiting in the queue of a task manager.
+     */
+    private static final int QUEUE_STATE_QUEUED = 1;
+
+    /**
+     * The queue state, the task leaves the queue by being taken or removed only once.
+     */
+    private final AtomicInteger mQueueState = new AtomicInteger(QUEUE_STATE_NONE);
+
     /**
      * Indicates the current status of the task. Each status will be set only once during the
      * lifetime of a task.
@@ -107,6 +149,9 @@ public abstract class Task {
         this.mRunStatus = task.mRunStatus;
         this.mName = task.mName;
         this.mStatus = task.mStatus;
+        this.mTimeout = task.mTimeout;
+        this.mRetryPolicy = task.mRetryPolicy;
+        this.mResultCacheTtl = task.mResultCacheTtl;
     }
 
     /**
@@ -147,10 +192,64 @@ public abstract class Task {
     }
 
     /**
-     * Cancel the task.
+     * Cancel the task. If the task is running in the background thread, the thread is
+     * interrupted, the {@link #onExecute(TaskOperation)} method should return as soon as possible.
+     * A task cancelled before running will be skipped.
      */
     public void cancel() {
         mCancelled.set(true);
+        interruptRunningThread();
+    }
+
+    /**
+     * Set the timeout of each attempt. If the task is running in the background thread, the
+     * thread is interrupted when timed out. The output of a timed out attempt is discarded and the
+     * attempt fails with {@link java.util.concurrent.TimeoutException}.
+     * 
+     * @param timeout The timeout in milliseconds, 0 means no timeout.
+     */
+    public void setTimeout(long timeout) {
+        mTimeout = Math.max(0, timeout);
+    }
+
+    /**
+     * Get the timeout of each attempt.
+     * 
+     * @return the timeout in milliseconds, 0 means no timeout.
+     */
+    public long getTimeout() {
+        return mTimeout;
+    }
+
+    /**
+     * Set the retry policy, the failed or timed out attempt will be retried with the same
+     * operation, so the task should not modify the operation before it succeeds.
+     * 
+     * @param policy The retry policy, null means no retry.
+     */
+    public void setRetryPolicy(RetryPolicy policy) {
+        mRetryPolicy = (null != policy) ? policy : RetryPolicy.NONE;
+    }
+
+    /**
+     * Get the retry policy.
+     * 
+     * @return the retry policy, never be null.
+     */
+    public RetryPolicy getRetryPolicy() {
+        return mRetryPolicy;
+    }
+
+    /**
+     * Called when an attempt failed and the retry policy allows to retry. Override this method to
+     * retry only for the specified failures.
+     * 
+     * @param cause The failure cause.
+     * 
+     * @return true to retry, otherwise false.
+     */
+    protected boolean shouldRetry(Throwable cause) {
+        return true;
     }
 
     /**
@@ -225,6 +324,102 @@ public abstract class Task {
         return mId;
     }
 
+    /**
+     * Override this method to memoize the result of a {@link RunningStatus#WORK_THREAD} task. If
+     * the key is not null, the task manager returns the cached result of the same task class and
+     * key instead of executing the task, or waits for an identical task which is running. The
+     * task should compute the same result from the same input.
+     * 
+     * @param operation The operation is passed from previous task.
+     * 
+     * @return the key derived from the parameters of the operation, null if the result should not
+     *         be cached. The key must implement {@link Object#equals(Object)} and
+     *         {@link Object#hashCode()}.
+     * 
+     * @see TaskResultCache
+     */
+    protected Object getResultCacheKey(TaskOperation operation) {
+        return null;
+    }
+
+    /**
+     * Override this method to estimate the memory size of the result cached by
+     * {@link #getResultCacheKey(TaskOperation)}. The cache evicts the least recently used results
+     * when their total size exceeds its budget, a result larger than the budget is not cached.
+     * 
+     * @param result The result of the task.
+     * 
+     * @return the size in bytes, 0 if unknown, the result then only counts against the max count
+     *         of the cached results.
+     * 
+     * @see TaskResultCache
+     */
+    protected long getResultSize(TaskOperation result) {
+        return 0;
+    }
+
+    /**
+     * Set the time to live of the cached result.
+     * 
+     * @param ttl The time to live in milliseconds, 0 means the result is not cached but the
+     *        identical tasks running at the same time are still joined.
+     */
+    public void setResultCacheTtl(long ttl) {
+        mResultCacheTtl = Math.max(0, ttl);
+    }
+
+    /**
+     * Get the time to live of the cached result.
+     * 
+     * @return the time to live in milliseconds.
+     */
+    public long getResultCacheTtl() {
+        return mResultCacheTtl;
+    }
+
+    /**
+     * Mark the task as waiting in the queue.
+     * 
+     * @return false if the task is already in a queue.
+     */
+    boolean markQueued() {
+        return mQueueState.compareAndSet(QUEUE_STATE_NONE, QUEUE_STATE_QUEUED);
+    }
+
+    /**
+     * Mark the task as leaving the queue, by being taken to run or being removed.
+     * 
+     * @return true if the task was waiting in the queue and this call makes it leave.
+     */
+    boolean markDequeued() {
+        return mQueueState.compareAndSet(QUEUE_STATE_QUEUED, QUEUE_STATE_NONE);
+    }
+
+    /**
+     * Attach the background thread which is running this task.
+     * 
+     * @param thread The running thread.
+     */
+    synchronized void attachThread(Thread thread) {
+        mRunningThread = thread;
+    }
+
+    /**
+     * Detach the running thread, the thread will not be interrupted by this task after this.
+     */
+    synchronized void detachThread() {
+        mRunningThread = null;
+    }
+
+    /**
+     * Interrupt the running thread if the task is running in the background thread.
+     */
+    synchronized void interruptRunningThread() {
+        if (null != mRunningThread) {
+            mRunningThread.interrupt();
+        }
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
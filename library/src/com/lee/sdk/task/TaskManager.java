@@ -17,14 +17,16 @@
 package com.lee.sdk.task;
 
 import java.util.HashMap;
-import java.util.LinkedList;
-
-import android.os.Handler;
-import android.os.Looper;
-import android.os.Message;
-import android.text.TextUtils;
-import android.util.Log;
-
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.lee.sdk.Configuration;
 import com.lee.sdk.task.Task.RunningStatus;
 import com.lee.sdk.task.Task.Status;
 
@@ -78,6 +80,14 @@ import com.lee.sdk.task.Task.Status;
  * }
  * </pre>
  * 
+ * <h2>Parallel stage:</h2>
+ * 
+ * <pre class="prettyprint">
+ * taskManager.nextParallel(fetchUserTask, fetchFeedTask, fetchAdTask) // Running concurrently.
+ *     .next(updateUITask) // Receives the outputs of the three tasks.
+ *     .execute();
+ * </pre>
+ * 
  * <h2>Note:</h2>
  * 
  * <pre>
@@ -92,16 +102,6 @@ import com.lee.sdk.task.Task.Status;
  * @see {@link TaskOperation}
  */
 public class TaskManager {
-    /**
-     * Execute task message.
-     */
-    private static final int MESSAGE_POST_EXECUTE = 0x01;
-
-    /**
-     * Update progress message.
-     */
-    private static final int MESSAGE_POST_PROGRESS = 0x02;
-
     /**
      * The state change listener.
      */
@@ -116,6 +116,24 @@ public class TaskManager {
         void onStateChanged(TaskManager taskManager, State oldState, State newState);
     }
 
+    /**
+     * The task listener.
+     */
+    public interface ITaskListener {
+        /**
+         * Called when a task is finished, failed or cancelled. This method will be called in UI
+         * thread.
+         * 
+         * @param taskManager Which task manager the task belongs to.
+         * @param task The task.
+         * @param cause The failure cause, null if the task succeeded. It is a
+         *        {@link CancellationException} if the task is cancelled, a
+         *        {@link TimeoutException} if the task is timed out, or the exception thrown by
+         *        the task.
+         */
+        void onTaskFinished(TaskManager taskManager, Task task, Throwable cause);
+    }
+
     /**
      * A representation of a task manager's state. A given thread may only be in one state at a
      * time.
@@ -170,17 +188,61 @@ public class TaskManager {
     /**
      * DEBUG
      */
-    private static final boolean DEBUG = true;
+    private static final boolean DEBUG = Configuration.DEBUG;
     
     /**
      * The running task manager collection.
      */
     private static HashMap<String, TaskManager> sTaskManagers = new HashMap<String, TaskManager>();
 
+    /**
+     * The max thread count of the worker executor.
+     */
+    private static final int WORKER_POOL_SIZE = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    /**
+     * The idle thread of the worker executor will be released after this time, in seconds.
+     */
+    private static final int WORKER_KEEP_ALIVE = 30;
+
+    /**
+     * The bounded executor shared by all task managers, it runs the WORK_THREAD siblings of the
+     * parallel stages and the tasks of the task managers using the shared executor. The threads
+     * are created when work exists and released when idle.
+     */
+    private static final ThreadPoolExecutor WORKER_EXECUTOR;
+
+    static {
+        WORKER_EXECUTOR = new ThreadPoolExecutor(WORKER_POOL_SIZE, WORKER_POOL_SIZE,
+                WORKER_KEEP_ALIVE, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    private final AtomicInteger mCount = new AtomicInteger(1);
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "TaskManager_Worker_" + mCount.getAndIncrement());
+                        thread.setPriority(Thread.MIN_PRIORITY);
+                        return thread;
+                    }
+                });
+        WORKER_EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
     /**
      * The task list.
      */
-    private LinkedList<Task> mTaskList = new LinkedList<Task>();
+    private final ConcurrentLinkedQueue<Task> mTaskList = new ConcurrentLinkedQueue<Task>();
+
+    /**
+     * The count of the tasks waiting in the list. The removed tasks are only marked and stay in
+     * the list until the running thread skips them, they are not counted.
+     */
+    private final AtomicInteger mPendingCount = new AtomicInteger(0);
+
+    /**
+     * The generator of the task id, the id does not change when other tasks are removed.
+     */
+    private final AtomicInteger mTaskIdGenerator = new AtomicInteger(0);
 
     /**
      * The task operation, it will pass from first task to the last task.
@@ -188,10 +250,10 @@ public class TaskManager {
     private TaskOperation mTaskOperation = new TaskOperation();
 
     /**
-     * The running thread worker, it own a looper which will be alive until you call
-     * {@link ThreadWorker#quit()} method.
+     * The own background thread created by the scheduler, it will be alive until you call
+     * {@link #quitLooper()} method.
      */
-    private ThreadWorker mThreadWorker = null;
+    private TaskScheduler.Worker mThreadWorker = null;
 
     /**
      * The current perform task, may be null.
@@ -214,9 +276,30 @@ public class TaskManager {
     private IStateChangeListener mListener = null;
 
     /**
-     * The background thread handler, which is associated to a background thread looper.
+     * The task listener.
+     */
+    private volatile ITaskListener mTaskListener = null;
+
+    /**
+     * Indicate the task manager is cancelled.
      */
-    private Handler mThreadHandler = null;
+    private volatile boolean mCancelled = false;
+
+    /**
+     * Indicate the tasks are running on the shared worker executor instead of an own thread.
+     */
+    private final boolean mUseSharedExecutor;
+
+    /**
+     * The serial queue on the shared worker executor, it keeps the tasks running one by one. It
+     * is not null only when the task manager is using the shared executor and has been started.
+     */
+    private volatile SerialExecutor mSerialExecutor = null;
+
+    /**
+     * The lock used to join the task manager which is using the shared executor.
+     */
+    private final Object mJoinLock = new Object();
     
     /**
      * Indicate quit thread looper if finishing all tasks.
@@ -224,26 +307,48 @@ public class TaskManager {
     private boolean mAutoQuit = true;
 
     /**
-     * The UI thread handler.
+     * Run the tasks in the background thread, it is reused for every hop from UI thread.
+     */
+    private final Runnable mBackgroundRunnable = new Runnable() {
+        @Override
+        public void run() {
+            doInBackground();
+        }
+    };
+
+    /**
+     * The scheduler which provides the UI thread and the clock.
+     */
+    private final TaskScheduler mScheduler;
+
+    /**
+     * The UI_THREAD tasks waiting for {@link #mUIRunnable}, every hop offers one task and posts
+     * the runnable once. The concurrent {@link #execute()} calls may hop more than once before
+     * the UI thread runs, so a single slot would lose tasks.
+     */
+    private final ConcurrentLinkedQueue<Task> mPendingUITasks = new ConcurrentLinkedQueue<Task>();
+
+    /**
+     * The tasks taken by the UI thread which should run in the background thread, they run before
+     * the tasks in the list.
+     */
+    private final ConcurrentLinkedQueue<Task> mPendingBackgroundTasks = new ConcurrentLinkedQueue<Task>();
+
+    /**
+     * Run the pending task in the UI thread, it is reused for every hop from background thread.
      */
-    private Handler mUIHandler = new Handler(Looper.getMainLooper()) {
+    private final Runnable mUIRunnable = new Runnable() {
         @Override
-        public void handleMessage(Message msg) {
-            switch (msg.what) {
-            case MESSAGE_POST_EXECUTE:
-                Task task = (Task) msg.obj;
-                executeTask(task);
-                // Try to run next task if possible.
-                runNextTask();
-                break;
-
-            case MESSAGE_POST_PROGRESS:
-                postProgress(msg.obj);
-                break;
-            
-            default:
-                break;
+        public void run() {
+            final Task task = mPendingUITasks.poll();
+            if (null == task) {
+                return;
             }
+
+            executeTask(task);
+            // Run the following UI_THREAD tasks here, hop to the background thread only when
+            // the running status changes.
+            runNextTasksInUIThread();
         }
     };
 
@@ -251,6 +356,7 @@ public class TaskManager {
      * The constructor method.
      */
     public TaskManager() {
+        this(null, true, false);
     }
 
     /**
@@ -269,24 +375,78 @@ public class TaskManager {
      * @param autoQuit Quit or not after all task being performed.
      */
     public TaskManager(String name, boolean autoQuit) {
+        this(name, autoQuit, false);
+    }
+
+    /**
+     * The constructor method.
+     * 
+     * <p>
+     * If use the shared executor, the task manager does NOT own a thread, its tasks are running
+     * one by one on a bounded thread pool shared by all task managers. In this case
+     * {@link #pause()} only stops to run the next task, it returns immediately and does not
+     * block the running task.
+     * </p>
+     * 
+     * @param name  The name of the task manager.
+     * @param autoQuit Quit or not after all task being performed.
+     * @param useSharedExecutor true to run the tasks on the shared executor, false to run them on
+     *        an own looper thread.
+     */
+    public TaskManager(String name, boolean autoQuit, boolean useSharedExecutor) {
+        this(name, autoQuit, useSharedExecutor, AndroidTaskScheduler.getInstance());
+    }
+
+    /**
+     * The constructor method, the tasks are running on the shared executor, and the UI_THREAD
+     * tasks and the timeouts are driven by the specified scheduler. With
+     * {@link ExecutorTaskScheduler} the task manager does not need the Android main looper, so
+     * the task chains can be tested and measured on the plain JVM.
+     * 
+     * @param name  The name of the task manager.
+     * @param autoQuit Quit or not after all task being performed.
+     * @param scheduler The scheduler which provides the UI thread and the clock.
+     */
+    public TaskManager(String name, boolean autoQuit, TaskScheduler scheduler) {
+        this(name, autoQuit, true, scheduler);
+    }
+
+    /**
+     * The constructor method.
+     * 
+     * @param name  The name of the task manager.
+     * @param autoQuit Quit or not after all task being performed.
+     * @param useSharedExecutor true to run the tasks on the shared executor.
+     * @param scheduler The scheduler which provides the UI thread and the clock.
+     */
+    private TaskManager(String name, boolean autoQuit, boolean useSharedExecutor, TaskScheduler scheduler) {
+        if (null == scheduler) {
+            throw new NullPointerException("scheduler is null");
+        }
+
         mName = name;
         mAutoQuit = autoQuit;
+        mUseSharedExecutor = useSharedExecutor;
+        mScheduler = scheduler;
     }
 
     /**
-     * Add the task to {@link TaskManager} class.
+     * Add the task to {@link TaskManager} class. This method can be called in any thread, even
+     * when the tasks are running.
      * 
-     * @param task The task.
+     * @param task The task, it can NOT be waiting in a task manager.
      * 
      * @return the {@link TaskManager} object.
      */
     public TaskManager next(Task task) {
         if (null != task) {
-            synchronized (mTaskList) {
-                int id = mTaskList.size() + 1;
-                task.setTaskId(id);
-                mTaskList.add(task);
+            if (!task.markQueued()) {
+                throw new IllegalStateException("The task is already waiting in a task manager: " + task);
             }
+
+            task.setTaskId(mTaskIdGenerator.incrementAndGet());
+            mPendingCount.incrementAndGet();
+            mTaskList.offer(task);
         } else {
             throw new NullPointerException("task is null");
         }
@@ -294,23 +454,35 @@ public class TaskManager {
         return this;
     }
 
+    /**
+     * Add a parallel stage to {@link TaskManager} class, the specified tasks will be running
+     * concurrently, and the next task receives all of their outputs merged.
+     * 
+     * @param tasks The sibling tasks, each one runs on the thread specified by its running status.
+     * 
+     * @return the {@link TaskManager} object.
+     * 
+     * @see ParallelTask
+     */
+    public TaskManager nextParallel(Task... tasks) {
+        return next(new ParallelTask(tasks));
+    }
+
     /**
      * Start to execute the tasks in the task manager.
      */
     public void execute() {
-        if (mTaskList.size() > 0) {
+        if (mCancelled) {
+            return;
+        }
+
+        if (mPendingCount.get() > 0) {
             startThread();
 
             // Set the task to RUNNING.
             setState(State.RUNNING);
 
-            // Perform the runnable in the handler which is associated to the background thread.
-            mThreadHandler.post(new Runnable() {
-                @Override
-                public void run() {
-                    doInBackground();
-                }
-            });
+            postBackground();
         } else {
             if (mAutoQuit) {
                 quitLooper();
@@ -349,7 +521,7 @@ public class TaskManager {
         // If the task running status is UI_THREAD.
         if (RunningStatus.UI_THREAD == runTask.getRunningStatus()) {
             // The task is running in UI thread.
-            mUIHandler.post(new Runnable() {
+            mScheduler.runOnMainThread(new Runnable() {
                 @Override
                 public void run() {
                     executeTask(runTask);
@@ -364,8 +536,13 @@ public class TaskManager {
      * 
      * @param progresses The progress.
      */
-    public void publishProgress(Object progresses) {
-        mUIHandler.obtainMessage(MESSAGE_POST_PROGRESS, progresses).sendToTarget();
+    public void publishProgress(final Object progresses) {
+        mScheduler.runOnMainThread(new Runnable() {
+            @Override
+            public void run() {
+                postProgress(progresses);
+            }
+        });
     }
 
     /**
@@ -377,30 +554,66 @@ public class TaskManager {
         }
     }
 
+    /**
+     * Cancel the task manager. The running task is cancelled and its thread is interrupted, the
+     * pending tasks are cancelled and removed, and the worker is released. A cancelled task
+     * manager can NOT be executed again.
+     */
+    public void cancel() {
+        mCancelled = true;
+
+        final Task curTask = mCurTask;
+        if (null != curTask) {
+            curTask.cancel();
+        }
+
+        for (Task task : mTaskList) {
+            if (removeQueuedTask(task)) {
+                task.cancel();
+                performTaskFinished(task, new CancellationException("The task manager is cancelled."));
+            }
+        }
+
+        // Wake up the paused thread so that it can quit.
+        if (null != mThreadWorker && State.PAUSED == mState) {
+            mThreadWorker.restart();
+        }
+
+        quitLooper();
+    }
+
+    /**
+     * Indicate the task manager is cancelled or not.
+     * 
+     * @return true if cancelled, otherwise false.
+     */
+    public boolean isCancelled() {
+        return mCancelled;
+    }
+
     /**
      * Remove the tasks in the list.
      */
     public void removeTasks() {
-        synchronized (mTaskList) {
-            if (mTaskList.size() > 0) {
-                mTaskList.clear();
-                quitLooper();
-            }
+        boolean removed = false;
+        for (Task task : mTaskList) {
+            removed |= removeQueuedTask(task);
+        }
+
+        if (removed) {
+            quitLooper();
         }
     }
 
     /**
-     * Remove the specified task.
+     * Remove the specified task. The task is only marked as removed, so this method does not
+     * search the list.
      * 
      * @param task The task to be removed.
      */
     public void removeTask(Task task) {
-        synchronized (mTaskList) {
-            mTaskList.remove(task);
-
-            if (mTaskList.isEmpty()) {
-                quitLooper();
-            }
+        if (null != task && removeQueuedTask(task) && 0 == mPendingCount.get()) {
+            quitLooper();
         }
     }
 
@@ -413,6 +626,15 @@ public class TaskManager {
         mListener = listener;
     }
 
+    /**
+     * Set the task listener, which gets the outcome of every task.
+     * 
+     * @param listener listener
+     */
+    public void setTaskListener(ITaskListener listener) {
+        mTaskListener = listener;
+    }
+
     /**
      * Get the task operation.
      * 
@@ -430,10 +652,17 @@ public class TaskManager {
     }
 
     /**
-     * Pause the worker thread.
+     * Pause the worker thread. If the task manager is using the shared executor, this method
+     * does not block, the running task continues and the next task will not run until
+     * {@link #resume()} is called.
      */
     public void pause() {
-        if (null != mThreadWorker) {
+        final SerialExecutor serialExecutor = mSerialExecutor;
+        if (null != serialExecutor) {
+            setState(State.PAUSED);
+
+            serialExecutor.pause();
+        } else if (null != mThreadWorker) {
             setState(State.PAUSED);
 
             mThreadWorker.pause();
@@ -444,7 +673,12 @@ public class TaskManager {
      * Resume the worker thread from the waiting status.
      */
     public void resume() {
-        if (null != mThreadWorker) {
+        final SerialExecutor serialExecutor = mSerialExecutor;
+        if (null != serialExecutor) {
+            setState(State.RUNNING);
+
+            serialExecutor.resume();
+        } else if (null != mThreadWorker) {
             setState(State.RUNNING);
 
             mThreadWorker.restart();
@@ -460,18 +694,44 @@ public class TaskManager {
             mThreadWorker = null;
         }
 
-        mThreadHandler = null;
+        final SerialExecutor serialExecutor = mSerialExecutor;
+        if (null != serialExecutor) {
+            serialExecutor.clear();
+        }
 
-        // Set the task to FINISHED.
+        // Set the task to FINISHED before waking up join(), so the joined thread sees the state.
         setState(State.FINISHED);
+
+        if (null != serialExecutor) {
+            synchronized (mJoinLock) {
+                mSerialExecutor = null;
+                mJoinLock.notifyAll();
+            }
+        }
     }
 
     /**
      * Blocks the current thread ({@link Thread#currentThread()}) until the receiver finishes its
      * execution and dies.
+     * 
+     * <p>
+     * NOTE: If the task manager is using the shared executor, do NOT call this method in a task
+     * running on the shared executor, all of its threads may be blocked.
+     * </p>
      */
     public final void join() {
-        if (null != mThreadWorker) {
+        if (mUseSharedExecutor) {
+            synchronized (mJoinLock) {
+                while (null != mSerialExecutor) {
+                    try {
+                        mJoinLock.wait();
+                    } catch (InterruptedException e) {
+                        e.printStackTrace();
+                        return;
+                    }
+                }
+            }
+        } else if (null != mThreadWorker) {
             mThreadWorker.join();
         }
     }
@@ -520,8 +780,10 @@ public class TaskManager {
      * @param task task.
      */
     protected void printExecuteTaskState(Task task) {
+        TaskTracer.trace(this, task);
+
         if (DEBUG) {
-            Log.d(TAG, "    Executer the task: " + task.toString());
+            mScheduler.log(TAG, "    Executer the task: " + task.toString());
         }
     }
 
@@ -551,51 +813,153 @@ public class TaskManager {
      * Call this method to start the work thread if can.
      */
     private void startThread() {
-        if (null == mThreadWorker) {
-            String name = TextUtils.isEmpty(mName) ? this.toString() : mName;
+        if (mUseSharedExecutor) {
+            if (null == mSerialExecutor) {
+                mSerialExecutor = new SerialExecutor(WORKER_EXECUTOR);
+                // Set the task to READY.
+                setState(State.READY);
+            }
+        } else if (null == mThreadWorker) {
+            String name = (null == mName || 0 == mName.length()) ? this.toString() : mName;
             String threadName = "TaskManager_Thread_" + name;
-            mThreadWorker = new ThreadWorker(threadName);
-            mThreadHandler = new Handler(mThreadWorker.getLooper());
+            mThreadWorker = mScheduler.newWorker(threadName);
             // Set the task to READY.
             setState(State.READY);
         }
     }
 
     /**
-     * This method is running in the background thread.
+     * Perform the tasks in the own background thread, or in the serial queue on the shared
+     * executor.
+     */
+    private void postBackground() {
+        final SerialExecutor serialExecutor = mSerialExecutor;
+        final TaskScheduler.Worker worker = mThreadWorker;
+        if (null != serialExecutor) {
+            serialExecutor.execute(mBackgroundRunnable);
+        } else if (null != worker) {
+            worker.post(mBackgroundRunnable);
+        }
+    }
+
+    /**
+     * This method is running in the background thread. The consecutive WORK_THREAD tasks are
+     * executed one by one in this method, and it returns when meeting a task which should run in
+     * other thread.
      */
     private void doInBackground() {
-        mCurTask = null;
+        while (true) {
+            final Task task = pollBackgroundTask();
+            if (null == task) {
+                return;
+            }
 
-        if (mTaskList.isEmpty()) {
-            return;
-        }
+            // The siblings of the parallel stage will run the next task when all of them are
+            // finished.
+            if (task instanceof ParallelTask) {
+                executeParallelTask((ParallelTask) task);
+                return;
+            }
 
-        Task task = mTaskList.get(0);
-        mCurTask = task;
+            if (RunningStatus.UI_THREAD == task.getRunningStatus()) {
+                // Hop to the UI thread to execute the task.
+                mPendingUITasks.offer(task);
+                mScheduler.runOnMainThread(mUIRunnable);
+                return;
+            }
+
+            // The task is allowed to be running in background thread, we execute the task now.
+            executeTask(task);
 
-        // Remove the first item in the list.
-        synchronized (mTaskList) {
-            mTaskList.remove(0);
+            if (!isRunNext()) {
+                return;
+            }
+
+            // The serial queue holds the next task until the task manager is resumed.
+            if (State.PAUSED == mState) {
+                postBackground();
+                return;
+            }
         }
+    }
+
+    /**
+     * This method is running in the UI thread. The consecutive UI_THREAD tasks are executed one
+     * by one in this method, and hop to the background thread when meeting a task which should run
+     * in background thread.
+     */
+    private void runNextTasksInUIThread() {
+        while (isRunNext()) {
+            // Take the head before checking it, a concurrent execute() may start the background
+            // thread which polls the same list.
+            final Task task = pollTask();
+            if (null == task) {
+                return;
+            }
+
+            if (RunningStatus.UI_THREAD != task.getRunningStatus()) {
+                // Hand the task to the background thread, it is already taken from the list.
+                mPendingBackgroundTasks.offer(task);
+                postBackground();
+                return;
+            }
 
-        // If the task is allowed to be running in background thread, we execute the task
-        // now, the doInBackground() method is running in the background thread.
-        switch (task.getRunningStatus()) {
-        case WORK_THREAD:
             executeTask(task);
-            // Try to run next task if possible.
-            runNextTask();
-            break;
+        }
+    }
 
-        case UI_THREAD:
-            // Send a message to the UI handler to executer the task.
-            mUIHandler.obtainMessage(MESSAGE_POST_EXECUTE, task).sendToTarget();
-            break;
-            
-        default:
-            break;
+    /**
+     * Get the next task for the background thread, the tasks handed over by the UI thread run
+     * first.
+     * 
+     * @return the next task, null if there is no task.
+     */
+    private Task pollBackgroundTask() {
+        final Task task = mPendingBackgroundTasks.poll();
+        if (null != task) {
+            mCurTask = task;
+            return task;
         }
+
+        return pollTask();
+    }
+
+    /**
+     * Remove the first task in the list and set it as the current task, the removed tasks are
+     * skipped. The UI thread and the background thread may call this method at the same time,
+     * each task is returned to one of them only.
+     * 
+     * @return the first task, null if the list is empty.
+     */
+    private Task pollTask() {
+        Task task = mTaskList.poll();
+        while (null != task && !task.markDequeued()) {
+            // The task has been removed, skip it.
+            task = mTaskList.poll();
+        }
+
+        if (null != task) {
+            mPendingCount.decrementAndGet();
+        }
+
+        mCurTask = task;
+        return task;
+    }
+
+    /**
+     * Remove the task if it is waiting in the list.
+     * 
+     * @param task The task.
+     * 
+     * @return true if the task is removed by this call.
+     */
+    private boolean removeQueuedTask(Task task) {
+        if (task.markDequeued()) {
+            mPendingCount.decrementAndGet();
+            return true;
+        }
+
+        return false;
     }
 
     /**
@@ -614,6 +978,11 @@ public class TaskManager {
      * @return true if run next task, otherwise false.
      */
     private boolean isRunNext() {
+        // The cancelled task manager has released its worker.
+        if (mCancelled) {
+            return false;
+        }
+
         boolean isRunNext = true;
         boolean hasNext = false;
 
@@ -621,9 +990,7 @@ public class TaskManager {
             isRunNext = (mTaskOperation.getTaskManagerStatus() == TaskManagerState.CONTINUE);
         }
 
-        if (null != mTaskList) {
-            hasNext = mTaskList.size() > 0;
-        }
+        hasNext = mPendingCount.get() > 0;
 
         // No next task, quit the thread.
         if (!hasNext) {
@@ -645,26 +1012,263 @@ public class TaskManager {
      */
     private void executeTask(Task task) {
         if (null != task) {
+            mTaskOperation = runTask(task, mTaskOperation);
+        }
+    }
+
+    /**
+     * Run the task with the specified operation. The failed attempt is retried according to the
+     * retry policy of the task, and the outcome is reported to the task listener.
+     * 
+     * @param task The task object.
+     * @param operation The operation passed to the task.
+     * 
+     * @return the output of the task, or the specified operation if the task failed.
+     */
+    private TaskOperation runTask(Task task, TaskOperation operation) {
+        TaskOperation output = operation;
+        Throwable cause = null;
+
+        // Set the status of the task.
+        task.setStatus(Status.RUNNING);
 
-            // Set the status of the task.
-            task.setStatus(Status.RUNNING);
+        // Print the task state.
+        this.printExecuteTaskState(task);
 
-            // Print the task state.
-            this.printExecuteTaskState(task);
+        // Only the background thread can be interrupted and wait for retrying.
+        final boolean inBackground = (RunningStatus.WORK_THREAD == task.getRunningStatus());
+        if (inBackground) {
+            task.attachThread(Thread.currentThread());
+        }
 
+        // The cache key of the task result, only the WORK_THREAD task can be memoized.
+        Object cacheKey = null;
+        boolean computing = false;
+        if (inBackground && !task.isCancelled()) {
             try {
-                // Avoid the exception from task interrupting the task manager works.
-                mTaskOperation = task.onExecute(mTaskOperation);
+                cacheKey = TaskResultCache.getCacheKey(task, operation);
             } catch (Exception e) {
                 e.printStackTrace();
             }
+        }
+
+        try {
+            // Return the cached result, or wait for the identical task which is running.
+            TaskOperation cached = null;
+            if (null != cacheKey) {
+                cached = TaskResultCache.acquire(cacheKey, mScheduler.uptimeMillis());
+                computing = (null == cached);
+            }
+
+            if (null != cached) {
+                output = cached;
+            } else {
+                final RetryPolicy policy = task.getRetryPolicy();
+                for (int attempt = 1; !task.isCancelled(); ++attempt) {
+                    try {
+                        // Avoid the exception or error from task interrupting the task manager
+                        // works, otherwise the chain or the parallel stage never finishes.
+                        output = executeWithTimeout(task, operation, inBackground);
+                        cause = null;
+                        break;
+                    } catch (Throwable e) {
+                        e.printStackTrace();
+                        output = operation;
+                        cause = e;
+                    }
+
+                    if (inBackground && !task.isCancelled()) {
+                        // Clear the interrupted status caused by the timeout.
+                        Thread.interrupted();
+                    }
+
+                    if (attempt >= policy.getMaxAttempts() || task.isCancelled() || !task.shouldRetry(cause)) {
+                        break;
+                    }
+
+                    // Do NOT block the UI thread, retry the UI_THREAD task immediately.
+                    if (inBackground) {
+                        try {
+                            Thread.sleep(policy.getDelay(attempt));
+                        } catch (InterruptedException e) {
+                            // Cancelled while waiting.
+                        }
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            // Cancelled while waiting for the identical task.
+            cause = e;
+        } finally {
+            if (computing) {
+                // Release the identical tasks, they will compute again if this task failed.
+                final boolean succeeded = (null == cause && !task.isCancelled());
+                TaskResultCache.complete(task, cacheKey, succeeded ? output : null, mScheduler.uptimeMillis());
+            }
+
+            if (inBackground) {
+                task.detachThread();
+                // Do NOT leave the interrupted status to the next task of the thread.
+                Thread.interrupted();
+            }
+        }
+
+        if (task.isCancelled()) {
+            cause = new CancellationException("The task is cancelled.");
+        }
+
+        // Set the status of the task.
+        task.setStatus(Status.FINISHED);
+
+        // Print the task state.
+        this.printExecuteTaskState(task);
+
+        performTaskFinished(task, cause);
+
+        return output;
+    }
+
+    /**
+     * Execute the task once, the result is discarded if the task is timed out.
+     * 
+     * @param task The task object.
+     * @param operation The operation passed to the task.
+     * @param inBackground Whether the task is running in the background thread.
+     * 
+     * @return the output of the task.
+     * 
+     * @throws TimeoutException if the task is timed out.
+     */
+    private TaskOperation executeWithTimeout(Task task, TaskOperation operation, boolean inBackground)
+            throws TimeoutException {
+        final long timeout = task.getTimeout();
+        if (timeout <= 0) {
+            return task.onExecute(operation);
+        }
+
+        // The UI thread is not interrupted, the timeout is checked after the task returns. The
+        // watchdog runs in the timer thread, a busy main thread must not delay it.
+        final TimeoutWatchdog watchdog = inBackground ? new TimeoutWatchdog(task) : null;
+        if (null != watchdog) {
+            mScheduler.runOnTimerThreadDelayed(watchdog, timeout);
+        }
+
+        final long start = mScheduler.uptimeMillis();
+        TaskOperation output = null;
+        RuntimeException exception = null;
+
+        try {
+            output = task.onExecute(operation);
+        } catch (RuntimeException e) {
+            exception = e;
+        } finally {
+            if (null != watchdog) {
+                mScheduler.removeTimerCallbacks(watchdog);
+            }
+        }
 
-            // Set the status of the task.
-            task.setStatus(Status.FINISHED);
+        if ((null != watchdog && watchdog.mFired) || mScheduler.uptimeMillis() - start >= timeout) {
+            throw new TimeoutException("The task is timed out after " + timeout + "ms: " + task);
+        }
 
-            // Print the task state.
-            this.printExecuteTaskState(task);
+        if (null != exception) {
+            throw exception;
         }
+
+        return output;
+    }
+
+    /**
+     * Interrupt the thread which is running the task when timed out.
+     */
+    private static final class TimeoutWatchdog implements Runnable {
+        /**
+         * The task.
+         */
+        private final Task mTask;
+
+        /**
+         * Indicate the task is timed out.
+         */
+        private volatile boolean mFired = false;
+
+        /**
+         * The constructor method.
+         * 
+         * @param task The task.
+         */
+        TimeoutWatchdog(Task task) {
+            mTask = task;
+        }
+
+        @Override
+        public void run() {
+            mFired = true;
+            mTask.interruptRunningThread();
+        }
+    }
+
+    /**
+     * Dispatch the siblings of the parallel stage, this method does not wait for them. The last
+     * finished sibling joins the outputs and runs the next task.
+     * 
+     * @param parallelTask The parallel stage.
+     */
+    private void executeParallelTask(final ParallelTask parallelTask) {
+        final Task[] tasks = parallelTask.getTasks();
+        final TaskOperation[] outputs = new TaskOperation[tasks.length];
+        final AtomicInteger remaining = new AtomicInteger(tasks.length);
+        final TaskOperation input = mTaskOperation;
+
+        parallelTask.setStatus(Status.RUNNING);
+        this.printExecuteTaskState(parallelTask);
+
+        for (int i = 0; i < tasks.length; ++i) {
+            final int index = i;
+            final Task task = tasks[i];
+            final Runnable branch = new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        // Each sibling has its own copy of the input.
+                        outputs[index] = runTask(task, new TaskOperation(input));
+                    } finally {
+                        // The atomic decrement makes all outputs visible to the last sibling.
+                        if (0 == remaining.decrementAndGet()) {
+                            joinParallelTask(parallelTask, input, outputs);
+                        }
+                    }
+                }
+            };
+
+            if (RunningStatus.UI_THREAD == task.getRunningStatus()) {
+                mScheduler.runOnMainThread(branch);
+            } else {
+                WORKER_EXECUTOR.execute(branch);
+            }
+        }
+    }
+
+    /**
+     * Join the outputs of the parallel stage and run the next task, this method is running in the
+     * thread of the last finished sibling.
+     * 
+     * @param parallelTask The parallel stage.
+     * @param input The operation passed to the siblings.
+     * @param outputs The outputs of the siblings.
+     */
+    private void joinParallelTask(ParallelTask parallelTask, TaskOperation input, TaskOperation[] outputs) {
+        try {
+            mTaskOperation = parallelTask.join(input, outputs);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+
+        parallelTask.setStatus(Status.FINISHED);
+        this.printExecuteTaskState(parallelTask);
+
+        // Try to run next task if possible.
+        runNextTask();
     }
 
     /**
@@ -678,6 +1282,24 @@ public class TaskManager {
         }
     }
 
+    /**
+     * Report the outcome of the task to the task listener.
+     * 
+     * @param task The task.
+     * @param cause The failure cause, null if the task succeeded.
+     */
+    private void performTaskFinished(final Task task, final Throwable cause) {
+        final ITaskListener listener = mTaskListener;
+        if (null != listener) {
+            mScheduler.runOnMainThread(new Runnable() {
+                @Override
+                public void run() {
+                    listener.onTaskFinished(TaskManager.this, task, cause);
+                }
+            });
+        }
+    }
+
     /**
      * Perform the state change.
      * 
@@ -686,7 +1308,7 @@ public class TaskManager {
      */
     private void performStateChange(final State oldState, final State newState) {
         if (null != mListener) {
-            mUIHandler.post(new Runnable() {
+            mScheduler.runOnMainThread(new Runnable() {
                 @Override
                 public void run() {
                     mListener.onStateChanged(TaskManager.this, oldState, newState);
@@ -703,7 +1325,7 @@ public class TaskManager {
      */
     private void printTaskManagerState(final State oldState, final State newState) {
         if (DEBUG) {
-            Log.d(TAG, "TaskManager state changed, task manager = " + this.toString());
+            mScheduler.log(TAG, "TaskManager state changed, task manager = " + this.toString());
         }
     }
 
@@ -715,7 +1337,7 @@ public class TaskManager {
     private static void pushTaskManager(TaskManager taskManager) {
         if (null != taskManager) {
             String name = taskManager.getName();
-            if (!TextUtils.isEmpty(name)) {
+            if ((null != name && name.length() > 0)) {
                 sTaskManagers.put(name, taskManager);
             }
         }
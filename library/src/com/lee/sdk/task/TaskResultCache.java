@@ -0,0 +1,281 @@
+/*
+ * Copyright (C) 2013 Lee Hong (http://blog.csdn.net/leehong2005)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lee.sdk.task;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * The memory cache of the task results, it is shared by all task managers. A
+ * {@link Task.RunningStatus#WORK_THREAD} task can declare a key derived from its input by
+ * overriding {@link Task#getResultCacheKey(TaskOperation)}, the task manager then returns the
+ * cached result instead of executing the task, or waits for an identical task which is running.
+ * The expire time of the results is based on the clock of the {@link TaskScheduler} of the task
+ * manager. The cache is bounded by both the count of the results and their total size estimated
+ * by {@link Task#getResultSize(TaskOperation)}.
+ *
+ * @author LeeHong
+ *
+ * @since 2013/11/20
+ */
+public final class TaskResultCache {
+    /**
+     * The max count of the cached results.
+     */
+    private static final int MAX_SIZE = 64;
+
+    /**
+     * The max total size of the cached results in bytes.
+     */
+    private static final long MAX_BYTES = Runtime.getRuntime().maxMemory() / 32;
+
+    /**
+     * The lock.
+     */
+    private static final Object LOCK = new Object();
+
+    /**
+     * The cached results in access order, the eldest ones are evicted when the cache is full.
+     */
+    private static final LinkedHashMap<Object, Entry> CACHE = new LinkedHashMap<Object, Entry>(16, 0.75f, true);
+
+    /**
+     * The total size of the cached results in bytes.
+     */
+    private static long sBytes = 0;
+
+    /**
+     * The computations which are running, the waiting tasks are released when it is completed.
+     */
+    private static final HashMap<Object, CountDownLatch> IN_FLIGHT = new HashMap<Object, CountDownLatch>();
+
+    /**
+     * The private constructor.
+     */
+    private TaskResultCache() {
+    }
+
+    /**
+     * Remove all cached results.
+     */
+    public static void clear() {
+        synchronized (LOCK) {
+            CACHE.clear();
+            sBytes = 0;
+        }
+    }
+
+    /**
+     * Get the cache key of the task.
+     *
+     * @param task The task.
+     * @param operation The input of the task.
+     *
+     * @return the cache key, null if the task result should not be cached.
+     */
+    static Object getCacheKey(Task task, TaskOperation operation) {
+        final Object key = task.getResultCacheKey(operation);
+        return (null != key) ? new CacheKey(task.getClass(), key) : null;
+    }
+
+    /**
+     * Get the cached result, or wait for the identical computation which is running. If there is
+     * neither, the caller becomes the computing one and MUST call
+     * {@link #complete(Task, Object, TaskOperation, long)} later.
+     *
+     * @param key The cache key.
+     * @param now The current time of the scheduler clock.
+     *
+     * @return a copy of the cached result, or null if the caller should compute it.
+     *
+     * @throws InterruptedException if interrupted while waiting, the caller does not compute.
+     */
+    static TaskOperation acquire(Object key, long now) throws InterruptedException {
+        while (true) {
+            final CountDownLatch latch;
+            synchronized (LOCK) {
+                final Entry entry = CACHE.get(key);
+                if (null != entry) {
+                    if (entry.mExpireTime > now) {
+                        return copy(entry.mResult);
+                    }
+                    CACHE.remove(key);
+                    sBytes -= entry.mSize;
+                }
+
+                latch = IN_FLIGHT.get(key);
+                if (null == latch) {
+                    IN_FLIGHT.put(key, new CountDownLatch(1));
+                    return null;
+                }
+            }
+
+            // The result is cached when the computation finishes, or compute it again if failed.
+            latch.await();
+        }
+    }
+
+    /**
+     * Complete the computation and release the waiting tasks.
+     *
+     * @param task The computing task.
+     * @param key The cache key.
+     * @param result The result, null if the computation failed.
+     * @param now The current time of the scheduler clock.
+     */
+    static void complete(Task task, Object key, TaskOperation result, long now) {
+        final long ttl = task.getResultCacheTtl();
+        long size = 0;
+        if (null != result && ttl > 0) {
+            try {
+                size = Math.max(0, task.getResultSize(result));
+            } catch (Exception e) {
+                e.printStackTrace();
+                result = null;
+            }
+        }
+
+        final CountDownLatch latch;
+        synchronized (LOCK) {
+            if (null != result && ttl > 0 && size <= MAX_BYTES) {
+                // Saturate the expire time, a huge ttl means the result never expires.
+                final long expireTime = (ttl > Long.MAX_VALUE - now) ? Long.MAX_VALUE : now + ttl;
+                final Entry old = CACHE.put(key, new Entry(copy(result), expireTime, size));
+                if (null != old) {
+                    sBytes -= old.mSize;
+                }
+                sBytes += size;
+                trimToSize();
+            }
+            latch = IN_FLIGHT.remove(key);
+        }
+
+        if (null != latch) {
+            latch.countDown();
+        }
+    }
+
+    /**
+     * Evict the least recently used results until the cache is within its bounds, the caller must
+     * hold the lock.
+     */
+    private static void trimToSize() {
+        final Iterator<Entry> iterator = CACHE.values().iterator();
+        while ((CACHE.size() > MAX_SIZE || sBytes > MAX_BYTES) && iterator.hasNext()) {
+            sBytes -= iterator.next().mSize;
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Copy the operation, the following tasks may modify it.
+     *
+     * @param operation The operation.
+     *
+     * @return the copy.
+     */
+    private static TaskOperation copy(TaskOperation operation) {
+        final TaskOperation copy = new TaskOperation(operation);
+        copy.setTaskManagerStatus(operation.getTaskManagerStatus());
+        return copy;
+    }
+
+    /**
+     * The cached result.
+     */
+    private static final class Entry {
+        /**
+         * The result.
+         */
+        final TaskOperation mResult;
+
+        /**
+         * The expire time based on {@link TaskScheduler#uptimeMillis()}.
+         */
+        final long mExpireTime;
+
+        /**
+         * The estimated size in bytes.
+         */
+        final long mSize;
+
+        /**
+         * The constructor method.
+         *
+         * @param result The result.
+         * @param expireTime The expire time.
+         * @param size The estimated size.
+         */
+        Entry(TaskOperation result, long expireTime, long size) {
+            mResult = result;
+            mExpireTime = expireTime;
+            mSize = size;
+        }
+    }
+
+    /**
+     * The cache key, the key declared by different task classes are different.
+     */
+    private static final class CacheKey {
+        /**
+         * The task class.
+         */
+        private final Class<?> mTaskClass;
+
+        /**
+         * The key declared by the task.
+         */
+        private final Object mKey;
+
+        /**
+         * The constructor method.
+         *
+         * @param taskClass The task class.
+         * @param key The key declared by the task.
+         */
+        CacheKey(Class<?> taskClass, Object key) {
+            mTaskClass = taskClass;
+            mKey = key;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+
+            if (!(o instanceof CacheKey)) {
+                return false;
+            }
+
+            final CacheKey other = (CacheKey) o;
+            return mTaskClass == other.mTaskClass && mKey.equals(other.mKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * mTaskClass.hashCode() + mKey.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return mTaskClass.getName() + "#" + mKey;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2013 Lee Hong (http://blog.csdn.net/leehong2005)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lee.sdk.task;
+
+/**
+ * The scheduler of the {@link TaskManager}, it provides the "main" thread where the
+ * {@link Task.RunningStatus#UI_THREAD} tasks run, the own background thread of the task manager,
+ * the timer thread and the clock used by the timeouts, the clock of the result cache, and the
+ * debug log. It is the only place
+ * where the task manager touches the platform. The default one is {@link AndroidTaskScheduler},
+ * which uses the main looper. {@link ExecutorTaskScheduler} runs on the plain JVM, so that the task
+ * chains can be tested and measured without a device.
+ *
+ * @author LeeHong
+ *
+ * @since 2013/11/20
+ */
+public interface TaskScheduler {
+    /**
+     * The own background thread of a task manager, the runnables posted to it are run one by one
+     * in order.
+     */
+    interface Worker {
+        /**
+         * Run the runnable in the thread later, it is dropped if the worker has quit.
+         *
+         * @param r The runnable.
+         */
+        void post(Runnable r);
+
+        /**
+         * Block the calling thread until {@link #restart()} is called.
+         */
+        void pause();
+
+        /**
+         * Wake up the thread blocked by {@link #pause()}.
+         */
+        void restart();
+
+        /**
+         * Quit the thread after the running runnable, the waiting runnables are dropped.
+         */
+        void quit();
+
+        /**
+         * Block the calling thread until the thread dies.
+         */
+        void join();
+    }
+
+    /**
+     * Run the runnable in the main thread later, the runnables are run in the order they are
+     * posted.
+     *
+     * @param r The runnable.
+     */
+    void runOnMainThread(Runnable r);
+
+    /**
+     * Run the runnable in the main thread after the specified delay.
+     *
+     * @param r The runnable.
+     * @param delayMillis The delay in milliseconds.
+     */
+    void runOnMainThreadDelayed(Runnable r, long delayMillis);
+
+    /**
+     * Remove the pending runnable posted by {@link #runOnMainThreadDelayed(Runnable, long)}.
+     *
+     * @param r The runnable.
+     */
+    void removeMainThreadCallbacks(Runnable r);
+
+    /**
+     * Run the runnable in the timer thread of the scheduler after the specified delay, a busy main
+     * thread does not delay it. The runnable must return quickly, the timer thread is shared.
+     *
+     * @param r The runnable.
+     * @param delayMillis The delay in milliseconds.
+     */
+    void runOnTimerThreadDelayed(Runnable r, long delayMillis);
+
+    /**
+     * Remove the pending runnable posted by {@link #runOnTimerThreadDelayed(Runnable, long)}.
+     *
+     * @param r The runnable.
+     */
+    void removeTimerCallbacks(Runnable r);
+
+    /**
+     * Get the current time of the monotonic clock.
+     *
+     * @return the time in milliseconds, it does not go backward.
+     */
+    long uptimeMillis();
+
+    /**
+     * Create and start the own background thread of a task manager.
+     *
+     * @param name The name of the thread.
+     *
+     * @return the worker.
+     */
+    Worker newWorker(String name);
+
+    /**
+     * Print the debug log.
+     *
+     * @param tag The tag.
+     * @param message The message.
+     */
+    void log(String tag, String message);
+}
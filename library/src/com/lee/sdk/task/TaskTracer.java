@@ -0,0 +1,502 @@
+/*
+ * Copyright (C) 2013 Lee Hong (http://blog.csdn.net/leehong2005)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lee.sdk.task;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.lee.sdk.task.Task.RunningStatus;
+import com.lee.sdk.task.Task.Status;
+
+/**
+ * <p>
+ * The trace recorder of the {@link TaskManager}. Every time a task changes its status, a fixed-size
+ * binary event (task manager, task, status, thread, nano time) is written into a preallocated ring
+ * buffer, the writing does not allocate memory and does not take any lock. The oldest events are
+ * overwritten when the buffer is full.
+ * </p>
+ *
+ * <p>
+ * The events can be dumped to the Chrome trace JSON format by {@link #dumpChromeTrace(Writer)},
+ * open the file in chrome://tracing. They can also be streamed to the TaskMonitor tool by
+ * {@link #startStreaming(String, int)}, which uses a single background sender.
+ * </p>
+ *
+ * <pre class="prettyprint">
+ * TaskTracer.setEnabled(true);
+ * TaskTracer.startStreaming(&quot;192.168.5.107&quot;, TaskTracer.DEFAULT_MONITOR_PORT);
+ * </pre>
+ *
+ * @author LeeHong
+ *
+ * @since 2013/11/20
+ */
+public final class TaskTracer {
+    /**
+     * The UDP port of the TaskMonitor tool.
+     */
+    public static final int DEFAULT_MONITOR_PORT = 1113;
+
+    /**
+     * The count of events in the ring buffer, must be power of 2.
+     */
+    private static final int CAPACITY = 4096;
+
+    /**
+     * The mask of the ring buffer index.
+     */
+    private static final int MASK = CAPACITY - 1;
+
+    /**
+     * The count of longs per event: names, task, thread, time.
+     */
+    private static final int FIELDS = 4;
+
+    /**
+     * The interval of the sender checking the new events, in milliseconds.
+     */
+    private static final int SEND_INTERVAL = 50;
+
+    /**
+     * The max count of the names, the events with new names are recorded without name when full.
+     */
+    private static final int MAX_NAMES = 1024;
+
+    /**
+     * The event data.
+     */
+    private static final long[] EVENTS = new long[CAPACITY * FIELDS];
+
+    /**
+     * The sequence of the event in each slot, -1 means the slot is being written.
+     */
+    private static final AtomicLongArray SEQUENCES = new AtomicLongArray(CAPACITY);
+
+    /**
+     * The next sequence to write.
+     */
+    private static final AtomicLong CURSOR = new AtomicLong(0);
+
+    /**
+     * The id of the names, the id 0 is reserved for the null name.
+     */
+    private static final ConcurrentHashMap<String, Integer> NAME_IDS = new ConcurrentHashMap<String, Integer>();
+
+    /**
+     * The names indexed by their id.
+     */
+    private static final String[] NAMES = new String[MAX_NAMES];
+
+    /**
+     * The count of the names.
+     */
+    private static int sNameCount = 1;
+
+    /**
+     * Indicate the tracer is enabled or not.
+     */
+    private static volatile boolean sEnabled = false;
+
+    /**
+     * The background sender, may be null.
+     */
+    private static Sender sSender = null;
+
+    static {
+        for (int i = 0; i < CAPACITY; ++i) {
+            SEQUENCES.set(i, -1);
+        }
+    }
+
+    /**
+     * The private constructor.
+     */
+    private TaskTracer() {
+    }
+
+    /**
+     * Enable or disable the tracer, it is disabled by default.
+     *
+     * @param enabled true to enable.
+     */
+    public static void setEnabled(boolean enabled) {
+        sEnabled = enabled;
+    }
+
+    /**
+     * Indicate the tracer is enabled or not.
+     *
+     * @return true if enabled.
+     */
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    /**
+     * Record the current status of the task. This method does nothing if the tracer is disabled.
+     *
+     * @param taskManager The task manager running the task.
+     * @param task The task.
+     */
+    public static void trace(TaskManager taskManager, Task task) {
+        if (!sEnabled || null == taskManager || null == task) {
+            return;
+        }
+
+        final long names = ((long) getNameId(taskManager.getName()) << 32) | getNameId(task.getTaskName());
+        final long state = ((long) task.getTaskId() << 32) | (task.getStatus().ordinal() << 8)
+                | task.getRunningStatus().ordinal();
+        final long threadId = Thread.currentThread().getId();
+        final long time = System.nanoTime();
+
+        final long sequence = CURSOR.getAndIncrement();
+        final int slot = (int) (sequence & MASK);
+        final int offset = slot * FIELDS;
+
+        // Mark the slot as being written so that the reader can detect the torn event.
+        SEQUENCES.set(slot, -1);
+        EVENTS[offset] = names;
+        EVENTS[offset + 1] = state;
+        EVENTS[offset + 2] = threadId;
+        EVENTS[offset + 3] = time;
+        SEQUENCES.set(slot, sequence);
+    }
+
+    /**
+     * Remove all recorded events.
+     */
+    public static void clear() {
+        for (int i = 0; i < CAPACITY; ++i) {
+            SEQUENCES.set(i, -1);
+        }
+    }
+
+    /**
+     * Dump the recorded events to the Chrome trace JSON format. The running status of a task is
+     * the begin of its duration and the finished status is the end.
+     *
+     * @param writer The writer, it is not closed by this method.
+     *
+     * @throws IOException if failed to write.
+     */
+    public static void dumpChromeTrace(Writer writer) throws IOException {
+        final long end = CURSOR.get();
+        final long start = Math.max(0, end - CAPACITY);
+        final long[] event = new long[FIELDS];
+        boolean first = true;
+
+        writer.write("{\"traceEvents\":[");
+        for (long sequence = start; sequence < end; ++sequence) {
+            if (!readEvent(sequence, event)) {
+                continue;
+            }
+
+            final int status = (int) ((event[1] >> 8) & 0xff);
+            final String phase;
+            if (Status.RUNNING.ordinal() == status) {
+                phase = "B";
+            } else if (Status.FINISHED.ordinal() == status) {
+                phase = "E";
+            } else {
+                continue;
+            }
+
+            if (!first) {
+                writer.write(',');
+            }
+            first = false;
+
+            writer.write("{\"name\":");
+            writeJsonString(writer, getTaskLabel(event));
+            writer.write(",\"cat\":");
+            writeJsonString(writer, getName((int) (event[0] >>> 32)));
+            writer.write(",\"ph\":\"");
+            writer.write(phase);
+            writer.write("\",\"ts\":");
+            writer.write(String.valueOf(event[3] / 1000));
+            writer.write(",\"pid\":0,\"tid\":");
+            writer.write(String.valueOf(event[2]));
+            writer.write(",\"args\":{\"id\":");
+            writer.write(String.valueOf(event[1] >> 32));
+            writer.write(",\"thread\":");
+            writeJsonString(writer, getRunningStatus(event).toString());
+            writer.write("}}");
+        }
+        writer.write("]}");
+        writer.flush();
+    }
+
+    /**
+     * Start to stream the events to the TaskMonitor tool, the events are sent in the format
+     * "manager##task##status##runningStatus" by a single background thread.
+     *
+     * @param host The host of the TaskMonitor tool.
+     * @param port The UDP port, typically {@link #DEFAULT_MONITOR_PORT}.
+     */
+    public static synchronized void startStreaming(String host, int port) {
+        stopStreaming();
+
+        sSender = new Sender(host, port);
+        sSender.start();
+    }
+
+    /**
+     * Stop to stream the events.
+     */
+    public static synchronized void stopStreaming() {
+        if (null != sSender) {
+            sSender.quit();
+            sSender = null;
+        }
+    }
+
+    /**
+     * Read the event of the specified sequence.
+     *
+     * @param sequence The sequence.
+     * @param event The event data.
+     *
+     * @return false if the event has been overwritten or is being written.
+     */
+    private static boolean readEvent(long sequence, long[] event) {
+        final int slot = (int) (sequence & MASK);
+        final int offset = slot * FIELDS;
+
+        if (SEQUENCES.get(slot) != sequence) {
+            return false;
+        }
+
+        event[0] = EVENTS[offset];
+        event[1] = EVENTS[offset + 1];
+        event[2] = EVENTS[offset + 2];
+        event[3] = EVENTS[offset + 3];
+
+        // The slot may be overwritten while reading.
+        return SEQUENCES.get(slot) == sequence;
+    }
+
+    /**
+     * Get the id of the name, the name is registered when it is used first time.
+     *
+     * @param name The name.
+     *
+     * @return the id, 0 if the name is null or there are too many names.
+     */
+    private static int getNameId(String name) {
+        if (null == name) {
+            return 0;
+        }
+
+        final Integer id = NAME_IDS.get(name);
+        if (null != id) {
+            return id;
+        }
+
+        synchronized (NAMES) {
+            final Integer existId = NAME_IDS.get(name);
+            if (null != existId) {
+                return existId;
+            }
+
+            if (sNameCount >= MAX_NAMES) {
+                return 0;
+            }
+
+            final int newId = sNameCount++;
+            NAMES[newId] = name;
+            NAME_IDS.put(name, newId);
+            return newId;
+        }
+    }
+
+    /**
+     * Get the name of the id.
+     *
+     * @param id The id.
+     *
+     * @return the name, empty string if not found.
+     */
+    private static String getName(int id) {
+        synchronized (NAMES) {
+            final String name = (id > 0 && id < sNameCount) ? NAMES[id] : null;
+            return (null != name) ? name : "";
+        }
+    }
+
+    /**
+     * Get the task name, or the task id if the task has no name.
+     *
+     * @param event The event data.
+     *
+     * @return the label.
+     */
+    private static String getTaskLabel(long[] event) {
+        final String name = getName((int) event[0]);
+        return (name.length() > 0) ? name : ("Task_" + (event[1] >> 32));
+    }
+
+    /**
+     * Get the status of the event.
+     *
+     * @param event The event data.
+     *
+     * @return the status.
+     */
+    private static Status getStatus(long[] event) {
+        return Status.values()[(int) ((event[1] >> 8) & 0xff)];
+    }
+
+    /**
+     * Get the running status of the event.
+     *
+     * @param event The event data.
+     *
+     * @return the running status.
+     */
+    private static RunningStatus getRunningStatus(long[] event) {
+        return RunningStatus.values()[(int) (event[1] & 0xff)];
+    }
+
+    /**
+     * Write the string to JSON.
+     *
+     * @param writer The writer.
+     * @param str The string.
+     *
+     * @throws IOException if failed to write.
+     */
+    private static void writeJsonString(Writer writer, String str) throws IOException {
+        writer.write('"');
+        for (int i = 0; i < str.length(); ++i) {
+            final char c = str.charAt(i);
+            if ('"' == c || '\\' == c) {
+                writer.write('\\');
+                writer.write(c);
+            } else if (c < 0x20) {
+                writer.write(String.format("\\u%04x", (int) c));
+            } else {
+                writer.write(c);
+            }
+        }
+        writer.write('"');
+    }
+
+    /**
+     * The background sender, it sends the events to the TaskMonitor tool.
+     */
+    private static final class Sender extends Thread {
+        /**
+         * The host.
+         */
+        private final String mHost;
+
+        /**
+         * The port.
+         */
+        private final int mPort;
+
+        /**
+         * Indicate the sender is quit.
+         */
+        private volatile boolean mQuit = false;
+
+        /**
+         * The constructor method.
+         *
+         * @param host The host.
+         * @param port The port.
+         */
+        Sender(String host, int port) {
+            super("TaskTracer_Sender");
+            mHost = host;
+            mPort = port;
+            setDaemon(true);
+            setPriority(Thread.MIN_PRIORITY);
+        }
+
+        /**
+         * Quit the sender.
+         */
+        void quit() {
+            mQuit = true;
+            interrupt();
+        }
+
+        @Override
+        public void run() {
+            DatagramSocket socket = null;
+            try {
+                socket = new DatagramSocket();
+                final InetAddress address = InetAddress.getByName(mHost);
+                final long[] event = new long[FIELDS];
+                // Only stream the events recorded after starting.
+                long sequence = CURSOR.get();
+
+                while (!mQuit) {
+                    final long end = CURSOR.get();
+                    if (end - sequence > CAPACITY) {
+                        // The writer overruns the sender, skip the overwritten events.
+                        sequence = end - CAPACITY;
+                    }
+
+                    for (; sequence < end && !mQuit; ++sequence) {
+                        if (readEvent(sequence, event)) {
+                            final byte[] data = formatEvent(event).getBytes("ascii");
+                            socket.send(new DatagramPacket(data, data.length, address, mPort));
+                        }
+                    }
+
+                    try {
+                        Thread.sleep(SEND_INTERVAL);
+                    } catch (InterruptedException e) {
+                        // Quit.
+                    }
+                }
+            } catch (IOException e) {
+                // Failed to stream the task events.
+                e.printStackTrace();
+            } finally {
+                if (null != socket) {
+                    socket.close();
+                }
+            }
+        }
+
+        /**
+         * Format the event in the TaskMonitor wire format.
+         *
+         * @param event The event data.
+         *
+         * @return the formatted string.
+         */
+        private String formatEvent(long[] event) {
+            StringBuilder sb = new StringBuilder();
+            sb.append(TaskTracer.getName((int) (event[0] >>> 32))).append("##");
+            sb.append(TaskTracer.getName((int) event[0])).append("##");
+            sb.append(getStatus(event)).append("##");
+            sb.append(getRunningStatus(event));
+
+            return sb.toString();
+        }
+    }
+}
@@ -19,6 +19,7 @@ package com.lee.sdk.utils;
 import android.content.Context;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
+import android.telephony.TelephonyManager;
 import android.util.Log;
 
 import com.lee.sdk.Configuration;
@@ -37,6 +38,19 @@ public final class NetUtils {
     /** Log switch */
     private static final boolean DEBUG = Configuration.DEBUG & true;
 
+    /** 无网络 */
+    public static final int NETWORK_CLASS_NONE = 0;
+    /** 无法识别的网络 */
+    public static final int NETWORK_CLASS_UNKNOWN = 1;
+    /** 2G网络 */
+    public static final int NETWORK_CLASS_2G = 2;
+    /** 3G网络 */
+    public static final int NETWORK_CLASS_3G = 3;
+    /** 4G网络 */
+    public static final int NETWORK_CLASS_4G = 4;
+    /** WIFI或有线网络 */
+    public static final int NETWORK_CLASS_WIFI = 5;
+
     /**
      * Private constructor to prohibit nonsense instance creation.
      */
@@ -79,6 +93,48 @@ public final class NetUtils {
         
     }
     
+    /**
+     * 得到当前网络的类型，用于根据网络质量调整请求的数据量
+     * 
+     * @param context
+     *            context
+     * @return {@link #NETWORK_CLASS_NONE}, {@link #NETWORK_CLASS_UNKNOWN}, {@link #NETWORK_CLASS_2G},
+     *         {@link #NETWORK_CLASS_3G}, {@link #NETWORK_CLASS_4G}, {@link #NETWORK_CLASS_WIFI}
+     */
+    public static int getNetworkClass(Context context) {
+        NetworkInfo networkInfo = getActiveNetworkInfo(context);
+        if (networkInfo == null || !networkInfo.isAvailable()) {
+            return NETWORK_CLASS_NONE;
+        }
+
+        if (networkInfo.getType() != ConnectivityManager.TYPE_MOBILE) {
+            return NETWORK_CLASS_WIFI;
+        }
+
+        switch (networkInfo.getSubtype()) {
+            case TelephonyManager.NETWORK_TYPE_GPRS:
+            case TelephonyManager.NETWORK_TYPE_EDGE:
+            case TelephonyManager.NETWORK_TYPE_CDMA:
+            case TelephonyManager.NETWORK_TYPE_1xRTT:
+            case TelephonyManager.NETWORK_TYPE_IDEN:
+                return NETWORK_CLASS_2G;
+            case TelephonyManager.NETWORK_TYPE_UMTS:
+            case TelephonyManager.NETWORK_TYPE_EVDO_0:
+            case TelephonyManager.NETWORK_TYPE_EVDO_A:
+            case TelephonyManager.NETWORK_TYPE_HSDPA:
+            case TelephonyManager.NETWORK_TYPE_HSUPA:
+            case TelephonyManager.NETWORK_TYPE_HSPA:
+            case TelephonyManager.NETWORK_TYPE_EVDO_B:
+            case TelephonyManager.NETWORK_TYPE_EHRPD:
+            case TelephonyManager.NETWORK_TYPE_HSPAP:
+                return NETWORK_CLASS_3G;
+            case TelephonyManager.NETWORK_TYPE_LTE:
+                return NETWORK_CLASS_4G;
+            default:
+                return NETWORK_CLASS_UNKNOWN;
+        }
+    }
+    
     /**
      * 获取活动的连接。
      * 
@@ -34,6 +34,7 @@ import com.lee.sdk.res.R;
 import com.lee.sdk.widget.gif.GifDrawable;
 import com.lee.sdk.widget.image.ImageViewTouch.OnImageViewTouchSingleTapListener;
 import com.lee.sdk.widget.image.ImageViewTouchBase.DisplayType;
+import com.lee.sdk.widget.image.graphics.TiledBitmapDrawable;
 import com.lee.sdk.widget.viewpager.OnRecycleListener;
 
 /**
@@ -56,6 +57,8 @@ public class ImageBrowseView extends FrameLayout implements OnRecycleListener {
     
     /**图片的URL*/
     private String mImageUrl = null;
+    /**图片的数据，可以是URL，也可以是{@link com.lee.sdk.cache.IMultiSizeImage}等对象*/
+    private Object mImageData = null;
     /**支持缩放的ImageView*/
     private ZoomImageView mZoomImageView = null;
     /**进度View*/
@@ -70,6 +73,8 @@ public class ImageBrowseView extends FrameLayout implements OnRecycleListener {
     private int mRetryLoadImageTime = 0;
     /** Image loader */
     private ImageLoader mImageLoader = null;
+    /** 大图分块显示的加载器，为null表示不使用分块显示 */
+    private TiledImageLoaderTask mTiledLoaderTask = null;
     /**加载bitmap的监听器*/
     private OnLoadImageListener mListener = new OnLoadImageListener() {
         @Override
@@ -186,11 +191,33 @@ public class ImageBrowseView extends FrameLayout implements OnRecycleListener {
      * @param imageLoader imageLoader
      */ 
     public void setData(String url, ImageLoader imageLoader) {
-        mImageUrl = url;
+        setData((Object) url, imageLoader);
+    }
+    
+    /**
+     * 设置图片数据，如果数据实现了{@link com.lee.sdk.cache.IMultiSizeImage}，在加载原图的过程中，
+     * 会先显示已经缓存的小尺寸图片
+     * 
+     * @param data 图片数据
+     * @param imageLoader imageLoader
+     */ 
+    public void setData(Object data, ImageLoader imageLoader) {
+        mImageData = data;
+        mImageUrl = (null != data) ? data.toString() : null;
         mImageLoader = imageLoader;
         loadImageByUrl();
     }
     
+    /**
+     * 设置是否使用大图分块显示，如果图片超过屏幕大小的两倍，只解析当前缩放率下可见的图块，
+     * 放大后也能看清细节，同时避免OOM
+     * 
+     * @param enabled true/false
+     */
+    public void setTileModeEnabled(boolean enabled) {
+        mTiledLoaderTask = enabled ? new TiledImageLoaderTask(getContext()) : null;
+    }
+    
     /**
      * 得到可绽放的ImageView
      * 
@@ -211,6 +238,11 @@ public class ImageBrowseView extends FrameLayout implements OnRecycleListener {
             if (drawable instanceof BitmapDrawable) {
                 return ((BitmapDrawable) drawable).getBitmap();
             }
+            
+            TiledBitmapDrawable tiled = TiledBitmapDrawable.find(drawable);
+            if (null != tiled) {
+                return tiled.getBaseBitmap();
+            }
         }
         
         return null;
@@ -243,6 +275,11 @@ public class ImageBrowseView extends FrameLayout implements OnRecycleListener {
                 ((GifDrawable) drawable).recycle();
             }
             
+            TiledBitmapDrawable tiled = TiledBitmapDrawable.find(drawable);
+            if (null != tiled) {
+                tiled.recycle();
+            }
+            
             mZoomImageView.setAsyncDrawable(null);
             mZoomImageView.setImageDrawable(null);
         }
@@ -293,7 +330,11 @@ public class ImageBrowseView extends FrameLayout implements OnRecycleListener {
             // 加载图片
             mLoadImageFail = false;
             if (null != mImageLoader) {
-                mImageLoader.loadImage(url, mZoomImageView, mListener);
+                mImageLoader.loadImage(mImageData, mZoomImageView, mListener, mTiledLoaderTask);
+                // 已经显示了缓存的小尺寸图片，隐藏默认图片
+                if (hasSetBitmap()) {
+                    mLoadingLayout.setVisibility(View.INVISIBLE);
+                }
             }
         }
         
@@ -32,6 +32,7 @@ import com.lee.sdk.Configuration;
 import com.lee.sdk.widget.image.easing.Cubic;
 import com.lee.sdk.widget.image.easing.Easing;
 import com.lee.sdk.widget.image.graphics.FastBitmapDrawable;
+import com.lee.sdk.widget.image.graphics.TiledBitmapDrawable;
 
 //CHECKSTYLE:OFF
 /**
@@ -122,6 +123,8 @@ public abstract class ImageViewTouchBase extends ImageView {
     protected RectF mBitmapRect = new RectF();
     protected RectF mCenterRect = new RectF();
     protected RectF mScrollRect = new RectF();
+    private final Matrix mInverseMatrix = new Matrix();
+    private final RectF mVisibleRect = new RectF();
 
     private OnDrawableChangeListener mDrawableChangeListener;
     private OnLayoutChangeListener mOnLayoutChangeListener;
@@ -619,6 +622,26 @@ public abstract class ImageViewTouchBase extends ImageView {
         if (needUpdate) {
             onImageMatrixChanged();
         }
+
+        updateVisibleTiles();
+    }
+
+    /**
+     * If the drawable is a {@link TiledBitmapDrawable}, tell it the visible region and the current scale
+     * so that it decodes the visible tiles only.
+     */
+    protected void updateVisibleTiles() {
+        final TiledBitmapDrawable tiled = TiledBitmapDrawable.find(getDrawable());
+        if (null == tiled || mThisWidth <= 0 || mThisHeight <= 0) {
+            return;
+        }
+
+        final Matrix matrix = getImageMatrix();
+        if (matrix.invert(mInverseMatrix)) {
+            mVisibleRect.set(0, 0, mThisWidth, mThisHeight);
+            mInverseMatrix.mapRect(mVisibleRect);
+            tiled.setVisibleRegion(mVisibleRect, getScale(matrix));
+        }
     }
 
     /**
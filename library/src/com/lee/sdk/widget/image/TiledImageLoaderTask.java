@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2013 Lee Hong (http://blog.csdn.net/leehong2005)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lee.sdk.widget.image;
+
+import android.content.Context;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.util.DisplayMetrics;
+import android.util.Log;
+
+import com.lee.sdk.Configuration;
+import com.lee.sdk.cache.task.ImageLoaderTask;
+import com.lee.sdk.widget.image.graphics.TiledBitmapDrawable;
+
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 支持大图分块显示的图片加载器，如果图片的大小超过屏幕的两倍，解析结果为{@link TiledBitmapDrawable}，
+ * 否则与{@link ImageLoaderTask}相同。
+ *
+ * @author lihong06
+ * @since 2016-10-19
+ */
+public class TiledImageLoaderTask extends ImageLoaderTask {
+    /** DEBUG */
+    private static final boolean DEBUG = Configuration.DEBUG & false;
+    /** TAG */
+    private static final String TAG = "TiledImageLoaderTask";
+    /** 缩小后的整图的最大边长 */
+    private final int mMaxBaseSize;
+
+    /**
+     * @param context context
+     */
+    public TiledImageLoaderTask(Context context) {
+        super(context);
+        DisplayMetrics dm = context.getResources().getDisplayMetrics();
+        mMaxBaseSize = Math.max(dm.widthPixels, dm.heightPixels);
+    }
+
+    @Override
+    protected Object onDecodeStream(Object data, InputStream is, boolean isGifSupported) {
+        if (!(is instanceof FileInputStream)) {
+            return super.onDecodeStream(data, is, isGifSupported);
+        }
+
+        BitmapFactory.Options opts = new BitmapFactory.Options();
+        try {
+            FileDescriptor fd = ((FileInputStream) is).getFD();
+            opts.inJustDecodeBounds = true;
+            BitmapFactory.decodeFileDescriptor(fd, null, opts);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        // BitmapRegionDecoder只支持JPEG和PNG
+        final boolean supported = "image/jpeg".equals(opts.outMimeType) || "image/png".equals(opts.outMimeType);
+        if (!supported || !TiledBitmapDrawable.shouldTile(opts.outWidth, opts.outHeight, mMaxBaseSize * 2)) {
+            return super.onDecodeStream(data, is, isGifSupported);
+        }
+
+        if (DEBUG) {
+            Log.d(TAG, "onDecodeStream use tiles, size = " + opts.outWidth + "x" + opts.outHeight + ", data = " + data);
+        }
+
+        try {
+            return TiledBitmapDrawable.create(BitmapRegionDecoder.newInstance(is, false), mMaxBaseSize);
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            closeSafely(is);
+        }
+
+        return null;
+    }
+}
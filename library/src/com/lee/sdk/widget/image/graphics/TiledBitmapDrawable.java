@@ -0,0 +1,505 @@
+/*
+ * Copyright (C) 2013 Lee Hong (http://blog.csdn.net/leehong2005)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lee.sdk.widget.image.graphics;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+import android.graphics.drawable.LayerDrawable;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.LruCache;
+
+import com.lee.sdk.Configuration;
+import com.lee.sdk.cache.BitmapPool;
+
+import java.util.HashSet;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 分块显示大图的Drawable，它的intrinsic size是原图的大小。
+ *
+ * <p>
+ * 它先显示一张缩小后的整图，然后根据{@link #setVisibleRegion(RectF, float)}传入的可见区域和缩放率，
+ * 使用{@link BitmapRegionDecoder}在后台线程中只解析可见的图块，图块的sample size与当前缩放率匹配。
+ * 解析好的图块放在LRU缓存中，被淘汰的图块通过{@link BitmapPool}复用。
+ * </p>
+ *
+ * <p>
+ * 这个类的方法都需要在UI线程中调用，不再使用时需要调用{@link #recycle()}释放资源。
+ * </p>
+ *
+ * @author lihong06
+ * @since 2016-10-19
+ */
+public class TiledBitmapDrawable extends Drawable {
+    /** DEBUG */
+    private static final boolean DEBUG = Configuration.DEBUG & false;
+    /** TAG */
+    private static final String TAG = "TiledBitmapDrawable";
+    /** 图块的大小（像素） */
+    public static final int TILE_SIZE = 256;
+    /** 图块缓存的最大数量，足够覆盖两屏 */
+    private static final int MAX_CACHED_TILES = 48;
+    /** 图块池的最大数量 */
+    private static final int MAX_POOLED_TILES = 16;
+    /** 解析图块的线程数 */
+    private static final int DECODE_THREAD_COUNT = 2;
+
+    /** 解析图块的线程池，所有实例共享 */
+    private static final ThreadPoolExecutor DECODE_EXECUTOR;
+
+    static {
+        DECODE_EXECUTOR = new ThreadPoolExecutor(DECODE_THREAD_COUNT, DECODE_THREAD_COUNT, 1, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    private final AtomicInteger mCount = new AtomicInteger(1);
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "TileDecoder #" + mCount.getAndIncrement());
+                        thread.setPriority(Thread.NORM_PRIORITY - 1);
+                        return thread;
+                    }
+                });
+        DECODE_EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    /** 主线程Handler */
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    /** 区域解析器 */
+    private final BitmapRegionDecoder mDecoder;
+    /** 缩小后的整图 */
+    private final Bitmap mBaseBitmap;
+    /** 整图的sample size */
+    private final int mBaseSampleSize;
+    /** 原图宽度 */
+    private final int mImageWidth;
+    /** 原图高度 */
+    private final int mImageHeight;
+    /** 画笔 */
+    private final Paint mPaint;
+    /** 图块复用池 */
+    private final BitmapPool mTilePool = new BitmapPool(TILE_SIZE, TILE_SIZE, MAX_POOLED_TILES);
+    /** 图块缓存 */
+    private final LruCache<Long, Bitmap> mTileCache;
+    /** 正在解析的图块 */
+    private final HashSet<Long> mPendingTiles = new HashSet<Long>();
+    /** 当前可见的图块，解析线程用它来跳过已经不可见的图块 */
+    private volatile VisibleTiles mVisibleTiles;
+    /** 是否已经回收 */
+    private volatile boolean mRecycled = false;
+    /** 保护解析器的锁，4.1之前的BitmapRegionDecoder在decodeRegion时调用recycle是不安全的 */
+    private final Object mDecoderLock = new Object();
+    /** 正在解析的图块数，由mDecoderLock保护 */
+    private int mDecodingCount = 0;
+    /** 解析器是否已经回收，由mDecoderLock保护 */
+    private boolean mDecoderRecycled = false;
+
+    /** 绘制时复用的对象 */
+    private final Rect mSrcRect = new Rect();
+    private final RectF mDstRect = new RectF();
+
+    /**
+     * 可见区域对应的图块范围
+     */
+    private static final class VisibleTiles {
+        int sampleSize;
+        int left;
+        int top;
+        int right;
+        int bottom;
+
+        boolean contains(int sample, int col, int row) {
+            return sample == sampleSize && col >= left && col <= right && row >= top && row <= bottom;
+        }
+    }
+
+    /**
+     * 构造方法
+     *
+     * @param decoder        区域解析器
+     * @param baseBitmap     缩小后的整图
+     * @param baseSampleSize 整图的sample size
+     */
+    public TiledBitmapDrawable(BitmapRegionDecoder decoder, Bitmap baseBitmap, int baseSampleSize) {
+        mDecoder = decoder;
+        mBaseBitmap = baseBitmap;
+        mBaseSampleSize = baseSampleSize;
+        mImageWidth = decoder.getWidth();
+        mImageHeight = decoder.getHeight();
+        mPaint = new Paint();
+        mPaint.setDither(true);
+        mPaint.setFilterBitmap(true);
+        mTileCache = new LruCache<Long, Bitmap>(MAX_CACHED_TILES) {
+            @Override
+            protected void entryRemoved(boolean evicted, Long key, Bitmap oldValue, Bitmap newValue) {
+                mTilePool.recycle(oldValue);
+            }
+        };
+    }
+
+    /**
+     * 创建分块显示的Drawable，这个方法会解析缩小后的整图，需要在后台线程中调用
+     *
+     * @param decoder      区域解析器
+     * @param maxBaseSize  整图缩小后的最大边长，通常为屏幕的大小
+     * @return drawable，失败时返回null
+     */
+    public static TiledBitmapDrawable create(BitmapRegionDecoder decoder, int maxBaseSize) {
+        if (null == decoder) {
+            return null;
+        }
+
+        int sampleSize = 1;
+        final int maxSide = Math.max(decoder.getWidth(), decoder.getHeight());
+        while (maxSide / sampleSize > maxBaseSize) {
+            sampleSize <<= 1;
+        }
+
+        BitmapFactory.Options opts = new BitmapFactory.Options();
+        opts.inSampleSize = sampleSize;
+        Bitmap base = null;
+        try {
+            base = decoder.decodeRegion(new Rect(0, 0, decoder.getWidth(), decoder.getHeight()), opts);
+        } catch (OutOfMemoryError e) {
+            e.printStackTrace();
+        }
+
+        if (null == base) {
+            decoder.recycle();
+            return null;
+        }
+
+        return new TiledBitmapDrawable(decoder, base, sampleSize);
+    }
+
+    /**
+     * 查找drawable中的{@link TiledBitmapDrawable}，它可能被包装在{@link LayerDrawable}（如渐显动画）的最上层
+     *
+     * @param drawable drawable
+     * @return TiledBitmapDrawable，没有则返回null
+     */
+    public static TiledBitmapDrawable find(Drawable drawable) {
+        if (drawable instanceof TiledBitmapDrawable) {
+            return (TiledBitmapDrawable) drawable;
+        }
+
+        if (drawable instanceof LayerDrawable) {
+            final LayerDrawable layer = (LayerDrawable) drawable;
+            final int count = layer.getNumberOfLayers();
+            if (count > 0) {
+                return find(layer.getDrawable(count - 1));
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * 判断图片是否需要分块显示
+     *
+     * @param width     图片宽度
+     * @param height    图片高度
+     * @param maxSide   不分块时允许的最大边长，通常为屏幕大小的两倍
+     * @return true/false
+     */
+    public static boolean shouldTile(int width, int height, int maxSide) {
+        return width > maxSide || height > maxSide;
+    }
+
+    /**
+     * 设置当前可见的区域，可见区域改变时由View调用。
+     *
+     * @param visibleRect 可见区域，原图坐标
+     * @param scale       原图一个像素在屏幕上的大小
+     */
+    public void setVisibleRegion(RectF visibleRect, float scale) {
+        if (mRecycled || scale <= 0) {
+            return;
+        }
+
+        int sampleSize = 1;
+        while (sampleSize * 2 * scale <= 1.0f) {
+            sampleSize <<= 1;
+        }
+
+        // 整图已经足够清晰，不需要图块
+        if (sampleSize >= mBaseSampleSize) {
+            mVisibleTiles = null;
+            return;
+        }
+
+        final int tileSpan = TILE_SIZE * sampleSize;
+        VisibleTiles tiles = new VisibleTiles();
+        tiles.sampleSize = sampleSize;
+        tiles.left = Math.max(0, (int) (visibleRect.left / tileSpan));
+        tiles.top = Math.max(0, (int) (visibleRect.top / tileSpan));
+        tiles.right = Math.min((mImageWidth - 1) / tileSpan, (int) (visibleRect.right / tileSpan));
+        tiles.bottom = Math.min((mImageHeight - 1) / tileSpan, (int) (visibleRect.bottom / tileSpan));
+        mVisibleTiles = tiles;
+
+        for (int row = tiles.top; row <= tiles.bottom; ++row) {
+            for (int col = tiles.left; col <= tiles.right; ++col) {
+                final long key = makeKey(sampleSize, col, row);
+                if (null == mTileCache.get(key) && mPendingTiles.add(key)) {
+                    DECODE_EXECUTOR.execute(new DecodeTileRunnable(sampleSize, col, row, key));
+                }
+            }
+        }
+
+        invalidateSelf();
+    }
+
+    /**
+     * 释放资源，包括解析器、整图和所有图块
+     */
+    public void recycle() {
+        mVisibleTiles = null;
+        mHandler.removeCallbacksAndMessages(null);
+        mTileCache.evictAll();
+        mTilePool.clear();
+        mPendingTiles.clear();
+        // 解析线程中可能正在使用decoder，由最后一个结束解析的线程回收
+        synchronized (mDecoderLock) {
+            mRecycled = true;
+            if (0 == mDecodingCount) {
+                recycleDecoderLocked();
+            }
+        }
+        mBaseBitmap.recycle();
+    }
+
+    /**
+     * 回收解析器，调用时需要持有mDecoderLock
+     */
+    private void recycleDecoderLocked() {
+        if (!mDecoderRecycled) {
+            mDecoderRecycled = true;
+            mDecoder.recycle();
+        }
+    }
+
+    @Override
+    public void draw(Canvas canvas) {
+        final Rect bounds = getBounds();
+        if (mRecycled || bounds.isEmpty()) {
+            return;
+        }
+
+        final float scaleX = (float) bounds.width() / mImageWidth;
+        final float scaleY = (float) bounds.height() / mImageHeight;
+
+        if (!mBaseBitmap.isRecycled()) {
+            mDstRect.set(bounds);
+            canvas.drawBitmap(mBaseBitmap, null, mDstRect, mPaint);
+        }
+
+        final VisibleTiles tiles = mVisibleTiles;
+        if (null == tiles) {
+            return;
+        }
+
+        final int tileSpan = TILE_SIZE * tiles.sampleSize;
+        for (int row = tiles.top; row <= tiles.bottom; ++row) {
+            for (int col = tiles.left; col <= tiles.right; ++col) {
+                final Bitmap tile = mTileCache.get(makeKey(tiles.sampleSize, col, row));
+                if (null == tile) {
+                    continue;
+                }
+
+                final int left = col * tileSpan;
+                final int top = row * tileSpan;
+                final int right = Math.min(left + tileSpan, mImageWidth);
+                final int bottom = Math.min(top + tileSpan, mImageHeight);
+                mSrcRect.set(0, 0, (right - left) / tiles.sampleSize, (bottom - top) / tiles.sampleSize);
+                mDstRect.set(bounds.left + left * scaleX, bounds.top + top * scaleY,
+                        bounds.left + right * scaleX, bounds.top + bottom * scaleY);
+                canvas.drawBitmap(tile, mSrcRect, mDstRect, mPaint);
+            }
+        }
+    }
+
+    @Override
+    public int getOpacity() {
+        return PixelFormat.TRANSLUCENT;
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+        mPaint.setAlpha(alpha);
+        invalidateSelf();
+    }
+
+    @Override
+    public void setColorFilter(ColorFilter cf) {
+        mPaint.setColorFilter(cf);
+        invalidateSelf();
+    }
+
+    @Override
+    public int getIntrinsicWidth() {
+        return mImageWidth;
+    }
+
+    @Override
+    public int getIntrinsicHeight() {
+        return mImageHeight;
+    }
+
+    /**
+     * 得到缩小后的整图
+     *
+     * @return bitmap
+     */
+    public Bitmap getBaseBitmap() {
+        return mBaseBitmap;
+    }
+
+    /**
+     * 生成图块的key
+     *
+     * @param sampleSize sample size
+     * @param col        列
+     * @param row        行
+     * @return key
+     */
+    private static long makeKey(int sampleSize, int col, int row) {
+        return ((long) sampleSize << 48) | ((long) col << 24) | row;
+    }
+
+    /**
+     * 在后台解析一个图块
+     */
+    private final class DecodeTileRunnable implements Runnable {
+        private final int mSampleSize;
+        private final int mCol;
+        private final int mRow;
+        private final long mKey;
+
+        DecodeTileRunnable(int sampleSize, int col, int row, long key) {
+            mSampleSize = sampleSize;
+            mCol = col;
+            mRow = row;
+            mKey = key;
+        }
+
+        @Override
+        public void run() {
+            Bitmap tile = null;
+            // 已经滑出可见区域的图块不再解析
+            final VisibleTiles tiles = mVisibleTiles;
+            if (null != tiles && tiles.contains(mSampleSize, mCol, mRow)) {
+                boolean decoding = false;
+                synchronized (mDecoderLock) {
+                    if (!mRecycled) {
+                        ++mDecodingCount;
+                        decoding = true;
+                    }
+                }
+
+                if (decoding) {
+                    try {
+                        tile = decodeTile();
+                    } finally {
+                        synchronized (mDecoderLock) {
+                            if (0 == --mDecodingCount && mRecycled) {
+                                recycleDecoderLocked();
+                            }
+                        }
+                    }
+                }
+            }
+
+            final Bitmap result = tile;
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    mPendingTiles.remove(mKey);
+                    if (null == result) {
+                        return;
+                    }
+
+                    if (mRecycled) {
+                        result.recycle();
+                        return;
+                    }
+
+                    mTileCache.put(mKey, result);
+                    invalidateSelf();
+                }
+            });
+        }
+
+        /**
+         * 解析图块，优先复用池中的bitmap
+         *
+         * @return bitmap
+         */
+        private Bitmap decodeTile() {
+            final int tileSpan = TILE_SIZE * mSampleSize;
+            final int left = mCol * tileSpan;
+            final int top = mRow * tileSpan;
+            final Rect region = new Rect(left, top, Math.min(left + tileSpan, mImageWidth),
+                    Math.min(top + tileSpan, mImageHeight));
+
+            BitmapFactory.Options opts = new BitmapFactory.Options();
+            opts.inSampleSize = mSampleSize;
+            opts.inPreferredConfig = Bitmap.Config.ARGB_8888;
+            // 只有完整大小的图块可以复用bitmap，BitmapRegionDecoder从4.1开始支持inBitmap
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN
+                    && region.width() == tileSpan && region.height() == tileSpan) {
+                opts.inBitmap = mTilePool.getBitmap();
+            }
+
+            try {
+                return mDecoder.decodeRegion(region, opts);
+            } catch (IllegalArgumentException e) {
+                // inBitmap不能被复用，不使用inBitmap重试
+                if (null != opts.inBitmap) {
+                    opts.inBitmap = null;
+                    try {
+                        return mDecoder.decodeRegion(region, opts);
+                    } catch (Exception ex) {
+                        if (DEBUG) {
+                            Log.e(TAG, "decodeTile failed, " + ex);
+                        }
+                    }
+                }
+            } catch (OutOfMemoryError e) {
+                e.printStackTrace();
+            } catch (Exception e) {
+                if (DEBUG) {
+                    Log.e(TAG, "decodeTile failed, " + e);
+                }
+            }
+
+            return null;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2016 LiHong (https://github.com/leehong2005)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lee.sdk.cache;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.drawable.Drawable;
+import android.os.Debug;
+import android.test.InstrumentationTestCase;
+import android.test.UiThreadTest;
+import android.widget.ImageView;
+
+/**
+ * 统计{@link ImageWorker#loadImage(Object, IAsyncView, ImageWorker.OnLoadImageListener,
+ * com.lee.sdk.cache.task.ImageLoaderTask)}在内存缓存命中时的对象分配次数。
+ *
+ * <p>
+ * debug构建中的日志会分配字符串，分配次数只在release构建下检查。
+ * </p>
+ *
+ * @author lihong06
+ * @since 2016-10-19
+ */
+public class ImageWorkerAllocationTest extends InstrumentationTestCase {
+    /** 重复绑定的次数 */
+    private static final int BIND_COUNT = 100;
+
+    /** image fetcher */
+    private ImageFetcher mFetcher;
+    /** 内存缓存中的图片 */
+    private Bitmap mBitmap;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        final Context context = getInstrumentation().getTargetContext();
+        final ImageCache.ImageCacheParams params = new ImageCache.ImageCacheParams(context.getCacheDir());
+        params.diskCacheEnabled = false;
+        mBitmap = Bitmap.createBitmap(8, 8, Bitmap.Config.ARGB_8888);
+        // Handler需要在主线程中创建
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mFetcher = new ImageFetcher(context);
+                mFetcher.setImageCache(new ImageCache(params));
+            }
+        });
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mBitmap.recycle();
+        super.tearDown();
+    }
+
+    /**
+     * 同一个View再次绑定内存缓存中的图片时不分配对象
+     */
+    @UiThreadTest
+    public void testRebindFromMemoryCacheDoesNotAllocate() {
+        final TestImage data = new TestImage(1);
+        final TestImageView view = new TestImageView(getInstrumentation().getTargetContext());
+        mFetcher.addBitmapToCache(data.getCacheKey(), mBitmap);
+
+        // 第一次绑定需要创建BitmapDrawable
+        assertTrue(mFetcher.loadImage(data, view, null, null));
+        final Drawable drawable = view.getDrawable();
+
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        for (int i = 0; i < BIND_COUNT; ++i) {
+            mFetcher.loadImage(data, view, null, null);
+        }
+        Debug.stopAllocCounting();
+
+        if (!com.lee.sdk.BuildConfig.DEBUG) {
+            assertEquals(0, Debug.getThreadAllocCount());
+        }
+        assertSame(drawable, view.getDrawable());
+    }
+
+    /**
+     * 缓存的key只计算一次
+     */
+    @UiThreadTest
+    public void testCacheKeyComputedOnce() {
+        final TestImage data = new TestImage(2);
+        final TestImageView view = new TestImageView(getInstrumentation().getTargetContext());
+        mFetcher.addBitmapToCache(data.getCacheKey(), mBitmap);
+        final int urlCount = data.mUrlCount;
+
+        for (int i = 0; i < BIND_COUNT; ++i) {
+            assertTrue(mFetcher.loadImage(data, view, null, null));
+        }
+
+        assertEquals(urlCount, data.mUrlCount);
+    }
+
+    /**
+     * 没有声明key不变的Model，每次都重新计算key
+     */
+    public void testCacheKeyFollowsUrlByDefault() {
+        final MutableImage data = new MutableImage();
+        data.mUrl = "http://www.example.com/image/a";
+        assertEquals(data.mUrl, data.getCacheKey());
+
+        data.mUrl = "http://www.example.com/image/b";
+        assertEquals(data.mUrl, data.getCacheKey());
+    }
+
+    /**
+     * 每次调用都拼接URL的Model
+     */
+    private static final class TestImage extends ILoadImageImpl {
+        private final int mId;
+        private int mUrlCount = 0;
+
+        TestImage(int id) {
+            mId = id;
+        }
+
+        @Override
+        public String getUrl() {
+            ++mUrlCount;
+            return "http://www.example.com/image/" + mId;
+        }
+
+        @Override
+        protected boolean isCacheKeyStable() {
+            return true;
+        }
+    }
+
+    /**
+     * URL会改变的Model
+     */
+    private static final class MutableImage extends ILoadImageImpl {
+        private String mUrl;
+
+        @Override
+        public String getUrl() {
+            return mUrl;
+        }
+    }
+
+    /**
+     * 显示图片的View
+     */
+    private static final class TestImageView extends ImageView implements IAsyncView {
+        private Drawable mAsyncDrawable;
+
+        TestImageView(Context context) {
+            super(context);
+        }
+
+        @Override
+        public void setAsyncDrawable(Drawable drawable) {
+            mAsyncDrawable = drawable;
+        }
+
+        @Override
+        public Drawable getAsyncDrawable() {
+            return mAsyncDrawable;
+        }
+
+        @Override
+        public boolean isGifSupported() {
+            return false;
+        }
+    }
+}